@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.signing.ChunkedPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkAwsChunkedInputStream
+{
+    // 8KB is the minimum chunk size allowed by S3, 64KB is the AWS SDK default
+    @Param({"8192", "65536", "1048576"})
+    private int chunkSize;
+
+    @Param("16777216")
+    private int payloadSize;
+
+    @Param("65536")
+    private int readBufferSize;
+
+    private ChunkedPayload chunkedPayload;
+    private byte[] readBuffer;
+
+    @Setup
+    public void setup()
+    {
+        chunkedPayload = ChunkedPayload.generate(payloadSize, chunkSize);
+        readBuffer = new byte[readBufferSize];
+    }
+
+    @Benchmark
+    public long decodeAndVerify()
+            throws IOException
+    {
+        long total = 0;
+        try (InputStream inputStream = new AwsChunkedInputStream(new ByteArrayInputStream(chunkedPayload.encoded()), chunkedPayload.newSigningSession(), chunkedPayload.decodedLength())) {
+            int count;
+            while ((count = inputStream.read(readBuffer)) >= 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*\\." + BenchmarkAwsChunkedInputStream.class.getSimpleName() + "\\..*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.aws.proxy.server.signing.SigningQueryParameters;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkRequestParsing
+{
+    // headers and query parameters as sent by the AWS SDK for a typical ranged GET
+    private static final List<Map.Entry<String, String>> HEADERS = ImmutableList.of(
+            Map.entry("Host", "localhost:9000"),
+            Map.entry("User-Agent", "aws-sdk-java/2.25.32 Linux/6.1 OpenJDK_64-Bit_Server_VM/22 Java/22 vendor/Oracle_Corporation"),
+            Map.entry("Accept", "*/*"),
+            Map.entry("Accept-Encoding", "identity"),
+            Map.entry("Amz-Sdk-Invocation-Id", "4a5c2e4e-0b3c-4f0c-9a3b-6b2d0c1e9f11"),
+            Map.entry("Amz-Sdk-Request", "attempt=1; max=4"),
+            Map.entry("Authorization", "AWS4-HMAC-SHA256 Credential=THIS_IS_AN_ACCESS_KEY/20240601/us-east-1/s3/aws4_request, SignedHeaders=amz-sdk-invocation-id;amz-sdk-request;host;range;x-amz-content-sha256;x-amz-date, Signature=0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef"),
+            Map.entry("Connection", "keep-alive"),
+            Map.entry("Range", "bytes=0-1048575"),
+            Map.entry("If-Match", "\"0123456789abcdef\""),
+            Map.entry("X-Amz-Content-SHA256", "UNSIGNED-PAYLOAD"),
+            Map.entry("X-Amz-Date", "20240601T120000Z"),
+            Map.entry("X-Amz-Security-Token", "THIS_IS_A_SESSION_TOKEN"));
+
+    private static final List<Map.Entry<String, String>> QUERY_PARAMETERS = ImmutableList.of(
+            Map.entry("X-Amz-Algorithm", "AWS4-HMAC-SHA256"),
+            Map.entry("X-Amz-Credential", "THIS_IS_AN_ACCESS_KEY/20240601/us-east-1/s3/aws4_request"),
+            Map.entry("X-Amz-Date", "20240601T120000Z"),
+            Map.entry("X-Amz-Expires", "3600"),
+            Map.entry("X-Amz-SignedHeaders", "host"),
+            Map.entry("X-Amz-Signature", "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef"),
+            Map.entry("response-content-type", "application/octet-stream"),
+            Map.entry("versionId", "3HL4kqtJlcpXroDTDmJ-rmSpXd3dIbrHY"));
+
+    private MultiMap headers;
+    private MultiMap queryParameters;
+
+    @Setup
+    public void setup()
+    {
+        headers = buildHeaders();
+        queryParameters = buildQueryParameters();
+    }
+
+    @Benchmark
+    public MultiMap buildHeaders()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(false);
+        HEADERS.forEach(entry -> builder.add(entry.getKey(), entry.getValue()));
+        return builder.build();
+    }
+
+    @Benchmark
+    public MultiMap buildQueryParameters()
+    {
+        ImmutableMultiMap.Builder builder = ImmutableMultiMap.builder(true);
+        QUERY_PARAMETERS.forEach(entry -> builder.add(entry.getKey(), entry.getValue()));
+        return builder.build();
+    }
+
+    @Benchmark
+    public Object parseHeaders()
+    {
+        return RequestHeadersBuilder.parseHeaders(headers);
+    }
+
+    @Benchmark
+    public SigningQueryParameters splitQueryParameters()
+    {
+        return SigningQueryParameters.splitQueryParameters(queryParameters);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*\\." + BenchmarkRequestParsing.class.getSimpleName() + "\\..*")
+                .build();
+        new Runner(options).run();
+    }
+}
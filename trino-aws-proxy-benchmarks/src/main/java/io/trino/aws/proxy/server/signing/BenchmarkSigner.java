@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningContext;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkSigner
+{
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY", Optional.of("THIS_IS_A_SESSION_TOKEN"));
+    private static final URI REQUEST_URI = URI.create("http://localhost:9000/api/v1/s3Proxy/s3/bucket/some/deeply/nested/object-key.parquet");
+    // requests are signed with a fixed timestamp so allow for any benchmark duration
+    private static final Duration MAX_CLOCK_DRIFT = Duration.ofDays(1);
+
+    @State(Scope.Thread)
+    public static class SigningRequest
+    {
+        @Param({"true", "false"})
+        private boolean cacheSigningKeys;
+
+        private SigningHeaders signingHeaders;
+        private MultiMap queryParameters;
+        private Instant requestDate;
+        private SigningKeyCache signingKeyCache;
+
+        @Setup
+        public void setup()
+        {
+            MultiMap headers = ImmutableMultiMap.builder(false)
+                    .add("Host", "localhost:9000")
+                    .add("User-Agent", "aws-sdk-java/2.25.32 Linux/6.1 OpenJDK_64-Bit_Server_VM/22 Java/22 vendor/Oracle_Corporation")
+                    .add("Amz-Sdk-Invocation-Id", "4a5c2e4e-0b3c-4f0c-9a3b-6b2d0c1e9f11")
+                    .add("Amz-Sdk-Request", "attempt=1; max=4")
+                    .add("Content-Type", "application/octet-stream")
+                    .add("X-Amz-Content-SHA256", "UNSIGNED-PAYLOAD")
+                    .add("X-Amz-Date", "ignored")
+                    .add("X-Amz-Security-Token", "THIS_IS_A_SESSION_TOKEN")
+                    .add("X-Amz-Meta-Owner", "benchmark")
+                    .build();
+            signingHeaders = SigningHeaders.build(headers);
+            queryParameters = ImmutableMultiMap.builder(true)
+                    .add("list-type", "2")
+                    .add("prefix", "some/deeply/nested/")
+                    .add("delimiter", "/")
+                    .add("max-keys", "1000")
+                    .build();
+            requestDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            // without caching every signature derives its key again, in the SDK signers as well
+            signingKeyCache = new SigningKeyCache(cacheSigningKeys ? 1000 : 0);
+        }
+    }
+
+    // presigning always uses the SDK signer, so only sign is run with both signers
+    @State(Scope.Thread)
+    public static class SignerType
+    {
+        @Param({"true", "false"})
+        private boolean nativeSigner;
+    }
+
+    @Benchmark
+    public SigningContext sign(SigningRequest request, SignerType signerType)
+    {
+        return Signer.sign(
+                SigningServiceType.S3,
+                REQUEST_URI,
+                request.signingHeaders,
+                request.queryParameters,
+                "us-east-1",
+                request.requestDate,
+                "GET",
+                CREDENTIAL,
+                MAX_CLOCK_DRIFT,
+                RequestContent.EMPTY,
+                request.signingKeyCache,
+                signerType.nativeSigner);
+    }
+
+    @Benchmark
+    public SigningContext presign(SigningRequest request)
+    {
+        return Signer.presign(
+                SigningServiceType.S3,
+                REQUEST_URI,
+                request.signingHeaders,
+                request.queryParameters,
+                "us-east-1",
+                request.requestDate,
+                request.requestDate.plus(Duration.ofHours(1)),
+                "GET",
+                CREDENTIAL,
+                MAX_CLOCK_DRIFT,
+                RequestContent.EMPTY,
+                request.signingKeyCache);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*\\." + BenchmarkSigner.class.getSimpleName() + "\\..*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.google.common.hash.Hashing;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A randomly generated, correctly signed {@code aws-chunked} payload along with the
+ * state required to verify it. Used by benchmarks outside this package that cannot
+ * reach the package-private chunk signing classes.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public final class ChunkedPayload
+{
+    private static final String REGION = "us-east-1";
+    private static final String SERVICE_NAME = "s3";
+
+    private final Instant requestDate;
+    private final String keyPath;
+    private final byte[] signingKey;
+    private final String seed;
+    private final byte[] encoded;
+    private final int decodedLength;
+
+    private ChunkedPayload(Instant requestDate, String keyPath, byte[] signingKey, String seed, byte[] encoded, int decodedLength)
+    {
+        this.requestDate = requireNonNull(requestDate, "requestDate is null");
+        this.keyPath = requireNonNull(keyPath, "keyPath is null");
+        this.signingKey = requireNonNull(signingKey, "signingKey is null");
+        this.seed = requireNonNull(seed, "seed is null");
+        this.encoded = requireNonNull(encoded, "encoded is null");
+        this.decodedLength = decodedLength;
+    }
+
+    public static ChunkedPayload generate(int payloadSize, int chunkSize)
+    {
+        Instant requestDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        String keyPath = "%s/%s/%s/aws4_request".formatted(SigningKeyCache.dateStamp(requestDate), REGION, SERVICE_NAME);
+        byte[] signingKey = new SigningKeyCache(1).signingKey(new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY"), requestDate, REGION, SERVICE_NAME);
+        // the seed is the request signature, any 64 hex characters will do here
+        String seed = Hashing.sha256().hashString(keyPath, UTF_8).toString();
+
+        byte[] payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+
+        ChunkSigner chunkSigner = new ChunkSigner(requestDate, keyPath, signingKey);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(payloadSize + 1024);
+        String previousSignature = seed;
+        int offset = 0;
+        while (true) {
+            int length = Math.min(chunkSize, payloadSize - offset);
+            String signature = chunkSigner.signChunk(Hashing.sha256().hashBytes(payload, offset, length), previousSignature);
+            encoded.writeBytes("%s;chunk-signature=%s\r\n".formatted(Integer.toHexString(length), signature).getBytes(UTF_8));
+            encoded.write(payload, offset, length);
+            encoded.writeBytes("\r\n".getBytes(UTF_8));
+            if (length == 0) {
+                break;
+            }
+            previousSignature = signature;
+            offset += length;
+        }
+
+        return new ChunkedPayload(requestDate, keyPath, signingKey, seed, encoded.toByteArray(), payloadSize);
+    }
+
+    public byte[] encoded()
+    {
+        return encoded;
+    }
+
+    public int decodedLength()
+    {
+        return decodedLength;
+    }
+
+    public ChunkSigningSession newSigningSession()
+    {
+        return new InternalChunkSigningSession(new ChunkSigner(requestDate, keyPath, signingKey), seed);
+    }
+}
@@ -36,7 +36,8 @@ public interface RequestContent
     }
 
     /**
-     * returns content bytes iff {@code contentType() == STANDARD}
+     * returns content bytes iff {@code contentType() == STANDARD}. Content that is streamed to the remote
+     * cannot be read again, so this must be called before {@link #inputStream()} hands out the stream.
      */
     default Optional<byte[]> standardBytes()
     {
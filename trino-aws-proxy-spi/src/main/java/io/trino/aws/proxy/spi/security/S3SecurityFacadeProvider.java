@@ -17,7 +17,12 @@ import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import jakarta.ws.rs.WebApplicationException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 
 public interface S3SecurityFacadeProvider
 {
@@ -29,4 +34,21 @@ public interface S3SecurityFacadeProvider
      */
     S3SecurityFacade securityFacadeForRequest(ParsedS3Request request, Optional<Identity> identity)
             throws WebApplicationException;
+
+    /**
+     * Apply security to several requests that are authorized together, e.g. presigning one object
+     * for several HTTP methods. {@code lowercaseActions} holds the action of each request (see
+     * {@link S3SecurityFacade#apply(Optional)}) and the responses are returned in request order.
+     * Providers that can evaluate the requests in a single round trip should override this, by
+     * default each request is evaluated on its own.
+     */
+    default List<SecurityResponse> applyAll(List<ParsedS3Request> requests, List<Optional<String>> lowercaseActions, Optional<Identity> identity)
+            throws WebApplicationException
+    {
+        checkArgument(requests.size() == lowercaseActions.size(), "requests and lowercaseActions must have the same size");
+
+        return IntStream.range(0, requests.size())
+                .mapToObj(i -> securityFacadeForRequest(requests.get(i), identity).apply(lowercaseActions.get(i)))
+                .collect(toImmutableList());
+    }
 }
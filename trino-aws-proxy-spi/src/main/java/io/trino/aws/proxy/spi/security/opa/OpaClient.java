@@ -15,7 +15,22 @@ package io.trino.aws.proxy.spi.security.opa;
 
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 
+import java.util.List;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
 public interface OpaClient
 {
     SecurityResponse getSecurityResponse(OpaRequest request);
+
+    /**
+     * Evaluate several requests, returning the responses in request order. Implementations should
+     * evaluate them concurrently or in a single OPA call, by default they are evaluated one by one.
+     */
+    default List<SecurityResponse> getSecurityResponses(List<OpaRequest> requests)
+    {
+        return requests.stream()
+                .map(this::getSecurityResponse)
+                .collect(toImmutableList());
+    }
 }
@@ -18,10 +18,21 @@ import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 @FunctionalInterface
 public interface OpaS3SecurityFacade
 {
     SecurityResponse apply(ParsedS3Request request, Optional<String> lowercaseAction, URI opaServerBaseUri, Optional<Identity> identity);
+
+    /**
+     * The OPA request that decides the check, or empty if the check needs {@link #apply}. When several checks are
+     * authorized together, e.g. for a presigned URL, their OPA requests are evaluated in a single
+     * {@link OpaClient#getSecurityResponses(List)} call.
+     */
+    default Optional<OpaRequest> opaRequest(ParsedS3Request request, Optional<String> lowercaseAction, URI opaServerBaseUri, Optional<Identity> identity)
+    {
+        return Optional.empty();
+    }
 }
@@ -17,7 +17,10 @@ import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
 import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.Optional;
@@ -35,6 +38,9 @@ public class TrinoAwsProxyConfig
     private String logsPath = "/api/v1/s3Proxy/logs";
     private Optional<DataSize> maxPayloadSize = Optional.empty();
     private String statusPath = "/api/v1/s3Proxy/status";
+    private DataSize streamingBufferSize = DataSize.of(64, DataSize.Unit.KILOBYTE);
+    private int streamingBufferPoolSize = 256;
+    private boolean asyncBodylessRequests;
 
     @Config("aws.proxy.s3.hostname")
     @ConfigDescription("Hostname to use for S3 REST operations, virtual-host style addressing is only supported if this is set")
@@ -129,7 +135,7 @@ public class TrinoAwsProxyConfig
     @ConfigDescription("Max request/response payload size, optional")
     public TrinoAwsProxyConfig setMaxPayloadSize(DataSize maxPayloadSize)
     {
-        this.maxPayloadSize = Optional.of(requireNonNull(maxPayloadSize, "requestByteQuota is null"));
+        this.maxPayloadSize = Optional.ofNullable(maxPayloadSize);
         return this;
     }
 
@@ -146,4 +152,47 @@ public class TrinoAwsProxyConfig
         this.statusPath = statusPath;
         return this;
     }
+
+    @NotNull
+    @MinDataSize("1kB")
+    @MaxDataSize("16MB")
+    public DataSize getStreamingBufferSize()
+    {
+        return streamingBufferSize;
+    }
+
+    @Config("aws.proxy.streaming.buffer-size")
+    @ConfigDescription("Size of the pooled buffers used to relay request and response bodies")
+    public TrinoAwsProxyConfig setStreamingBufferSize(DataSize streamingBufferSize)
+    {
+        this.streamingBufferSize = streamingBufferSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getStreamingBufferPoolSize()
+    {
+        return streamingBufferPoolSize;
+    }
+
+    @Config("aws.proxy.streaming.buffer-pool-size")
+    @ConfigDescription("Maximum number of idle relay buffers kept for reuse")
+    public TrinoAwsProxyConfig setStreamingBufferPoolSize(int streamingBufferPoolSize)
+    {
+        this.streamingBufferPoolSize = streamingBufferPoolSize;
+        return this;
+    }
+
+    public boolean isAsyncBodylessRequests()
+    {
+        return asyncBodylessRequests;
+    }
+
+    @Config("aws.proxy.s3.async-bodyless-requests.enabled")
+    @ConfigDescription("Whether to proxy HEAD and DELETE requests without a body using the non-blocking HTTP client API")
+    public TrinoAwsProxyConfig setAsyncBodylessRequests(boolean asyncBodylessRequests)
+    {
+        this.asyncBodylessRequests = asyncBodylessRequests;
+        return this;
+    }
 }
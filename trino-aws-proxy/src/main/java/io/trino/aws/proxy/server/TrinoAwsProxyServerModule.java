@@ -29,12 +29,16 @@ import io.airlift.configuration.AbstractConfigurationAwareModule;
 import io.airlift.http.server.HttpServerBinder;
 import io.airlift.jaxrs.JaxrsBinder;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
 import io.trino.aws.proxy.server.credentials.CredentialsModule;
 import io.trino.aws.proxy.server.credentials.file.FileBasedCredentialsModule;
 import io.trino.aws.proxy.server.credentials.http.HttpCredentialsModule;
 import io.trino.aws.proxy.server.remote.DefaultRemoteS3Module;
 import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController;
+import io.trino.aws.proxy.server.remote.RemoteS3ConnectionControllerConfig;
 import io.trino.aws.proxy.server.rest.LimitStreamController;
+import io.trino.aws.proxy.server.rest.ProxyClientRequestStats;
+import io.trino.aws.proxy.server.rest.ProxyRequestStats;
 import io.trino.aws.proxy.server.rest.ResourceSecurityDynamicFeature;
 import io.trino.aws.proxy.server.rest.RestModule;
 import io.trino.aws.proxy.server.rest.S3PresignController;
@@ -60,6 +64,7 @@ import io.trino.aws.proxy.spi.remote.RemoteUriFacade;
 import io.trino.aws.proxy.spi.rest.S3RequestRewriter;
 import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
 import org.glassfish.jersey.server.model.Resource;
+import org.weakref.jmx.MBeanExporter;
 
 import java.util.List;
 import java.util.Map;
@@ -73,6 +78,7 @@ import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.airlift.http.server.HttpServerBinder.httpServerBinder;
 import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class TrinoAwsProxyServerModule
@@ -107,9 +113,20 @@ public class TrinoAwsProxyServerModule
 
         binder.bind(LimitStreamController.class).in(Scopes.SINGLETON);
 
-        // TODO config, etc.
-        httpClientBinder(binder).bindHttpClient("ProxyClient", ForProxyClient.class);
+        // configured via the "ProxyClient.http-client.*" properties, the defaults are tuned for bursts of requests to a small number of S3 endpoints.
+        // The Airlift client does not expose TCP_NODELAY or the socket buffer sizes: Jetty enables TCP_NODELAY and leaves the buffers to the OS
+        httpClientBinder(binder).bindHttpClient("ProxyClient", ForProxyClient.class)
+                .withConfigDefaults(config -> config
+                        .setMaxConnectionsPerServer(500)
+                        .setMaxRequestsQueuedPerDestination(4096)
+                        .setConnectTimeout(new Duration(5, SECONDS))
+                        .setIdleTimeout(new Duration(60, SECONDS)));
+        binder.bind(ProxyClientRequestStats.class).in(Scopes.SINGLETON);
+        // per endpoint MBeans are only exported when the server is started with an MBeanExporter
+        newOptionalBinder(binder, MBeanExporter.class);
+        binder.bind(ProxyRequestStats.class).in(Scopes.SINGLETON);
         binder.bind(TrinoS3ProxyClient.class).in(Scopes.SINGLETON);
+        configBinder(binder).bindConfig(RemoteS3ConnectionControllerConfig.class);
         binder.bind(RemoteS3ConnectionController.class).in(Scopes.SINGLETON);
 
         HttpServerBinder httpServerBinder = httpServerBinder(binder);
@@ -160,6 +177,9 @@ public class TrinoAwsProxyServerModule
         newExporter(binder).export(RemoteS3ConnectionController.class).withGeneratedName();
         newExporter(binder).export(ResourceSecurityDynamicFeature.class).withGeneratedName();
         newExporter(binder).export(TrinoS3ProxyClient.class).withGeneratedName();
+        newExporter(binder).export(ProxyClientRequestStats.class).withGeneratedName();
+        newExporter(binder).export(ProxyRequestStats.class).withGeneratedName();
+        newExporter(binder).export(LimitStreamController.class).withGeneratedName();
     }
 
     @Provides
@@ -14,11 +14,10 @@
 package io.trino.aws.proxy.server.credentials.file;
 
 import com.google.inject.Binder;
+import com.google.inject.Scopes;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
-import io.trino.aws.proxy.spi.credentials.IdentityCredential;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
-import static io.airlift.json.JsonCodecBinder.jsonCodecBinder;
 import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.credentialsProviderModule;
 
 public class FileBasedCredentialsModule
@@ -35,8 +34,7 @@ public class FileBasedCredentialsModule
                 FileBasedCredentialsProvider.class,
                 innerBinder -> {
                     configBinder(innerBinder).bindConfig(FileBasedCredentialsProviderConfig.class);
-                    innerBinder.bind(FileBasedCredentialsProvider.class);
-                    jsonCodecBinder(innerBinder).bindListJsonCodec(IdentityCredential.class);
+                    innerBinder.bind(FileBasedCredentialsProvider.class).in(Scopes.SINGLETON);
                 }));
     }
 }
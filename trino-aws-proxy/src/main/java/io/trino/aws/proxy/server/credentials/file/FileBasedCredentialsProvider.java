@@ -13,52 +13,129 @@
  */
 package io.trino.aws.proxy.server.credentials.file;
 
-import com.google.common.io.Files;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
-import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
 import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.util.List;
+import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.ScheduledExecutorService;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class FileBasedCredentialsProvider
         implements CredentialsProvider
 {
-    private final Map<String, IdentityCredential> credentialsStore;
+    private static final Logger log = Logger.get(FileBasedCredentialsProvider.class);
+
+    private record CredentialsKey(String emulatedAccessKey, Optional<String> session)
+    {
+        private CredentialsKey
+        {
+            requireNonNull(emulatedAccessKey, "emulatedAccessKey is null");
+            requireNonNull(session, "session is null");
+        }
+    }
+
+    // the lastModified/length of the file the index was built from, used to detect changes
+    private record CredentialsStore(Map<CredentialsKey, IdentityCredential> credentials, long lastModified, long length)
+    {
+        private CredentialsStore
+        {
+            credentials = Map.copyOf(credentials);
+        }
+    }
+
+    private final File credentialsFile;
+    private final ObjectReader credentialsReader;
+    private final Optional<Duration> refreshPeriod;
+    private final ScheduledExecutorService refreshExecutor;
+    private volatile CredentialsStore credentialsStore;
 
     @Inject
-    public FileBasedCredentialsProvider(FileBasedCredentialsProviderConfig config, JsonCodec<List<IdentityCredential>> jsonCodec)
+    public FileBasedCredentialsProvider(FileBasedCredentialsProviderConfig config, ObjectMapper objectMapper)
     {
         requireNonNull(config, "Config is null");
-        requireNonNull(jsonCodec, "jsonCodec is null");
-        this.credentialsStore = buildCredentialsMap(config.getCredentialsFile(), jsonCodec);
+        requireNonNull(objectMapper, "objectMapper is null");
+        this.credentialsFile = config.getCredentialsFile();
+        this.credentialsReader = objectMapper.readerFor(IdentityCredential.class);
+        this.refreshPeriod = config.getRefreshPeriod();
+        this.refreshExecutor = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("file-credentials-refresh").setDaemon(true).build());
+        this.credentialsStore = buildCredentialsStore();
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        refreshPeriod.ifPresent(period -> refreshExecutor.scheduleWithFixedDelay(this::refreshIfChanged, period.toMillis(), period.toMillis(), MILLISECONDS));
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        refreshExecutor.shutdownNow();
     }
 
-    private Map<String, IdentityCredential> buildCredentialsMap(File credentialsFile, JsonCodec<List<IdentityCredential>> jsonCodec)
+    @Override
+    public Optional<IdentityCredential> credentials(String emulatedAccessKey, Optional<String> session)
+    {
+        return Optional.ofNullable(credentialsStore.credentials().get(new CredentialsKey(emulatedAccessKey, session)));
+    }
+
+    @VisibleForTesting
+    void refreshIfChanged()
     {
-        List<IdentityCredential> credentialsList;
+        CredentialsStore currentStore = credentialsStore;
+        if ((credentialsFile.lastModified() == currentStore.lastModified()) && (credentialsFile.length() == currentStore.length())) {
+            return;
+        }
         try {
-            credentialsList = jsonCodec.fromJson(Files.toByteArray(credentialsFile));
+            CredentialsStore newStore = buildCredentialsStore();
+            credentialsStore = newStore;
+            log.info("Reloaded %s credentials from %s", newStore.credentials().size(), credentialsFile);
         }
-        catch (IOException e) {
-            throw new UncheckedIOException("Failed to read credentials file", e);
+        catch (RuntimeException e) {
+            // keep serving the previous credentials, the file may be in the middle of being rewritten
+            log.error(e, "Failed to reload credentials from %s", credentialsFile);
         }
-        return credentialsList.stream()
-                .collect(toImmutableMap(credentials -> credentials.emulated().accessKey(), Function.identity()));
     }
 
-    @Override
-    public Optional<IdentityCredential> credentials(String emulatedAccessKey, Optional<String> session)
+    private CredentialsStore buildCredentialsStore()
     {
-        return Optional.ofNullable(credentialsStore.get(emulatedAccessKey));
+        // read the attributes first so that a write racing with the parse is picked up by the next refresh
+        long lastModified = credentialsFile.lastModified();
+        long length = credentialsFile.length();
+
+        Map<CredentialsKey, IdentityCredential> credentials = new HashMap<>();
+        try (InputStream inputStream = Files.newInputStream(credentialsFile.toPath());
+                MappingIterator<IdentityCredential> iterator = credentialsReader.readValues(inputStream)) {
+            while (iterator.hasNextValue()) {
+                IdentityCredential identityCredential = iterator.nextValue();
+                CredentialsKey key = new CredentialsKey(identityCredential.emulated().accessKey(), identityCredential.emulated().session());
+                checkArgument(credentials.putIfAbsent(key, identityCredential) == null, "Duplicate credentials for access key %s", key.emulatedAccessKey());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to read credentials file", e);
+        }
+        return new CredentialsStore(credentials, lastModified, length);
     }
 }
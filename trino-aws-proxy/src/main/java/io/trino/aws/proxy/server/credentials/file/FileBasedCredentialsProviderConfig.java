@@ -14,14 +14,19 @@
 package io.trino.aws.proxy.server.credentials.file;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.configuration.validation.FileExists;
+import io.airlift.units.Duration;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
 
 import java.io.File;
+import java.util.Optional;
 
 public class FileBasedCredentialsProviderConfig
 {
     private File credentialsFile;
+    private Duration refreshPeriod;
 
     @NotNull
     @FileExists
@@ -36,4 +41,23 @@ public class FileBasedCredentialsProviderConfig
         this.credentialsFile = credentialsFile;
         return this;
     }
+
+    public Optional<Duration> getRefreshPeriod()
+    {
+        return Optional.ofNullable(refreshPeriod);
+    }
+
+    @Config("credentials-provider.credentials-file-refresh-period")
+    @ConfigDescription("How often the credentials file is checked for changes and reloaded, by default it is only read at startup")
+    public FileBasedCredentialsProviderConfig setRefreshPeriod(Duration refreshPeriod)
+    {
+        this.refreshPeriod = refreshPeriod;
+        return this;
+    }
+
+    @AssertTrue(message = "credentials-provider.credentials-file-refresh-period must be at least 1ms")
+    public boolean isRefreshPeriodValid()
+    {
+        return (refreshPeriod == null) || (refreshPeriod.toMillis() >= 1);
+    }
 }
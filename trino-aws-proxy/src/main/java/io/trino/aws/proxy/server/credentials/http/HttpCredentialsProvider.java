@@ -13,10 +13,14 @@
  */
 package io.trino.aws.proxy.server.credentials.http;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimaps;
 import com.google.inject.Inject;
 import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
@@ -24,15 +28,24 @@ import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
 import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.core.UriBuilder;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static java.util.Objects.requireNonNull;
@@ -40,6 +53,8 @@ import static java.util.Objects.requireNonNull;
 public class HttpCredentialsProvider
         implements CredentialsProvider
 {
+    private static final Logger log = Logger.get(HttpCredentialsProvider.class);
+
     private record CredentialsKey(String emulatedAccessKey, Optional<String> session)
     {
         private CredentialsKey {
@@ -54,19 +69,71 @@ public class HttpCredentialsProvider
     private final Map<String, String> httpHeaders;
     private final Optional<LoadingCache<CredentialsKey, Optional<IdentityCredential>>> credentialsCache;
     private final Function<CredentialsKey, Optional<IdentityCredential>> credentialsFetcher;
+    private final Set<String> prefetchKeys;
+    // runs the cache maintenance and the background refreshes, which block on the credentials service
+    private final Executor refreshExecutor;
 
     @Inject
     public HttpCredentialsProvider(@ForHttpCredentialsProvider HttpClient httpClient, HttpCredentialsProviderConfig config, JsonCodec<IdentityCredential> jsonCodec)
     {
+        this(httpClient, config, jsonCodec, Ticker.systemTicker(), Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @VisibleForTesting
+    HttpCredentialsProvider(HttpClient httpClient, HttpCredentialsProviderConfig config, JsonCodec<IdentityCredential> jsonCodec, Ticker ticker, Executor refreshExecutor)
+    {
+        requireNonNull(ticker, "ticker is null");
+        this.refreshExecutor = requireNonNull(refreshExecutor, "refreshExecutor is null");
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.jsonCodec = requireNonNull(jsonCodec, "jsonCodec is null");
         this.httpCredentialsProviderEndpoint = config.getEndpoint();
         this.httpHeaders = ImmutableMap.copyOf(config.getHttpHeaders());
+        this.prefetchKeys = ImmutableSet.copyOf(config.getCachePrefetchKeys());
         if (config.getCacheSize() > 0 && config.getCacheTtl().toMillis() > 0) {
-            LoadingCache<CredentialsKey, Optional<IdentityCredential>> cache = Caffeine.newBuilder()
+            Duration ttl = config.getCacheTtl().toJavaTime();
+            Duration negativeTtl = config.getCacheNegativeTtl().orElse(config.getCacheTtl()).toJavaTime();
+            Caffeine<CredentialsKey, Optional<IdentityCredential>> cacheBuilder = Caffeine.newBuilder()
+                    .ticker(ticker)
+                    .executor(refreshExecutor)
                     .maximumSize(config.getCacheSize())
-                    .expireAfterWrite(config.getCacheTtl().toJavaTime())
-                    .build(this::fetchCredentials);
+                    .expireAfter(new Expiry<CredentialsKey, Optional<IdentityCredential>>()
+                    {
+                        @Override
+                        public long expireAfterCreate(CredentialsKey key, Optional<IdentityCredential> value, long currentTime)
+                        {
+                            return value.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(CredentialsKey key, Optional<IdentityCredential> value, long currentTime, long currentDuration)
+                        {
+                            return expireAfterCreate(key, value, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(CredentialsKey key, Optional<IdentityCredential> value, long currentTime, long currentDuration)
+                        {
+                            return currentDuration;
+                        }
+                    });
+            if (config.getCacheRefreshInterval().toMillis() > 0) {
+                // reloads run asynchronously, callers keep getting the cached credentials until the reload completes
+                cacheBuilder.refreshAfterWrite(config.getCacheRefreshInterval().toJavaTime());
+            }
+            LoadingCache<CredentialsKey, Optional<IdentityCredential>> cache = cacheBuilder.build(new CacheLoader<CredentialsKey, Optional<IdentityCredential>>()
+            {
+                @Override
+                public Optional<IdentityCredential> load(CredentialsKey credentialsKey)
+                {
+                    return fetchCredentials(credentialsKey);
+                }
+
+                @Override
+                public Optional<IdentityCredential> reload(CredentialsKey credentialsKey, Optional<IdentityCredential> oldValue)
+                {
+                    return refreshCredentials(credentialsKey);
+                }
+            });
             this.credentialsCache = Optional.of(cache);
             this.credentialsFetcher = cache::get;
         }
@@ -76,6 +143,35 @@ public class HttpCredentialsProvider
         }
     }
 
+    @PostConstruct
+    public void prefetchCredentials()
+    {
+        credentialsCache.ifPresent(cache -> {
+            if (prefetchKeys.isEmpty()) {
+                return;
+            }
+            Set<CredentialsKey> keys = prefetchKeys.stream()
+                    .map(emulatedAccessKey -> new CredentialsKey(emulatedAccessKey, Optional.empty()))
+                    .collect(toImmutableSet());
+            try {
+                long found = cache.getAll(keys).values().stream().filter(Optional::isPresent).count();
+                log.info("Prefetched credentials for %s of %s access keys", found, keys.size());
+            }
+            catch (RuntimeException e) {
+                log.warn(e, "Failed to prefetch credentials");
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutDown()
+    {
+        // tests run the refreshes on an executor of their own
+        if (refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
     @Override
     public Optional<IdentityCredential> credentials(String emulatedAccessKey, Optional<String> session)
     {
@@ -92,16 +188,35 @@ public class HttpCredentialsProvider
     }
 
     private Optional<IdentityCredential> fetchCredentials(CredentialsKey credentialsKey)
+    {
+        JsonResponse<IdentityCredential> response = executeRequest(credentialsKey);
+        if (response.getStatusCode() == HttpStatus.NOT_FOUND.code() || !response.hasValue()) {
+            return Optional.empty();
+        }
+        return Optional.of(response.getValue());
+    }
+
+    private Optional<IdentityCredential> refreshCredentials(CredentialsKey credentialsKey)
+    {
+        JsonResponse<IdentityCredential> response = executeRequest(credentialsKey);
+        // failing the reload keeps the cached credentials until they expire, so that a credentials service outage
+        // does not revoke access for keys that are in use
+        if (response.getStatusCode() >= 500) {
+            throw new IllegalStateException("Credentials service returned status %s for %s".formatted(response.getStatusCode(), credentialsKey.emulatedAccessKey()));
+        }
+        if (response.getStatusCode() == HttpStatus.NOT_FOUND.code() || !response.hasValue()) {
+            return Optional.empty();
+        }
+        return Optional.of(response.getValue());
+    }
+
+    private JsonResponse<IdentityCredential> executeRequest(CredentialsKey credentialsKey)
     {
         UriBuilder uriBuilder = UriBuilder.fromUri(httpCredentialsProviderEndpoint).path(credentialsKey.emulatedAccessKey());
         credentialsKey.session().ifPresent(sessionToken -> uriBuilder.queryParam("sessionToken", sessionToken));
         Request.Builder requestBuilder = prepareGet()
                 .addHeaders(Multimaps.forMap(httpHeaders))
                 .setUri(uriBuilder.build());
-        JsonResponse<IdentityCredential> response = httpClient.execute(requestBuilder.build(), createFullJsonResponseHandler(jsonCodec));
-        if (response.getStatusCode() == HttpStatus.NOT_FOUND.code() || !response.hasValue()) {
-            return Optional.empty();
-        }
-        return Optional.of(response.getValue());
+        return httpClient.execute(requestBuilder.build(), createFullJsonResponseHandler(jsonCodec));
     }
 }
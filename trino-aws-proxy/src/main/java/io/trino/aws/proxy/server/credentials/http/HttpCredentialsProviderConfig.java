@@ -15,15 +15,19 @@ package io.trino.aws.proxy.server.credentials.http;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
@@ -33,6 +37,9 @@ public class HttpCredentialsProviderConfig
     private Map<String, String> httpHeaders = ImmutableMap.of();
     private long cacheSize;
     private Duration cacheTtl = Duration.ZERO;
+    private Duration cacheNegativeTtl;
+    private Duration cacheRefreshInterval = Duration.ZERO;
+    private Set<String> cachePrefetchKeys = ImmutableSet.of();
 
     @NotNull
     public URI getEndpoint()
@@ -101,4 +108,52 @@ public class HttpCredentialsProviderConfig
     {
         return cacheTtl;
     }
+
+    @Config("credentials-provider.http.cache-negative-ttl")
+    @ConfigDescription("In-memory cache TTL for access keys the credentials provider has no credentials for, defaults to the cache TTL")
+    public HttpCredentialsProviderConfig setCacheNegativeTtl(Duration cacheNegativeTtl)
+    {
+        this.cacheNegativeTtl = cacheNegativeTtl;
+        return this;
+    }
+
+    public Optional<Duration> getCacheNegativeTtl()
+    {
+        return Optional.ofNullable(cacheNegativeTtl);
+    }
+
+    @Config("credentials-provider.http.cache-refresh-interval")
+    @ConfigDescription("Cached credentials older than this are reloaded in the background on their next use, while the cached " +
+            "credentials keep being returned, defaults to 0 seconds (no refresh)")
+    public HttpCredentialsProviderConfig setCacheRefreshInterval(Duration cacheRefreshInterval)
+    {
+        this.cacheRefreshInterval = cacheRefreshInterval;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getCacheRefreshInterval()
+    {
+        return cacheRefreshInterval;
+    }
+
+    @Config("credentials-provider.http.cache-prefetch-keys")
+    @ConfigDescription("Comma separated list of emulated access keys whose credentials are loaded into the cache at startup")
+    public HttpCredentialsProviderConfig setCachePrefetchKeys(String cachePrefetchKeys)
+    {
+        this.cachePrefetchKeys = ImmutableSet.copyOf(Splitter.on(",").trimResults().omitEmptyStrings().split(cachePrefetchKeys));
+        return this;
+    }
+
+    public Set<String> getCachePrefetchKeys()
+    {
+        return cachePrefetchKeys;
+    }
+
+    @AssertTrue(message = "credentials-provider.http.cache-refresh-interval must be less than credentials-provider.http.cache-ttl")
+    public boolean isCacheRefreshIntervalValid()
+    {
+        return (cacheRefreshInterval.toMillis() == 0) || (cacheRefreshInterval.compareTo(cacheTtl) < 0);
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.remote.RemoteS3Connection;
+import io.trino.aws.proxy.spi.remote.RemoteS3ConnectionProvider;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches the lookups of another {@link RemoteS3ConnectionProvider} per emulated access key and bucket. Only
+ * suitable for providers whose result does not depend on anything else in the request (object key, HTTP
+ * method, etc.). Lookups that find no connection are cached for a separate, usually shorter, time.
+ * When a refresh interval is set, the first request that finds an entry older than it starts a background
+ * lookup with its own arguments, and the current value keeps being served until that lookup completes.
+ */
+class CachingRemoteS3ConnectionProvider
+        implements RemoteS3ConnectionProvider
+{
+    private static final Logger log = Logger.get(CachingRemoteS3ConnectionProvider.class);
+
+    private final RemoteS3ConnectionProvider delegate;
+    private final long refreshIntervalNanos;
+    private final Ticker ticker;
+    private final Executor refreshExecutor;
+    private final Cache<CacheKey, CachedConnection> cache;
+
+    private record CacheKey(String emulatedAccessKey, String bucketName)
+    {
+        private CacheKey
+        {
+            requireNonNull(emulatedAccessKey, "emulatedAccessKey is null");
+            requireNonNull(bucketName, "bucketName is null");
+        }
+    }
+
+    private record CachedConnection(Optional<RemoteS3Connection> remoteConnection, long loadedAt, AtomicBoolean refreshing)
+    {
+        private CachedConnection
+        {
+            requireNonNull(remoteConnection, "remoteConnection is null");
+            requireNonNull(refreshing, "refreshing is null");
+        }
+    }
+
+    CachingRemoteS3ConnectionProvider(RemoteS3ConnectionProvider delegate, long maxSize, Duration ttl, Duration negativeTtl, Duration refreshInterval, Executor refreshExecutor)
+    {
+        this(delegate, maxSize, ttl, negativeTtl, refreshInterval, Ticker.systemTicker(), refreshExecutor);
+    }
+
+    CachingRemoteS3ConnectionProvider(RemoteS3ConnectionProvider delegate, long maxSize, Duration ttl, Duration negativeTtl, Duration refreshInterval, Ticker ticker, Executor refreshExecutor)
+    {
+        checkArgument(maxSize > 0, "maxSize must be greater than 0");
+        checkArgument(ttl.isPositive(), "ttl must be positive");
+        checkArgument(!negativeTtl.isNegative(), "negativeTtl is negative");
+        checkArgument(!refreshInterval.isNegative(), "refreshInterval is negative");
+
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.refreshExecutor = requireNonNull(refreshExecutor, "refreshExecutor is null");
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .expireAfter(new Expiry<CacheKey, CachedConnection>()
+                {
+                    @Override
+                    public long expireAfterCreate(CacheKey key, CachedConnection value, long currentTime)
+                    {
+                        return timeToLive(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(CacheKey key, CachedConnection value, long currentTime, long currentDuration)
+                    {
+                        return timeToLive(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(CacheKey key, CachedConnection value, long currentTime, long currentDuration)
+                    {
+                        return currentDuration;
+                    }
+
+                    private long timeToLive(CachedConnection value)
+                    {
+                        return value.remoteConnection().isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    static RemoteS3ConnectionProvider withCache(RemoteS3ConnectionProvider remoteS3ConnectionProvider, RemoteS3ConnectionControllerConfig config, Executor refreshExecutor)
+    {
+        if ((config.getProviderCacheMaxSize() == 0) || remoteS3ConnectionProvider.equals(NOOP)) {
+            return remoteS3ConnectionProvider;
+        }
+        return new CachingRemoteS3ConnectionProvider(
+                remoteS3ConnectionProvider,
+                config.getProviderCacheMaxSize(),
+                config.getProviderCacheTtl().toJavaTime(),
+                config.getProviderCacheNegativeTtl().toJavaTime(),
+                config.getProviderCacheRefreshInterval().toJavaTime(),
+                refreshExecutor);
+    }
+
+    @Override
+    public Optional<RemoteS3Connection> remoteConnection(SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request)
+    {
+        CacheKey key = new CacheKey(signingMetadata.credential().accessKey(), request.bucketName());
+        CachedConnection cachedConnection = cache.get(key, _ -> lookup(signingMetadata, identity, request));
+        if ((refreshIntervalNanos > 0) && ((ticker.read() - cachedConnection.loadedAt()) >= refreshIntervalNanos) && cachedConnection.refreshing().compareAndSet(false, true)) {
+            refresh(key, cachedConnection, signingMetadata, identity, request);
+        }
+        return cachedConnection.remoteConnection();
+    }
+
+    long hitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    long missCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    long size()
+    {
+        return cache.estimatedSize();
+    }
+
+    private void refresh(CacheKey key, CachedConnection staleConnection, SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request)
+    {
+        // the lookup outlives the request, so don't hold on to its body or an in-progress chunk signing session
+        SigningMetadata refreshSigningMetadata = new SigningMetadata(signingMetadata.signingServiceType(), signingMetadata.credential(), Optional.empty());
+        ParsedS3Request refreshRequest = new ParsedS3Request(
+                request.requestId(),
+                request.requestAuthorization(),
+                request.requestDate(),
+                request.bucketName(),
+                request.keyInBucket(),
+                request.requestHeaders(),
+                request.queryParameters(),
+                request.httpVerb(),
+                request.rawPath(),
+                request.rawQuery(),
+                RequestContent.EMPTY);
+        CompletableFuture.supplyAsync(() -> lookup(refreshSigningMetadata, identity, refreshRequest), refreshExecutor)
+                .whenComplete((refreshedConnection, failure) -> {
+                    if (failure != null) {
+                        log.warn(failure, "Failed to refresh remote S3 connection for bucket %s", key.bucketName());
+                        // keep serving the current value, the next request retries
+                        staleConnection.refreshing().set(false);
+                    }
+                    else {
+                        // only replace the entry that was refreshed, it may have expired or been replaced since
+                        cache.asMap().replace(key, staleConnection, refreshedConnection);
+                    }
+                });
+    }
+
+    private CachedConnection lookup(SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request)
+    {
+        Optional<RemoteS3Connection> remoteConnection = delegate.remoteConnection(signingMetadata, identity, request);
+        return new CachedConnection(remoteConnection, ticker.read(), new AtomicBoolean());
+    }
+}
@@ -13,18 +13,26 @@
  */
 package io.trino.aws.proxy.server.remote;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.spi.credentials.Credential;
 import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.remote.RemoteS3Connection;
 import io.trino.aws.proxy.spi.remote.RemoteS3ConnectionProvider;
 import io.trino.aws.proxy.spi.remote.RemoteS3Facade;
 import io.trino.aws.proxy.spi.remote.RemoteSessionRole;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.Managed;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
@@ -34,16 +42,20 @@ import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sts.StsClient;
 import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
 
-import java.io.Closeable;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.trino.aws.proxy.server.remote.CachingRemoteS3ConnectionProvider.withCache;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 
@@ -53,114 +65,306 @@ public class RemoteS3ConnectionController
 
     private final RemoteS3Facade defaultS3Facade;
     private final RemoteS3ConnectionProvider remoteS3ConnectionProvider;
-    private final Map<String, Session> remoteSessions = new ConcurrentHashMap<>();
+    private final SessionFactory sessionFactory;
+    private final Function<Map<String, String>, ConfiguredFacade> facadeFactory;
+    // runs the background refreshes of the provider cache, the lookups may block on a remote service
+    private final ExecutorService providerRefreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Cache<String, Session> remoteSessions;
+    private final Cache<Map<String, String>, ConfiguredFacade> remoteS3Facades;
 
-    private final class Session
-            implements Closeable
+    @VisibleForTesting
+    interface SessionFactory
     {
-        private final String sessionName;
-        private final StsClient stsClient;
-        private final StsAssumeRoleCredentialsProvider credentialsProvider;
+        Session startSession(RemoteSessionRole remoteSessionRole, Credential remoteCredential, String sessionName);
+    }
 
-        // TODO: use useCount and lastUsage to clean old sessions that haven't been used in a while
-        private final AtomicLong useCount = new AtomicLong();
+    // shared by concurrent requests, an evicted resource is closed when its last user releases it
+    private abstract static class SharedResource
+    {
+        // guarded by this
+        private long useCount;
+        private boolean evicted;
+        private boolean closed;
 
-        private Session(String sessionName, StsClient stsClient, StsAssumeRoleCredentialsProvider credentialsProvider)
+        // returns false if the resource has been evicted and a new one must be created
+        synchronized boolean tryAcquire()
         {
-            this.sessionName = requireNonNull(sessionName, "sessionName is null");
-            this.stsClient = requireNonNull(stsClient, "stsClient is null");
-            this.credentialsProvider = requireNonNull(credentialsProvider, "credentialsProvider is null");
+            if (evicted) {
+                return false;
+            }
+            useCount++;
+            return true;
         }
 
-        @Override
-        public void close()
+        synchronized void release()
         {
-            checkState(useCount.get() == 0, "Session is currently being used");
-
-            Session session = remoteSessions.remove(sessionName);
-            requireNonNull(session, "Session was already closed");
-
-            stsClient.close();
+            checkState(useCount > 0, "useCount has gone negative");
+            useCount--;
+            if (evicted && (useCount == 0)) {
+                close();
+            }
         }
 
-        private <T> T withUsage(Function<Credential, T> credentialsConsumer)
+        synchronized void evict()
         {
-            incrementUsage();
-            try {
-                return credentialsConsumer.apply(currentCredential());
+            if (evicted) {
+                return;
             }
-            finally {
-                decrementUsage();
+            evicted = true;
+            if (useCount == 0) {
+                close();
             }
         }
 
-        private void incrementUsage()
+        @VisibleForTesting
+        synchronized boolean isClosed()
         {
-            useCount.incrementAndGet();
+            return closed;
         }
 
-        private void decrementUsage()
+        private void close()
         {
-            if (useCount.decrementAndGet() < 0) {
-                throw new IllegalStateException("Session useCount has gone negative");
-            }
+            closed = true;
+            doClose();
         }
 
-        @SuppressWarnings("SwitchStatementWithTooFewBranches")
-        private Credential currentCredential()
+        protected abstract void doClose();
+    }
+
+    @VisibleForTesting
+    static final class ConfiguredFacade
+            extends SharedResource
+    {
+        private final RemoteS3Facade remoteS3Facade;
+        private final LifeCycleManager lifeCycleManager;
+
+        ConfiguredFacade(RemoteS3Facade remoteS3Facade, LifeCycleManager lifeCycleManager)
+        {
+            this.remoteS3Facade = requireNonNull(remoteS3Facade, "remoteS3Facade is null");
+            this.lifeCycleManager = requireNonNull(lifeCycleManager, "lifeCycleManager is null");
+        }
+
+        @Override
+        protected void doClose()
         {
-            checkState(remoteSessions.containsKey(sessionName), "Session is closed");
+            lifeCycleManager.stop();
+        }
+    }
 
-            AwsCredentials awsCredentials = credentialsProvider.resolveCredentials();
+    @VisibleForTesting
+    static final class Session
+            extends SharedResource
+    {
+        private final String sessionName;
+        private final Supplier<Credential> credentialSupplier;
+        private final Runnable closer;
 
-            return switch (awsCredentials) {
-                case AwsSessionCredentials sessionCredentials ->
-                        new Credential(sessionCredentials.accessKeyId(), sessionCredentials.secretAccessKey(), Optional.of(sessionCredentials.sessionToken()));
-                default -> new Credential(awsCredentials.accessKeyId(), awsCredentials.secretAccessKey());
-            };
+        Session(String sessionName, Supplier<Credential> credentialSupplier, Runnable closer)
+        {
+            this.sessionName = requireNonNull(sessionName, "sessionName is null");
+            this.credentialSupplier = requireNonNull(credentialSupplier, "credentialSupplier is null");
+            this.closer = requireNonNull(closer, "closer is null");
+        }
+
+        @Override
+        protected void doClose()
+        {
+            log.debug("Closing remote session %s", sessionName);
+            closer.run();
+        }
+
+        private Credential currentCredential()
+        {
+            return credentialSupplier.get();
         }
     }
 
     @Inject
-    public RemoteS3ConnectionController(RemoteS3Facade defaultS3Facade, RemoteS3ConnectionProvider remoteS3ConnectionProvider)
+    public RemoteS3ConnectionController(RemoteS3Facade defaultS3Facade, RemoteS3ConnectionProvider remoteS3ConnectionProvider, RemoteS3ConnectionControllerConfig config)
+    {
+        this(defaultS3Facade, remoteS3ConnectionProvider, config, Ticker.systemTicker(), stsSessionFactory(defaultS3Facade, config), RemoteS3ConnectionController::buildRemoteS3Facade);
+    }
+
+    @VisibleForTesting
+    RemoteS3ConnectionController(RemoteS3Facade defaultS3Facade, RemoteS3ConnectionProvider remoteS3ConnectionProvider, RemoteS3ConnectionControllerConfig config,
+            Ticker ticker, SessionFactory sessionFactory, Function<Map<String, String>, ConfiguredFacade> facadeFactory)
     {
         this.defaultS3Facade = requireNonNull(defaultS3Facade, "defaultS3Facade is null");
-        this.remoteS3ConnectionProvider = requireNonNull(remoteS3ConnectionProvider, "remoteS3ConnectionProvider is null");
+        this.remoteS3ConnectionProvider = withCache(requireNonNull(remoteS3ConnectionProvider, "remoteS3ConnectionProvider is null"), config, providerRefreshExecutor);
+        this.sessionFactory = requireNonNull(sessionFactory, "sessionFactory is null");
+        this.facadeFactory = requireNonNull(facadeFactory, "facadeFactory is null");
+
+        // removals only close clients, they run on the thread that evicts rather than on a shared pool
+        remoteSessions = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(directExecutor())
+                .expireAfterAccess(config.getSessionIdleTimeout().toJavaTime())
+                .maximumSize(config.getMaxSessions())
+                .scheduler(Scheduler.systemScheduler())
+                .<String, Session>removalListener((_, session, _) -> {
+                    if (session != null) {
+                        session.evict();
+                    }
+                })
+                .recordStats()
+                .build();
+        remoteS3Facades = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(directExecutor())
+                .expireAfterAccess(config.getFacadeCacheIdleTimeout().toJavaTime())
+                .maximumSize(config.getFacadeCacheMaxSize())
+                .<Map<String, String>, ConfiguredFacade>removalListener((_, configuredFacade, _) -> {
+                    if (configuredFacade != null) {
+                        configuredFacade.evict();
+                    }
+                })
+                .recordStats()
+                .build();
     }
 
     @PreDestroy
     public void shutdown()
     {
-        remoteSessions.values().forEach(Session::close);
+        remoteSessions.invalidateAll();
+        remoteSessions.cleanUp();
+        remoteS3Facades.invalidateAll();
+        remoteS3Facades.cleanUp();
+        providerRefreshExecutor.shutdownNow();
+    }
+
+    @VisibleForTesting
+    void cleanUp()
+    {
+        remoteSessions.cleanUp();
+        remoteS3Facades.cleanUp();
+    }
+
+    @Managed
+    public long getRemoteSessionCount()
+    {
+        return remoteSessions.estimatedSize();
+    }
+
+    @Managed
+    public long getRemoteSessionHitCount()
+    {
+        return remoteSessions.stats().hitCount();
+    }
+
+    @Managed
+    public long getRemoteSessionMissCount()
+    {
+        return remoteSessions.stats().missCount();
+    }
+
+    @Managed
+    public long getRemoteSessionEvictionCount()
+    {
+        return remoteSessions.stats().evictionCount();
+    }
+
+    @Managed
+    public long getFacadeCacheSize()
+    {
+        return remoteS3Facades.estimatedSize();
+    }
+
+    @Managed
+    public long getFacadeCacheHitCount()
+    {
+        return remoteS3Facades.stats().hitCount();
+    }
+
+    @Managed
+    public long getFacadeCacheMissCount()
+    {
+        return remoteS3Facades.stats().missCount();
+    }
+
+    @Managed
+    public long getFacadeCacheEvictionCount()
+    {
+        return remoteS3Facades.stats().evictionCount();
+    }
+
+    @Managed
+    public long getProviderCacheSize()
+    {
+        return providerCacheStat(CachingRemoteS3ConnectionProvider::size);
+    }
+
+    @Managed
+    public long getProviderCacheHitCount()
+    {
+        return providerCacheStat(CachingRemoteS3ConnectionProvider::hitCount);
+    }
+
+    @Managed
+    public long getProviderCacheMissCount()
+    {
+        return providerCacheStat(CachingRemoteS3ConnectionProvider::missCount);
+    }
+
+    private long providerCacheStat(ToLongFunction<CachingRemoteS3ConnectionProvider> stat)
+    {
+        return (remoteS3ConnectionProvider instanceof CachingRemoteS3ConnectionProvider cachingProvider) ? stat.applyAsLong(cachingProvider) : 0;
     }
 
-    @SuppressWarnings("resource")
     public <T> Optional<T> withRemoteConnection(SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request,
             BiFunction<Credential, RemoteS3Facade, T> credentialsConsumer)
     {
         return remoteS3ConnectionProvider.remoteConnection(signingMetadata, identity, request)
-                .flatMap(remoteConnection -> {
-                    RemoteS3Facade contextRemoteS3Facade = remoteConnection.remoteS3FacadeConfiguration().map(config -> {
-                        // TODO: This should respect the plugin installed for the RemoteS3Facade somehow
-                        Injector subInjector = new Bootstrap(new DefaultRemoteS3Module()).doNotInitializeLogging().quiet().setRequiredConfigurationProperties(config).initialize();
-                        return subInjector.getInstance(RemoteS3Facade.class);
-                    }).orElse(defaultS3Facade);
-
-                    return remoteConnection.remoteSessionRole()
-                            .map(remoteSessionRole ->
-                                    internalRemoteSession(remoteSessionRole, remoteConnection.remoteCredential())
-                                            .withUsage(credentials -> credentialsConsumer.apply(credentials, contextRemoteS3Facade)))
-                            .or(() -> Optional.of(credentialsConsumer.apply(remoteConnection.remoteCredential(), contextRemoteS3Facade)));
-                });
+                .map(remoteConnection -> remoteConnection.remoteS3FacadeConfiguration()
+                        .map(config -> withShared(remoteS3Facades, config, facadeFactory,
+                                configuredFacade -> withRemoteConnection(remoteConnection, configuredFacade.remoteS3Facade, credentialsConsumer)))
+                        .orElseGet(() -> withRemoteConnection(remoteConnection, defaultS3Facade, credentialsConsumer)));
     }
 
-    private Session internalRemoteSession(RemoteSessionRole remoteSessionRole, Credential remoteCredential)
+    private <T> T withRemoteConnection(RemoteS3Connection remoteConnection, RemoteS3Facade remoteS3Facade, BiFunction<Credential, RemoteS3Facade, T> credentialsConsumer)
     {
+        if (remoteConnection.remoteSessionRole().isEmpty()) {
+            return credentialsConsumer.apply(remoteConnection.remoteCredential(), remoteS3Facade);
+        }
+        RemoteSessionRole remoteSessionRole = remoteConnection.remoteSessionRole().get();
+        Credential remoteCredential = remoteConnection.remoteCredential();
         String remoteAccessKey = remoteCredential.accessKey();
-        return remoteSessions.computeIfAbsent(remoteAccessKey, _ -> internalStartRemoteSession(remoteSessionRole, remoteCredential, remoteAccessKey));
+        return withShared(remoteSessions, remoteAccessKey, _ -> sessionFactory.startSession(remoteSessionRole, remoteCredential, remoteAccessKey),
+                session -> credentialsConsumer.apply(session.currentCredential(), remoteS3Facade));
+    }
+
+    private static <K, R extends SharedResource, T> T withShared(Cache<K, R> cache, K key, Function<? super K, ? extends R> factory, Function<R, T> consumer)
+    {
+        while (true) {
+            R resource = cache.get(key, factory);
+            // the resource may have been evicted between the lookup and acquiring it
+            if (resource.tryAcquire()) {
+                try {
+                    return consumer.apply(resource);
+                }
+                finally {
+                    resource.release();
+                }
+            }
+        }
+    }
+
+    private static ConfiguredFacade buildRemoteS3Facade(Map<String, String> config)
+    {
+        // TODO: This should respect the plugin installed for the RemoteS3Facade somehow
+        Injector subInjector = new Bootstrap(new DefaultRemoteS3Module()).doNotInitializeLogging().quiet().setRequiredConfigurationProperties(config).initialize();
+        return new ConfiguredFacade(subInjector.getInstance(RemoteS3Facade.class), subInjector.getInstance(LifeCycleManager.class));
+    }
+
+    private static SessionFactory stsSessionFactory(RemoteS3Facade defaultS3Facade, RemoteS3ConnectionControllerConfig config)
+    {
+        Duration credentialsPrefetchTime = config.getCredentialsPrefetchTime().toJavaTime();
+        Duration credentialsStaleTime = config.getCredentialsStaleTime().toJavaTime();
+        return (remoteSessionRole, remoteCredential, sessionName) ->
+                startStsSession(defaultS3Facade, remoteSessionRole, remoteCredential, sessionName, credentialsPrefetchTime, credentialsStaleTime);
     }
 
-    private Session internalStartRemoteSession(RemoteSessionRole remoteSessionRole, Credential remoteCredential, String sessionName)
+    private static Session startStsSession(RemoteS3Facade defaultS3Facade, RemoteSessionRole remoteSessionRole, Credential remoteCredential, String sessionName,
+            Duration credentialsPrefetchTime, Duration credentialsStaleTime)
     {
         AwsCredentials awsCredentials = remoteCredential.session()
                 .map(session -> (AwsCredentials) AwsSessionCredentials.create(remoteCredential.accessKey(), remoteCredential.secretKey(), session))
@@ -180,9 +384,26 @@ public class RemoteS3ConnectionController
                     remoteSessionRole.externalId().ifPresent(request::externalId);
                 })
                 .stsClient(stsClient)
+                // refresh in the background ahead of expiry so that requests do not wait on STS when the credentials rotate.
+                // The remote roles are only known from requests, so the first use of a session still calls AssumeRole.
                 .asyncCredentialUpdateEnabled(true)
+                .prefetchTime(credentialsPrefetchTime)
+                .staleTime(credentialsStaleTime)
                 .build();
 
-        return new Session(sessionName, stsClient, credentialsProvider);
+        return new Session(sessionName, () -> toCredential(credentialsProvider.resolveCredentials()), () -> {
+            credentialsProvider.close();
+            stsClient.close();
+        });
+    }
+
+    @SuppressWarnings("SwitchStatementWithTooFewBranches")
+    private static Credential toCredential(AwsCredentials awsCredentials)
+    {
+        return switch (awsCredentials) {
+            case AwsSessionCredentials sessionCredentials ->
+                    new Credential(sessionCredentials.accessKeyId(), sessionCredentials.secretAccessKey(), Optional.of(sessionCredentials.sessionToken()));
+            default -> new Credential(awsCredentials.accessKeyId(), awsCredentials.secretAccessKey());
+        };
     }
 }
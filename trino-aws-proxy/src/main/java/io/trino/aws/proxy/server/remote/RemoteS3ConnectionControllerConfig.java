@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+public class RemoteS3ConnectionControllerConfig
+{
+    private Duration sessionIdleTimeout = new Duration(30, TimeUnit.MINUTES);
+    private int maxSessions = 10_000;
+    private Duration credentialsPrefetchTime = new Duration(5, TimeUnit.MINUTES);
+    private Duration credentialsStaleTime = new Duration(1, TimeUnit.MINUTES);
+    private long facadeCacheMaxSize = 1_000;
+    private Duration facadeCacheIdleTimeout = new Duration(1, TimeUnit.HOURS);
+    private long providerCacheMaxSize;
+    private Duration providerCacheTtl = new Duration(5, TimeUnit.MINUTES);
+    private Duration providerCacheNegativeTtl = new Duration(30, TimeUnit.SECONDS);
+    private Duration providerCacheRefreshInterval = Duration.ZERO;
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getSessionIdleTimeout()
+    {
+        return sessionIdleTimeout;
+    }
+
+    @Config("remote-s3-connection.session.idle-timeout")
+    @ConfigDescription("Remote STS sessions that are not used for this long are closed")
+    public RemoteS3ConnectionControllerConfig setSessionIdleTimeout(Duration sessionIdleTimeout)
+    {
+        this.sessionIdleTimeout = sessionIdleTimeout;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxSessions()
+    {
+        return maxSessions;
+    }
+
+    @Config("remote-s3-connection.session.max-sessions")
+    @ConfigDescription("Maximum number of open remote STS sessions, the least recently used sessions are closed first")
+    public RemoteS3ConnectionControllerConfig setMaxSessions(int maxSessions)
+    {
+        this.maxSessions = maxSessions;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getCredentialsPrefetchTime()
+    {
+        return credentialsPrefetchTime;
+    }
+
+    @Config("remote-s3-connection.session.credentials-prefetch-time")
+    @ConfigDescription("Assumed role credentials are refreshed in the background once they are this close to expiring")
+    public RemoteS3ConnectionControllerConfig setCredentialsPrefetchTime(Duration credentialsPrefetchTime)
+    {
+        this.credentialsPrefetchTime = credentialsPrefetchTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getCredentialsStaleTime()
+    {
+        return credentialsStaleTime;
+    }
+
+    @Config("remote-s3-connection.session.credentials-stale-time")
+    @ConfigDescription("Assumed role credentials this close to expiring are refreshed before they are used")
+    public RemoteS3ConnectionControllerConfig setCredentialsStaleTime(Duration credentialsStaleTime)
+    {
+        this.credentialsStaleTime = credentialsStaleTime;
+        return this;
+    }
+
+    @Min(0)
+    public long getFacadeCacheMaxSize()
+    {
+        return facadeCacheMaxSize;
+    }
+
+    @Config("remote-s3-connection.facade-cache.max-size")
+    @ConfigDescription("Maximum number of remote S3 facades built from per-connection facade configurations to cache")
+    public RemoteS3ConnectionControllerConfig setFacadeCacheMaxSize(long facadeCacheMaxSize)
+    {
+        this.facadeCacheMaxSize = facadeCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getFacadeCacheIdleTimeout()
+    {
+        return facadeCacheIdleTimeout;
+    }
+
+    @Config("remote-s3-connection.facade-cache.idle-timeout")
+    @ConfigDescription("Cached remote S3 facades that are not used for this long are evicted")
+    public RemoteS3ConnectionControllerConfig setFacadeCacheIdleTimeout(Duration facadeCacheIdleTimeout)
+    {
+        this.facadeCacheIdleTimeout = facadeCacheIdleTimeout;
+        return this;
+    }
+
+    @Min(0)
+    public long getProviderCacheMaxSize()
+    {
+        return providerCacheMaxSize;
+    }
+
+    @Config("remote-s3-connection.provider-cache.max-size")
+    @ConfigDescription("Maximum number of remote S3 connection provider lookups, per emulated access key and bucket, to cache. 0 disables the cache")
+    public RemoteS3ConnectionControllerConfig setProviderCacheMaxSize(long providerCacheMaxSize)
+    {
+        this.providerCacheMaxSize = providerCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getProviderCacheTtl()
+    {
+        return providerCacheTtl;
+    }
+
+    @Config("remote-s3-connection.provider-cache.ttl")
+    @ConfigDescription("How long a cached remote S3 connection is used before it is looked up again")
+    public RemoteS3ConnectionControllerConfig setProviderCacheTtl(Duration providerCacheTtl)
+    {
+        this.providerCacheTtl = providerCacheTtl;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getProviderCacheNegativeTtl()
+    {
+        return providerCacheNegativeTtl;
+    }
+
+    @Config("remote-s3-connection.provider-cache.negative-ttl")
+    @ConfigDescription("How long a lookup that found no remote S3 connection is cached. 0 disables negative caching")
+    public RemoteS3ConnectionControllerConfig setProviderCacheNegativeTtl(Duration providerCacheNegativeTtl)
+    {
+        this.providerCacheNegativeTtl = providerCacheNegativeTtl;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getProviderCacheRefreshInterval()
+    {
+        return providerCacheRefreshInterval;
+    }
+
+    @Config("remote-s3-connection.provider-cache.refresh-interval")
+    @ConfigDescription("Cached remote S3 connections older than this are refreshed in the background on their next use. 0 disables refreshing")
+    public RemoteS3ConnectionControllerConfig setProviderCacheRefreshInterval(Duration providerCacheRefreshInterval)
+    {
+        this.providerCacheRefreshInterval = providerCacheRefreshInterval;
+        return this;
+    }
+
+    @AssertTrue(message = "remote-s3-connection.provider-cache.refresh-interval must be less than remote-s3-connection.provider-cache.ttl")
+    public boolean isProviderCacheRefreshIntervalValid()
+    {
+        return (providerCacheRefreshInterval.toMillis() == 0) || (providerCacheRefreshInterval.compareTo(providerCacheTtl) < 0);
+    }
+}
@@ -13,22 +13,23 @@
  */
 package io.trino.aws.proxy.server.rest;
 
-import com.google.common.base.Splitter;
 import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
 import jakarta.ws.rs.WebApplicationException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.util.Objects.requireNonNull;
 
 class AwsChunkedInputStream
         extends InputStream
 {
+    // large enough for any realistic chunk header, reads at least this large bypass the buffer
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] CHUNK_SIGNATURE = "chunk-signature".getBytes(ISO_8859_1);
+
     private final InputStream delegate;
     private final ChunkSigningSession chunkSigningSession;
 
@@ -45,6 +46,10 @@ class AwsChunkedInputStream
     private int bytesAccountedFor;
     private final int decodedContentLength;
 
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
     AwsChunkedInputStream(InputStream delegate, ChunkSigningSession chunkSigningSession, int decodedContentLength)
     {
         this.delegate = requireNonNull(delegate, "delegate is null");
@@ -60,15 +65,15 @@ class AwsChunkedInputStream
             return -1;
         }
 
-        int i = delegate.read();
-        if (i < 0) {
+        if ((position == limit) && (fillBuffer() < 0)) {
             throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
         }
 
-        chunkSigningSession.write((byte) (i & 0xff));
+        byte b = buffer[position++];
+        chunkSigningSession.write(b);
         updateBytesRemaining(1);
 
-        return i;
+        return b & 0xff;
     }
 
     @Override
@@ -80,8 +85,27 @@ class AwsChunkedInputStream
         }
 
         len = Math.min(len, bytesRemainingInChunk);
+        if (len == 0) {
+            return 0;
+        }
 
-        int count = delegate.read(b, off, len);
+        int count;
+        if (position < limit) {
+            count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+        }
+        else if (len >= buffer.length) {
+            count = delegate.read(b, off, len);
+        }
+        else {
+            count = fillBuffer();
+            if (count > 0) {
+                count = Math.min(len, count);
+                System.arraycopy(buffer, 0, b, off, count);
+                position = count;
+            }
+        }
         if (count < 0) {
             throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
         }
@@ -150,90 +174,188 @@ class AwsChunkedInputStream
             }
         }
 
-        String header = readLine();
+        int lineEnd = readLine();
+        int chunkSize = parseChunkHeader(position, lineEnd);
+        position = lineEnd + 2;
 
-        boolean success = false;
-        do {
-            List<String> parts = Splitter.on(';').trimResults().limit(2).splitToList(header);
-            if (parts.size() != 2) {
-                break;
-            }
+        bytesRemainingInChunk = chunkSize;
+        if (chunkSize == 0) {
+            readEmptyLine();
+            chunkSigningSession.complete();
+            state = State.LAST_CHUNK;
+        }
+        bytesAccountedFor += chunkSize;
 
-            int chunkSize;
-            try {
-                chunkSize = Integer.parseInt(parts.getFirst(), 16);
-                if (chunkSize < 0) {
-                    break;
-                }
-            }
-            catch (NumberFormatException ignore) {
-                break;
-            }
+        if (bytesAccountedFor > decodedContentLength) {
+            throw new WebApplicationException("chunked data headers report a larger size than originally declared in the request: declared %s sent %s".formatted(decodedContentLength, bytesAccountedFor),
+                    BAD_REQUEST);
+        }
+    }
 
-            Optional<String> chunkSignature = Splitter.on(';').trimResults().withKeyValueSeparator('=').split(parts.get(1))
-                    .entrySet()
-                    .stream()
-                    .filter(entry -> entry.getKey().equalsIgnoreCase("chunk-signature"))
-                    .map(Map.Entry::getValue)
-                    .findFirst();
+    // parses "<hex-size>;<name>=<value>[;<name>=<value>...]" in place and starts the chunk in the signing session
+    private int parseChunkHeader(int start, int end)
+    {
+        int sizeEnd = indexOf(';', start, end);
+        if (sizeEnd < 0) {
+            throw invalidChunkHeader(start, end);
+        }
+
+        int chunkSize = parseHexSize(trimStart(start, sizeEnd), trimEnd(start, sizeEnd));
+        if (chunkSize < 0) {
+            throw invalidChunkHeader(start, end);
+        }
 
-            if (chunkSignature.isEmpty()) {
-                break;
+        int extensionStart = sizeEnd + 1;
+        while (extensionStart <= end) {
+            int extensionEnd = indexOf(';', extensionStart, end);
+            if (extensionEnd < 0) {
+                extensionEnd = end;
             }
 
-            chunkSigningSession.startChunk(chunkSignature.get());
-            bytesRemainingInChunk = chunkSize;
+            int separator = indexOf('=', extensionStart, extensionEnd);
+            if (separator < 0) {
+                throw invalidChunkHeader(start, end);
+            }
 
-            if (chunkSize == 0) {
-                readEmptyLine();
-                chunkSigningSession.complete();
-                state = State.LAST_CHUNK;
+            int nameStart = trimStart(extensionStart, separator);
+            int nameEnd = trimEnd(extensionStart, separator);
+            if (regionMatchesIgnoreCase(nameStart, nameEnd, CHUNK_SIGNATURE)) {
+                int valueStart = trimStart(separator + 1, extensionEnd);
+                int valueEnd = trimEnd(separator + 1, extensionEnd);
+                chunkSigningSession.startChunk(new String(buffer, valueStart, valueEnd - valueStart, ISO_8859_1));
+                return chunkSize;
             }
-            bytesAccountedFor += chunkSize;
 
-            success = true;
+            extensionStart = extensionEnd + 1;
         }
-        while (false);
 
-        if (!success) {
-            throw new WebApplicationException("Invalid chunk header: " + header, BAD_REQUEST);
+        throw invalidChunkHeader(start, end);
+    }
+
+    private int parseHexSize(int start, int end)
+    {
+        if (start == end) {
+            return -1;
         }
-        if (bytesAccountedFor > decodedContentLength) {
-            throw new WebApplicationException("chunked data headers report a larger size than originally declared in the request: declared %s sent %s".formatted(decodedContentLength, bytesAccountedFor),
-                    BAD_REQUEST);
+
+        long size = 0;
+        for (int i = start; i < end; ++i) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            size = (size << 4) | digit;
+            if (size > Integer.MAX_VALUE) {
+                return -1;
+            }
         }
+        return (int) size;
+    }
+
+    private WebApplicationException invalidChunkHeader(int start, int end)
+    {
+        return new WebApplicationException("Invalid chunk header: " + new String(buffer, start, end - start, ISO_8859_1), BAD_REQUEST);
     }
 
     private void readEmptyLine()
             throws IOException
     {
-        String crLf = readLine();
-        if (!crLf.isEmpty()) {
+        int lineEnd = readLine();
+        if (lineEnd != position) {
+            String crLf = new String(buffer, position, lineEnd - position, ISO_8859_1);
             throw new WebApplicationException("Expected CR/LF. Instead read: " + crLf, BAD_REQUEST);
         }
+        position = lineEnd + 2;
     }
 
-    private String readLine()
+    // buffers a complete line and returns the index of its CR, the LF is guaranteed to follow it
+    private int readLine()
             throws IOException
     {
-        StringBuilder line = new StringBuilder();
+        int scanFrom = position;
         while (true) {
-            int i = delegate.read();
-            if (i < 0) {
+            int lineEnd = indexOf('\r', scanFrom, limit);
+            if ((lineEnd >= 0) && (lineEnd + 1 < limit)) {
+                if (buffer[lineEnd + 1] != '\n') {
+                    throw new WebApplicationException("Expected LF. Instead read: " + buffer[lineEnd + 1], BAD_REQUEST);
+                }
+                return lineEnd;
+            }
+
+            scanFrom = (lineEnd >= 0) ? lineEnd : limit;
+            if ((position == 0) && (limit == buffer.length)) {
+                throw new WebApplicationException("Invalid chunk header: line exceeds %s bytes".formatted(buffer.length), BAD_REQUEST);
+            }
+            scanFrom -= position;
+            if (fillBuffer() < 0) {
+                if (lineEnd >= 0) {
+                    throw new WebApplicationException("Expected LF. Instead read: -1", BAD_REQUEST);
+                }
                 delegateIsDone = true;
                 throw new WebApplicationException("Unexpected end of stream", BAD_REQUEST);
             }
-            if (i == '\r') {
-                break;
+        }
+    }
+
+    // moves any unconsumed bytes to the start of the buffer and appends more from the delegate
+    private int fillBuffer()
+            throws IOException
+    {
+        int remaining = limit - position;
+        if ((remaining > 0) && (position > 0)) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int count = delegate.read(buffer, limit, buffer.length - limit);
+        if (count > 0) {
+            limit += count;
+        }
+        return count;
+    }
+
+    private int indexOf(char c, int start, int end)
+    {
+        for (int i = start; i < end; ++i) {
+            if (buffer[i] == c) {
+                return i;
             }
-            line.append((char) (i & 0xff));
         }
+        return -1;
+    }
+
+    private int trimStart(int start, int end)
+    {
+        while ((start < end) && isWhitespace(buffer[start])) {
+            ++start;
+        }
+        return start;
+    }
+
+    private int trimEnd(int start, int end)
+    {
+        while ((end > start) && isWhitespace(buffer[end - 1])) {
+            --end;
+        }
+        return end;
+    }
 
-        int i = delegate.read();
-        if (i != '\n') {
-            throw new WebApplicationException("Expected LF. Instead read: " + i, BAD_REQUEST);
+    private boolean regionMatchesIgnoreCase(int start, int end, byte[] expected)
+    {
+        if ((end - start) != expected.length) {
+            return false;
         }
+        for (int i = 0; i < expected.length; ++i) {
+            if (Character.toLowerCase(buffer[start + i]) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return line.toString();
+    private static boolean isWhitespace(byte b)
+    {
+        return (b == ' ') || (b == '\t');
     }
 }
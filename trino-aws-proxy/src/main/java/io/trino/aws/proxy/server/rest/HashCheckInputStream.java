@@ -55,6 +55,7 @@ class HashCheckInputStream
     {
         int i = delegate.read();
         if (i < 0) {
+            validateLength();
             validateHash();
             return i;
         }
@@ -71,6 +72,7 @@ class HashCheckInputStream
     {
         int result = delegate.read(b, off, len);
         if (result < 0) {
+            validateLength();
             validateHash();
             return result;
         }
@@ -102,6 +104,15 @@ class HashCheckInputStream
         }
     }
 
+    private void validateLength()
+    {
+        expectedLength.ifPresent(expected -> {
+            if (bytesRead < expected) {
+                throw new WebApplicationException("Fewer bytes read than expected. Expected: %s, Actual: %s".formatted(expected, bytesRead), BAD_REQUEST);
+            }
+        });
+    }
+
     private void updateBytesRead(int count)
     {
         bytesRead += count;
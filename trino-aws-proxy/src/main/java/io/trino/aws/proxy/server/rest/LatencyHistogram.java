@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.weakref.jmx.Managed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Latency histogram with log-linear buckets in microseconds: every power of two is split into eight
+ * buckets, so reported percentiles are within 12.5% of the recorded value.
+ * Recording is a few atomic increments and never allocates or locks.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below this are counted exactly
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + ((Long.SIZE - Long.numberOfTrailingZeros(LINEAR_BUCKETS)) * SUB_BUCKETS);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void add(long nanos)
+    {
+        long micros = NANOSECONDS.toMicros(Math.max(nanos, 0));
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        totalMicros.add(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public long addSince(long startNanos)
+    {
+        long elapsed = System.nanoTime() - startNanos;
+        add(elapsed);
+        return elapsed;
+    }
+
+    @Managed
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    @Managed
+    public double getAverageMillis()
+    {
+        long count = this.count.sum();
+        return (count == 0) ? 0 : toMillis(totalMicros.sum()) / count;
+    }
+
+    @Managed
+    public double getMaxMillis()
+    {
+        return toMillis(maxMicros.get());
+    }
+
+    @Managed
+    public double getP50Millis()
+    {
+        return percentileMillis(0.5);
+    }
+
+    @Managed
+    public double getP90Millis()
+    {
+        return percentileMillis(0.9);
+    }
+
+    @Managed
+    public double getP99Millis()
+    {
+        return percentileMillis(0.99);
+    }
+
+    @Managed
+    public double getP999Millis()
+    {
+        return percentileMillis(0.999);
+    }
+
+    public double percentileMillis(double percentile)
+    {
+        checkArgument((percentile >= 0) && (percentile <= 1), "percentile must be between 0 and 1");
+
+        // buckets are read one by one while being written so the total is taken from them, not from count
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; ++index) {
+            counts[index] = buckets.get(index);
+            total += counts[index];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(percentile * total), 1);
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; ++index) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return toMillis(Math.min(bucketUpperBound(index), maxMicros.get()));
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static int bucketIndex(long micros)
+    {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + ((exponent - Long.numberOfTrailingZeros(LINEAR_BUCKETS)) * SUB_BUCKETS) + subBucket;
+    }
+
+    static long bucketUpperBound(int index)
+    {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = ((index - LINEAR_BUCKETS) / SUB_BUCKETS) + Long.numberOfTrailingZeros(LINEAR_BUCKETS);
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static double toMillis(long micros)
+    {
+        return micros / 1000.0;
+    }
+}
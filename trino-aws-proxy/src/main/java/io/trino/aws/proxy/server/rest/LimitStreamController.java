@@ -13,33 +13,242 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.CountingInputStream;
 import com.google.common.io.CountingOutputStream;
 import com.google.inject.Inject;
 import io.airlift.units.DataSize;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
 import jakarta.ws.rs.WebApplicationException;
+import org.weakref.jmx.Managed;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 import static jakarta.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.function.Predicate.not;
 
 public class LimitStreamController
 {
+    // single byte reads and writes are charged in batches of this many bytes, or when the stream ends
+    private static final int SINGLE_BYTE_BATCH = 8192;
+
     private final Optional<DataSize> quota;
+    private final TransferBufferPool transferBufferPool;
+    private final List<RateLimiter> bandwidthLimiters;
+    private final List<RateLimiter> callerRequestRateLimiters;
+    private final Optional<RateLimiter> bucketRequestRateLimiter;
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+
+    /**
+     * Who a request or transfer is accounted to. Rates are limited per emulated access key, per identity
+     * and per bucket, a request without an identity or bucket is only limited by the others.
+     */
+    public record RateLimitScope(String accessKey, Optional<String> user, String bucket)
+    {
+        public RateLimitScope
+        {
+            requireNonNull(accessKey, "accessKey is null");
+            requireNonNull(user, "user is null");
+            requireNonNull(bucket, "bucket is null");
+        }
+    }
+
+    // the token buckets of one configured rate, by the access key, identity or bucket of the scope
+    private record RateLimiter(Function<RateLimitScope, Optional<String>> key, Cache<String, TokenBucket> buckets, double rate, long burstNanos)
+    {
+        private Optional<TokenBucket> bucket(RateLimitScope scope)
+        {
+            return key.apply(scope).map(name -> buckets.get(name, _ -> new TokenBucket(rate, burstNanos, System::nanoTime)));
+        }
+    }
 
     @Inject
-    public LimitStreamController(TrinoAwsProxyConfig trinoAwsProxyConfig)
+    public LimitStreamController(TrinoAwsProxyConfig trinoAwsProxyConfig, RateLimitConfig rateLimitConfig)
     {
         quota = trinoAwsProxyConfig.getMaxPayloadSize();
+        transferBufferPool = new TransferBufferPool(toIntExact(trinoAwsProxyConfig.getStreamingBufferSize().toBytes()), trinoAwsProxyConfig.getStreamingBufferPoolSize());
+
+        Function<RateLimitScope, Optional<String>> accessKey = scope -> Optional.of(scope.accessKey());
+        Function<RateLimitScope, Optional<String>> user = RateLimitScope::user;
+        Function<RateLimitScope, Optional<String>> bucket = scope -> Optional.of(scope.bucket()).filter(not(String::isEmpty));
+
+        ImmutableList.Builder<RateLimiter> bandwidthLimiters = ImmutableList.builder();
+        rateLimitConfig.getAccessKeyBandwidth().ifPresent(bandwidth -> bandwidthLimiters.add(rateLimiter(rateLimitConfig, accessKey, bandwidth.toBytes())));
+        rateLimitConfig.getIdentityBandwidth().ifPresent(bandwidth -> bandwidthLimiters.add(rateLimiter(rateLimitConfig, user, bandwidth.toBytes())));
+        rateLimitConfig.getBucketBandwidth().ifPresent(bandwidth -> bandwidthLimiters.add(rateLimiter(rateLimitConfig, bucket, bandwidth.toBytes())));
+        this.bandwidthLimiters = bandwidthLimiters.build();
+
+        ImmutableList.Builder<RateLimiter> callerRequestRateLimiters = ImmutableList.builder();
+        rateLimitConfig.getAccessKeyRequestRate().ifPresent(requestRate -> callerRequestRateLimiters.add(rateLimiter(rateLimitConfig, accessKey, requestRate)));
+        rateLimitConfig.getIdentityRequestRate().ifPresent(requestRate -> callerRequestRateLimiters.add(rateLimiter(rateLimitConfig, user, requestRate)));
+        this.callerRequestRateLimiters = callerRequestRateLimiters.build();
+        bucketRequestRateLimiter = rateLimitConfig.getBucketRequestRate().map(requestRate -> rateLimiter(rateLimitConfig, bucket, requestRate));
+    }
+
+    @Managed
+    public long getRejectedRequests()
+    {
+        return rejectedRequests.sum();
+    }
+
+    @Managed
+    public long getThrottledMillis()
+    {
+        return NANOSECONDS.toMillis(throttledNanos.sum());
+    }
+
+    /**
+     * Counts a request against the request rates of its access key and identity, which only the caller can use up.
+     *
+     * @throws WebApplicationException with status 503, which S3 clients retry with backoff, if a rate is exceeded
+     */
+    public void acquireRequest(RateLimitScope scope)
+    {
+        for (RateLimiter rateLimiter : callerRequestRateLimiters) {
+            acquireRequest(rateLimiter, scope);
+        }
+    }
+
+    /**
+     * Counts a request against the request rate of its bucket. Only call this once the request passed the security
+     * check, so that requests that are denied anyway cannot use up the rate of a bucket that other callers share.
+     *
+     * @throws WebApplicationException with status 503, which S3 clients retry with backoff, if the rate is exceeded
+     */
+    public void acquireBucketRequest(RateLimitScope scope)
+    {
+        bucketRequestRateLimiter.ifPresent(rateLimiter -> acquireRequest(rateLimiter, scope));
+    }
+
+    private void acquireRequest(RateLimiter rateLimiter, RateLimitScope scope)
+    {
+        if (!rateLimiter.bucket(scope).map(tokenBucket -> tokenBucket.tryAcquire(1)).orElse(true)) {
+            rejectedRequests.increment();
+            throw new WebApplicationException("Please reduce your request rate", SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Copies {@code inputStream} to {@code outputStream} using a pooled buffer, enforcing
+     * the configured quota as bytes are read rather than through wrapping streams, and
+     * the bandwidths of the scope after every buffer. Neither stream is closed.
+     *
+     * @return the number of bytes copied
+     */
+    public long transfer(InputStream inputStream, OutputStream outputStream, RateLimitScope scope)
+            throws IOException
+    {
+        long maxBytes = quota.map(DataSize::toBytes).orElse(Long.MAX_VALUE);
+        byte[] buffer = transferBufferPool.acquire();
+        try {
+            long transferred = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                transferred += read;
+                if (transferred > maxBytes) {
+                    throw new WebApplicationException(REQUEST_ENTITY_TOO_LARGE);
+                }
+                outputStream.write(buffer, 0, read);
+                throttle(scope, read);
+            }
+            return transferred;
+        }
+        finally {
+            transferBufferPool.release(buffer);
+        }
     }
 
-    public InputStream wrap(InputStream inputStream)
+    public InputStream wrap(InputStream inputStream, RateLimitScope scope)
     {
-        return quota.map(q -> internalWrap(inputStream, q.toBytes())).orElse(inputStream);
+        return throttle(quota.map(q -> internalWrap(inputStream, q.toBytes())).orElse(inputStream), scope);
+    }
+
+    /**
+     * Limits the bandwidth of a stream that is not subject to the quota.
+     */
+    public InputStream throttle(InputStream inputStream, RateLimitScope scope)
+    {
+        if (bandwidthLimiters.isEmpty()) {
+            return inputStream;
+        }
+        return new ThrottledInputStream(inputStream, scope);
+    }
+
+    private class ThrottledInputStream
+            extends FilterInputStream
+    {
+        private final RateLimitScope scope;
+        private int pendingBytes;
+
+        private ThrottledInputStream(InputStream inputStream, RateLimitScope scope)
+        {
+            super(inputStream);
+            this.scope = requireNonNull(scope, "scope is null");
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int value = super.read();
+            if (value < 0) {
+                chargePending();
+            }
+            else if (++pendingBytes >= SINGLE_BYTE_BATCH) {
+                chargePending();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException
+        {
+            int read = super.read(b, off, len);
+            if ((read > 0) || (pendingBytes > 0)) {
+                throttle(scope, Math.max(read, 0) + (long) pendingBytes);
+                pendingBytes = 0;
+            }
+            return read;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            try {
+                chargePending();
+            }
+            finally {
+                super.close();
+            }
+        }
+
+        private void chargePending()
+                throws InterruptedIOException
+        {
+            if (pendingBytes > 0) {
+                throttle(scope, pendingBytes);
+                pendingBytes = 0;
+            }
+        }
     }
 
     private static InputStream internalWrap(InputStream inputStream, long quota)
@@ -111,9 +320,109 @@ public class LimitStreamController
         };
     }
 
-    public OutputStream wrap(OutputStream outputStream)
+    public OutputStream wrap(OutputStream outputStream, RateLimitScope scope)
+    {
+        return throttle(quota.map(q -> internalWrap(outputStream, q.toBytes())).orElse(outputStream), scope);
+    }
+
+    private OutputStream throttle(OutputStream outputStream, RateLimitScope scope)
+    {
+        if (bandwidthLimiters.isEmpty()) {
+            return outputStream;
+        }
+        return new ThrottledOutputStream(outputStream, scope);
+    }
+
+    private class ThrottledOutputStream
+            extends FilterOutputStream
+    {
+        private final RateLimitScope scope;
+        private int pendingBytes;
+
+        private ThrottledOutputStream(OutputStream outputStream, RateLimitScope scope)
+        {
+            super(outputStream);
+            this.scope = requireNonNull(scope, "scope is null");
+        }
+
+        @Override
+        public void write(int b)
+                throws IOException
+        {
+            out.write(b);
+            if (++pendingBytes >= SINGLE_BYTE_BATCH) {
+                chargePending();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException
+        {
+            out.write(b, off, len);
+            throttle(scope, len + (long) pendingBytes);
+            pendingBytes = 0;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            try {
+                chargePending();
+            }
+            finally {
+                super.close();
+            }
+        }
+
+        private void chargePending()
+                throws InterruptedIOException
+        {
+            if (pendingBytes > 0) {
+                throttle(scope, pendingBytes);
+                pendingBytes = 0;
+            }
+        }
+    }
+
+    // waits for the slowest of the bandwidths, the bytes are taken from all of them
+    private void throttle(RateLimitScope scope, long bytes)
+            throws InterruptedIOException
+    {
+        long waitNanos = 0;
+        for (RateLimiter rateLimiter : bandwidthLimiters) {
+            Optional<TokenBucket> tokenBucket = rateLimiter.bucket(scope);
+            if (tokenBucket.isPresent()) {
+                waitNanos = Math.max(waitNanos, tokenBucket.get().acquire(bytes));
+            }
+        }
+        if (waitNanos > 0) {
+            throttledNanos.add(waitNanos);
+            try {
+                NANOSECONDS.sleep(waitNanos);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    private static RateLimiter rateLimiter(RateLimitConfig config, Function<RateLimitScope, Optional<String>> key, double rate)
+    {
+        Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTrackedKeys())
+                // a bucket that is idle for longer than the burst is full again, the same as a new one,
+                // the minute keeps buckets that went into debt while their streams wait
+                .expireAfterAccess(max(config.getBurst().toJavaTime(), Duration.ofMinutes(1)))
+                .build();
+        return new RateLimiter(key, buckets, rate, config.getBurst().roundTo(NANOSECONDS));
+    }
+
+    private static Duration max(Duration first, Duration second)
     {
-        return quota.map(q -> internalWrap(outputStream, q.toBytes())).orElse(outputStream);
+        return (first.compareTo(second) >= 0) ? first : second;
     }
 
     private OutputStream internalWrap(OutputStream outputStream, long quota)
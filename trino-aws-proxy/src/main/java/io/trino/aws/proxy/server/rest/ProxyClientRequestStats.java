@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import jakarta.annotation.PreDestroy;
+import org.weakref.jmx.MBeanExport;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Request counters for the {@link TrinoS3ProxyClient.ForProxyClient} HTTP client, in total and per remote
+ * endpoint ({@code scheme://host:port}). These count the requests the proxy sends, the connection pool and
+ * request queue stats are exported by the HTTP client itself. Each endpoint is exported as its own MBean,
+ * named after the endpoint. Virtual-host style endpoints have a host per bucket, so only the first endpoints
+ * seen get their own counters and the rest are counted as {@code other}.
+ */
+public class ProxyClientRequestStats
+{
+    static final int MAX_ENDPOINTS = 100;
+    static final String OTHER_ENDPOINTS = "other";
+
+    private final Optional<MBeanExporter> exporter;
+    private final int maxEndpoints;
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final EndpointStats otherEndpoints = new EndpointStats();
+    private final List<MBeanExport> exports = new CopyOnWriteArrayList<>();
+
+    @Inject
+    public ProxyClientRequestStats(Optional<MBeanExporter> exporter)
+    {
+        this(exporter, MAX_ENDPOINTS);
+    }
+
+    @VisibleForTesting
+    ProxyClientRequestStats(Optional<MBeanExporter> exporter, int maxEndpoints)
+    {
+        checkArgument(maxEndpoints > 0, "maxEndpoints must be positive");
+        this.exporter = requireNonNull(exporter, "exporter is null");
+        this.maxEndpoints = maxEndpoints;
+        export(OTHER_ENDPOINTS, otherEndpoints);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        exports.forEach(MBeanExport::unexport);
+        exports.clear();
+    }
+
+    public EndpointStats endpoint(URI uri)
+    {
+        String key = endpointKey(uri);
+        EndpointStats stats = endpoints.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        // concurrent misses can go a few endpoints over the limit, which is harmless
+        if (endpoints.size() >= maxEndpoints) {
+            return otherEndpoints;
+        }
+        EndpointStats newStats = new EndpointStats();
+        EndpointStats existing = endpoints.putIfAbsent(key, newStats);
+        if (existing != null) {
+            return existing;
+        }
+        export(key, newStats);
+        return newStats;
+    }
+
+    @Managed
+    public long getActiveRequests()
+    {
+        return sum(stats -> stats.activeRequests.get());
+    }
+
+    @Managed
+    public long getTotalRequests()
+    {
+        return sum(stats -> stats.totalRequests.get());
+    }
+
+    @Managed
+    public long getFailedRequests()
+    {
+        return sum(stats -> stats.failedRequests.get());
+    }
+
+    @Managed
+    public long getEndpointCount()
+    {
+        return endpoints.size();
+    }
+
+    private long sum(ToLongFunction<EndpointStats> value)
+    {
+        return endpoints.values().stream().mapToLong(value).sum() + value.applyAsLong(otherEndpoints);
+    }
+
+    private void export(String endpoint, EndpointStats stats)
+    {
+        // the generated name quotes the endpoint, e.g. io.trino.aws.proxy.server.rest:type=ProxyClientRequestStats,name="https://s3.amazonaws.com:443"
+        exporter.ifPresent(mbeanExporter -> exports.add(mbeanExporter.exportWithGeneratedName(stats, ProxyClientRequestStats.class, endpoint)));
+    }
+
+    private static String endpointKey(URI uri)
+    {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return "%s://%s:%s".formatted(uri.getScheme(), uri.getHost(), port);
+    }
+
+    public static class EndpointStats
+    {
+        private final AtomicLong activeRequests = new AtomicLong();
+        private final AtomicLong totalRequests = new AtomicLong();
+        private final AtomicLong completedRequests = new AtomicLong();
+        private final AtomicLong failedRequests = new AtomicLong();
+        private final AtomicLong totalRequestNanos = new AtomicLong();
+
+        private EndpointStats() {}
+
+        public long requestStarted()
+        {
+            totalRequests.incrementAndGet();
+            activeRequests.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        public void requestFinished(long startNanos, boolean failed)
+        {
+            activeRequests.decrementAndGet();
+            completedRequests.incrementAndGet();
+            totalRequestNanos.addAndGet(System.nanoTime() - startNanos);
+            if (failed) {
+                failedRequests.incrementAndGet();
+            }
+        }
+
+        @Managed
+        public long getActiveRequests()
+        {
+            return activeRequests.get();
+        }
+
+        @Managed
+        public long getTotalRequests()
+        {
+            return totalRequests.get();
+        }
+
+        @Managed
+        public long getFailedRequests()
+        {
+            return failedRequests.get();
+        }
+
+        @Managed
+        public long getAverageRequestMillis()
+        {
+            long completed = completedRequests.get();
+            return (completed == 0) ? 0 : NANOSECONDS.toMillis(totalRequestNanos.get() / completed);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSortedMap;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Latencies and counters for the work the proxy does for each request, from signature
+ * validation to streaming the remote response back. Counters for the remote endpoints
+ * are in {@link ProxyClientRequestStats}. Bucket names come from clients, so only the first buckets seen
+ * get their own byte counters and the rest are counted as {@code _other}, which is not a valid bucket name.
+ */
+public class ProxyRequestStats
+{
+    static final int MAX_BUCKETS = 100;
+    static final String OTHER_BUCKETS = "_other";
+
+    private final int maxBuckets;
+    private final LatencyHistogram signatureValidation = new LatencyHistogram();
+    private final LatencyHistogram securityCheck = new LatencyHistogram();
+    private final LatencyHistogram remoteConnectionResolution = new LatencyHistogram();
+    private final LatencyHistogram remoteTimeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram remoteTransfer = new LatencyHistogram();
+
+    private final Map<String, LongAdder> requestsPerServiceType = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errorsPerStatus = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bytesInPerBucket = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bytesOutPerBucket = new ConcurrentHashMap<>();
+    private final AtomicLong activeTransfers = new AtomicLong();
+
+    public ProxyRequestStats()
+    {
+        this(MAX_BUCKETS);
+    }
+
+    @VisibleForTesting
+    ProxyRequestStats(int maxBuckets)
+    {
+        checkArgument(maxBuckets > 0, "maxBuckets must be positive");
+        this.maxBuckets = maxBuckets;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getSignatureValidation()
+    {
+        return signatureValidation;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getSecurityCheck()
+    {
+        return securityCheck;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getRemoteConnectionResolution()
+    {
+        return remoteConnectionResolution;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getRemoteTimeToFirstByte()
+    {
+        return remoteTimeToFirstByte;
+    }
+
+    @Managed
+    @Nested
+    public LatencyHistogram getRemoteTransfer()
+    {
+        return remoteTransfer;
+    }
+
+    @Managed
+    public Map<String, Long> getRequestsPerServiceType()
+    {
+        return collect(requestsPerServiceType);
+    }
+
+    @Managed
+    public Map<String, Long> getErrorsPerStatus()
+    {
+        return collect(errorsPerStatus);
+    }
+
+    @Managed
+    public Map<String, Long> getBytesInPerBucket()
+    {
+        return collect(bytesInPerBucket);
+    }
+
+    @Managed
+    public Map<String, Long> getBytesOutPerBucket()
+    {
+        return collect(bytesOutPerBucket);
+    }
+
+    @Managed
+    public long getBytesIn()
+    {
+        return bytesInPerBucket.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Managed
+    public long getBytesOut()
+    {
+        return bytesOutPerBucket.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Managed
+    public long getActiveTransfers()
+    {
+        return activeTransfers.get();
+    }
+
+    public void requestCompleted(SigningServiceType serviceType, int status)
+    {
+        counter(requestsPerServiceType, serviceType.serviceName().toLowerCase(Locale.ROOT)).increment();
+        if (status >= 400) {
+            counter(errorsPerStatus, Integer.toString(status)).increment();
+        }
+    }
+
+    public void bytesIn(String bucket, long bytes)
+    {
+        bucketCounter(bytesInPerBucket, bucket).add(bytes);
+    }
+
+    public long transferStarted()
+    {
+        activeTransfers.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public long transferFinished(long startNanos, String bucket, long bytes)
+    {
+        activeTransfers.decrementAndGet();
+        bucketCounter(bytesOutPerBucket, bucket).add(bytes);
+        return remoteTransfer.addSince(startNanos);
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String key)
+    {
+        // get first, computeIfAbsent locks the bin even when the key is present
+        LongAdder counter = counters.get(key);
+        return (counter != null) ? counter : counters.computeIfAbsent(key, _ -> new LongAdder());
+    }
+
+    private LongAdder bucketCounter(Map<String, LongAdder> counters, String bucket)
+    {
+        LongAdder counter = counters.get(bucket);
+        if (counter != null) {
+            return counter;
+        }
+        // concurrent misses can go a few buckets over the limit, which is harmless
+        return counters.computeIfAbsent((counters.size() < maxBuckets) ? bucket : OTHER_BUCKETS, _ -> new LongAdder());
+    }
+
+    private static Map<String, Long> collect(Map<String, LongAdder> counters)
+    {
+        ImmutableSortedMap.Builder<String, Long> builder = ImmutableSortedMap.naturalOrder();
+        counters.forEach((key, counter) -> builder.put(key, counter.sum()));
+        return builder.build();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class RateLimitConfig
+{
+    private DataSize accessKeyBandwidth;
+    private Double accessKeyRequestRate;
+    private DataSize identityBandwidth;
+    private Double identityRequestRate;
+    private DataSize bucketBandwidth;
+    private Double bucketRequestRate;
+    private Duration burst = new Duration(1, SECONDS);
+    private int maxTrackedKeys = 10_000;
+
+    public Optional<DataSize> getAccessKeyBandwidth()
+    {
+        return Optional.ofNullable(accessKeyBandwidth);
+    }
+
+    @Config("aws.proxy.rate-limit.access-key.bandwidth")
+    @ConfigDescription("Bytes per second each emulated access key can send and receive, unset for no limit")
+    public RateLimitConfig setAccessKeyBandwidth(DataSize accessKeyBandwidth)
+    {
+        this.accessKeyBandwidth = accessKeyBandwidth;
+        return this;
+    }
+
+    public Optional<Double> getAccessKeyRequestRate()
+    {
+        return Optional.ofNullable(accessKeyRequestRate);
+    }
+
+    @Config("aws.proxy.rate-limit.access-key.requests-per-second")
+    @ConfigDescription("Requests per second each emulated access key can make, unset for no limit")
+    public RateLimitConfig setAccessKeyRequestRate(Double accessKeyRequestRate)
+    {
+        this.accessKeyRequestRate = accessKeyRequestRate;
+        return this;
+    }
+
+    public Optional<DataSize> getIdentityBandwidth()
+    {
+        return Optional.ofNullable(identityBandwidth);
+    }
+
+    @Config("aws.proxy.rate-limit.identity.bandwidth")
+    @ConfigDescription("Bytes per second each identity can send and receive, unset for no limit")
+    public RateLimitConfig setIdentityBandwidth(DataSize identityBandwidth)
+    {
+        this.identityBandwidth = identityBandwidth;
+        return this;
+    }
+
+    public Optional<Double> getIdentityRequestRate()
+    {
+        return Optional.ofNullable(identityRequestRate);
+    }
+
+    @Config("aws.proxy.rate-limit.identity.requests-per-second")
+    @ConfigDescription("Requests per second each identity can make, unset for no limit")
+    public RateLimitConfig setIdentityRequestRate(Double identityRequestRate)
+    {
+        this.identityRequestRate = identityRequestRate;
+        return this;
+    }
+
+    public Optional<DataSize> getBucketBandwidth()
+    {
+        return Optional.ofNullable(bucketBandwidth);
+    }
+
+    @Config("aws.proxy.rate-limit.bucket.bandwidth")
+    @ConfigDescription("Bytes per second that can be sent to and received from each bucket, unset for no limit")
+    public RateLimitConfig setBucketBandwidth(DataSize bucketBandwidth)
+    {
+        this.bucketBandwidth = bucketBandwidth;
+        return this;
+    }
+
+    public Optional<Double> getBucketRequestRate()
+    {
+        return Optional.ofNullable(bucketRequestRate);
+    }
+
+    @Config("aws.proxy.rate-limit.bucket.requests-per-second")
+    @ConfigDescription("Requests per second that can be made to each bucket, unset for no limit")
+    public RateLimitConfig setBucketRequestRate(Double bucketRequestRate)
+    {
+        this.bucketRequestRate = bucketRequestRate;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getBurst()
+    {
+        return burst;
+    }
+
+    @Config("aws.proxy.rate-limit.burst")
+    @ConfigDescription("How long a client can go over its rates after being idle, the size of a token bucket is its rate times this")
+    public RateLimitConfig setBurst(Duration burst)
+    {
+        this.burst = burst;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxTrackedKeys()
+    {
+        return maxTrackedKeys;
+    }
+
+    @Config("aws.proxy.rate-limit.max-tracked-keys")
+    @ConfigDescription("Maximum number of access keys, identities or buckets whose rates are tracked at once, per limit")
+    public RateLimitConfig setMaxTrackedKeys(int maxTrackedKeys)
+    {
+        this.maxTrackedKeys = maxTrackedKeys;
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.rate-limit bandwidths and request rates must be greater than 0")
+    public boolean isRatesValid()
+    {
+        boolean bandwidthsValid = Stream.of(accessKeyBandwidth, identityBandwidth, bucketBandwidth)
+                .allMatch(bandwidth -> (bandwidth == null) || (bandwidth.toBytes() > 0));
+        boolean requestRatesValid = Stream.of(accessKeyRequestRate, identityRequestRate, bucketRequestRate)
+                .allMatch(requestRate -> (requestRate == null) || (requestRate > 0));
+        return bandwidthsValid && requestRatesValid;
+    }
+}
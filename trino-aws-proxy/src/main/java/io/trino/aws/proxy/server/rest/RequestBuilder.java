@@ -13,9 +13,10 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
-import com.google.common.base.Suppliers;
 import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.rest.RequestContentSpooler.SpooledContent;
 import io.trino.aws.proxy.server.rest.RequestHeadersBuilder.InternalRequestHeaders;
 import io.trino.aws.proxy.server.signing.SigningQueryParameters;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
@@ -29,7 +30,7 @@ import io.trino.aws.proxy.spi.util.MultiMap;
 import jakarta.ws.rs.WebApplicationException;
 import org.glassfish.jersey.server.ContainerRequest;
 
-import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLDecoder;
@@ -41,9 +42,10 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
 
-import static com.google.common.io.ByteStreams.toByteArray;
+import static com.google.common.base.Preconditions.checkState;
 import static io.trino.aws.proxy.server.signing.SigningQueryParameters.splitQueryParameters;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static java.util.Objects.requireNonNull;
 
 class RequestBuilder
 {
@@ -51,12 +53,12 @@ class RequestBuilder
 
     private RequestBuilder() {}
 
-    static Request fromRequest(ContainerRequest request)
+    static Request fromRequest(ContainerRequest request, boolean streamContent, RequestContentSpooler requestContentSpooler)
     {
         InternalRequestHeaders requestHeaders = RequestHeadersBuilder.parseHeaders(ImmutableMultiMap.copyOfCaseInsensitive(request.getHeaders().entrySet()));
         Optional<Instant> requestTimestamp;
 
-        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), requestHeaders) : RequestContent.EMPTY;
+        RequestContent requestContent = request.hasEntity() ? buildRequestContent(request.getEntityStream(), requestHeaders, streamContent, requestContentSpooler) : RequestContent.EMPTY;
         SigningQueryParameters signingQueryParameters = splitQueryParameters(ImmutableMultiMap.copyOf(request.getUriInfo().getQueryParameters(true).entrySet()));
 
         Optional<RequestAuthorization> requestAuthorization = requestHeaders.requestAuthorization();
@@ -129,40 +131,40 @@ class RequestBuilder
         return URLDecoder.decode(component, StandardCharsets.UTF_8);
     }
 
+    @VisibleForTesting
     @SuppressWarnings("SwitchStatementWithTooFewBranches")
-    private static RequestContent buildRequestContent(InputStream requestEntityStream, InternalRequestHeaders requestHeaders)
+    static RequestContent buildRequestContent(InputStream requestEntityStream, InternalRequestHeaders requestHeaders, boolean streamContent, RequestContentSpooler requestContentSpooler)
     {
         ContentType contentType = requestHeaders.requestPayloadContentType().orElse(ContentType.STANDARD);
 
-        Supplier<Optional<byte[]>> bytesSupplier = switch (contentType) {
-            case STANDARD -> Suppliers.memoize(() -> {
-                try {
-                    return Optional.of(toByteArray(requestEntityStream));
-                }
-                catch (IOException e) {
-                    throw new WebApplicationException(BAD_REQUEST);
-                }
-            });
-
-            default -> Optional::empty;
-        };
+        // when the content is streamed and its length is known up front, the body is never spooled. The payload
+        // hash is verified incrementally while the body is forwarded (see HashCheckInputStream).
+        if (streamContent && (contentType == ContentType.STANDARD) && requestHeaders.contentLength().isPresent()) {
+            return buildStreamingRequestContent(requestEntityStream, requestHeaders.contentLength().orElseThrow(), requestContentSpooler);
+        }
 
-        Supplier<Optional<Integer>> contentLengthSupplier = switch (contentType) {
-            case STANDARD -> () -> bytesSupplier.get().map(bytes -> bytes.length);
+        return new SpoolingRequestContent(requestEntityStream, requestContentSpooler)
+        {
+            private final Supplier<Optional<SpooledContent>> spoolSupplier = switch (contentType) {
+                case STANDARD -> () -> Optional.of(spooledContent());
 
-            // AWS does not mandate x-amz-decoded-content length is required for chunked transfer encoding
-            // But we require it for simplicity (Content-Length is needed since we don't do chunking on outbound requests)
-            case AWS_CHUNKED, W3C_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> () -> {
-                int contentLength = requestHeaders.decodedContentLength()
-                        .orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
-                return Optional.of(contentLength);
+                default -> Optional::empty;
             };
 
-            default -> Optional::empty;
-        };
+            private final Supplier<Optional<Integer>> contentLengthSupplier = switch (contentType) {
+                case STANDARD -> () -> spoolSupplier.get().map(SpooledContent::length);
+
+                // AWS does not mandate x-amz-decoded-content length is required for chunked transfer encoding
+                // But we require it for simplicity (Content-Length is needed since we don't do chunking on outbound requests)
+                case AWS_CHUNKED, W3C_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> () -> {
+                    int contentLength = requestHeaders.decodedContentLength()
+                            .orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
+                    return Optional.of(contentLength);
+                };
+
+                default -> Optional::empty;
+            };
 
-        return new RequestContent()
-        {
             @Override
             public Optional<Integer> contentLength()
             {
@@ -178,16 +180,105 @@ class RequestBuilder
             @Override
             public Optional<byte[]> standardBytes()
             {
-                return bytesSupplier.get();
+                return spoolSupplier.get().map(SpooledContent::bytes);
             }
 
             @Override
             public Optional<InputStream> inputStream()
             {
-                return standardBytes()
-                        .map(bytes -> (InputStream) new ByteArrayInputStream(bytes))
+                return spoolSupplier.get()
+                        .map(SpooledContent::inputStream)
                         .or(() -> Optional.of(requestEntityStream));
             }
         };
     }
+
+    private static RequestContent buildStreamingRequestContent(InputStream requestEntityStream, int contentLength, RequestContentSpooler requestContentSpooler)
+    {
+        // only spooled if a consumer explicitly asks for the bytes
+        return new SpoolingRequestContent(requestEntityStream, requestContentSpooler)
+        {
+            // the entity stream can be read only once, either it is handed out as is or it is spooled for the bytes
+            private boolean streamed;
+            private boolean spooled;
+
+            @Override
+            public Optional<Integer> contentLength()
+            {
+                return Optional.of(contentLength);
+            }
+
+            @Override
+            public ContentType contentType()
+            {
+                return ContentType.STANDARD;
+            }
+
+            @Override
+            public synchronized Optional<byte[]> standardBytes()
+            {
+                checkState(!streamed, "The request content is streamed, standardBytes() must be called before inputStream()");
+                spooled = true;
+                return Optional.of(spooledContent().bytes());
+            }
+
+            @Override
+            public synchronized Optional<InputStream> inputStream()
+            {
+                if (spooled) {
+                    return Optional.of(spooledContent().inputStream());
+                }
+                streamed = true;
+                return Optional.of(requestEntityStream);
+            }
+        };
+    }
+
+    static void closeRequestContent(RequestContent requestContent)
+    {
+        if (requestContent instanceof SpoolingRequestContent spoolingRequestContent) {
+            spoolingRequestContent.close();
+        }
+    }
+
+    // spools the entity stream the first time it is needed, and releases the spooled content when the request completes
+    private abstract static class SpoolingRequestContent
+            implements RequestContent, Closeable
+    {
+        private final InputStream requestEntityStream;
+        private final RequestContentSpooler requestContentSpooler;
+        private SpooledContent spooledContent;
+        private boolean closed;
+
+        private SpoolingRequestContent(InputStream requestEntityStream, RequestContentSpooler requestContentSpooler)
+        {
+            this.requestEntityStream = requireNonNull(requestEntityStream, "requestEntityStream is null");
+            this.requestContentSpooler = requireNonNull(requestContentSpooler, "requestContentSpooler is null");
+        }
+
+        protected synchronized SpooledContent spooledContent()
+        {
+            checkState(!closed, "The request has completed, its content is closed");
+            if (spooledContent == null) {
+                try {
+                    spooledContent = requestContentSpooler.spool(requestEntityStream);
+                }
+                catch (IOException e) {
+                    throw new WebApplicationException(BAD_REQUEST);
+                }
+            }
+            return spooledContent;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (!closed) {
+                closed = true;
+                if (spooledContent != null) {
+                    spooledContent.close();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import jakarta.ws.rs.WebApplicationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.io.ByteStreams.limit;
+import static com.google.common.io.ByteStreams.toByteArray;
+import static jakarta.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.lang.Math.toIntExact;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spools request bodies that must be fully read before they can be validated or forwarded.
+ * Bodies up to the configured memory threshold are kept on the heap. Larger bodies are written
+ * to a temporary file which is memory-mapped for re-reading and deleted immediately, so
+ * heap usage per request is bounded by the threshold regardless of the payload size.
+ * The disk space of a deleted file is only freed once its mapping is garbage collected, so the
+ * size of the mapped files is counted until then, and bodies that would spill past the configured
+ * maximum are rejected with 503 while they are written.
+ */
+public class RequestContentSpooler
+{
+    private static final Logger log = Logger.get(RequestContentSpooler.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final int memoryThreshold;
+    private final Path spoolDirectory;
+    private final long maxSpoolSize;
+    private final AtomicLong spooledBytes = new AtomicLong();
+
+    @Inject
+    public RequestContentSpooler(RequestSpoolConfig config)
+    {
+        memoryThreshold = toIntExact(config.getMemoryThreshold().toBytes());
+        spoolDirectory = config.getSpoolDirectory().toPath();
+        maxSpoolSize = config.getMaxSpoolSize().toBytes();
+    }
+
+    SpooledContent spool(InputStream inputStream)
+            throws IOException
+    {
+        byte[] head = toByteArray(limit(inputStream, memoryThreshold));
+        int next = inputStream.read();
+        if (next == -1) {
+            return new SpooledContent(ByteBuffer.wrap(head));
+        }
+
+        long reserved = 0;
+        Path spoolFile = Files.createTempFile(spoolDirectory, "request-", ".spool");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(spoolFile)) {
+                reserved += reserve(head.length + 1);
+                outputStream.write(head);
+                outputStream.write(next);
+                byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    reserved += reserve(read);
+                    if (reserved > Integer.MAX_VALUE) {
+                        throw new WebApplicationException(REQUEST_ENTITY_TOO_LARGE);
+                    }
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(spoolFile, READ)) {
+                // the mapping stays valid after the channel is closed and the file is deleted
+                MappedByteBuffer content = channel.map(READ_ONLY, 0, channel.size());
+                long spooledSize = reserved;
+                SpooledContent spooledContent = new SpooledContent(content, () -> spooledBytes.addAndGet(-spooledSize));
+                reserved = 0;
+                return spooledContent;
+            }
+        }
+        finally {
+            if (reserved > 0) {
+                spooledBytes.addAndGet(-reserved);
+            }
+            try {
+                Files.deleteIfExists(spoolFile);
+            }
+            catch (IOException e) {
+                log.warn(e, "Could not delete spool file: %s", spoolFile);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    long spooledBytes()
+    {
+        return spooledBytes.get();
+    }
+
+    private long reserve(long bytes)
+    {
+        if (spooledBytes.addAndGet(bytes) > maxSpoolSize) {
+            spooledBytes.addAndGet(-bytes);
+            throw new WebApplicationException("Too many request bodies are spooled, please retry", SERVICE_UNAVAILABLE);
+        }
+        return bytes;
+    }
+
+    /**
+     * Spooled request content. Spilled content counts against the max spool size until it is closed,
+     * which the spooling request does when it completes.
+     */
+    static final class SpooledContent
+            implements Closeable
+    {
+        private final ByteBuffer content;
+        private final Optional<Cleanable> release;
+
+        private SpooledContent(ByteBuffer content)
+        {
+            this.content = requireNonNull(content, "content is null");
+            release = Optional.empty();
+        }
+
+        private SpooledContent(ByteBuffer content, Runnable release)
+        {
+            this.content = requireNonNull(content, "content is null");
+            // a Cleanable runs at most once, also if the content is leaked without being closed
+            this.release = Optional.of(CLEANER.register(this, requireNonNull(release, "release is null")));
+        }
+
+        int length()
+        {
+            return content.remaining();
+        }
+
+        byte[] bytes()
+        {
+            if (content.hasArray() && (content.arrayOffset() == 0) && (content.array().length == content.remaining())) {
+                return content.array();
+            }
+            // spilled content is copied onto the heap, readers that can stream it use inputStream()
+            byte[] bytes = new byte[content.remaining()];
+            content.duplicate().get(bytes);
+            return bytes;
+        }
+
+        InputStream inputStream()
+        {
+            return new ByteBufferInputStream(content.duplicate());
+        }
+
+        @Override
+        public void close()
+        {
+            release.ifPresent(Cleanable::clean);
+        }
+    }
+
+    private static class ByteBufferInputStream
+            extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            int count = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
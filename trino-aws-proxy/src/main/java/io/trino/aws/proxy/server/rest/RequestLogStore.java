@@ -0,0 +1,762 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.log.Logger;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.EntryKey;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.EventType;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.RequestOutcome;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.RequestSummary;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.signing.SigningTrait;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.toIntExact;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Append only store of saved request log entries in rotating segment files. Entries are appended in batches by a
+ * single writer. Readers work on an immutable {@link Snapshot} and read the blocks of entries they need with positional
+ * reads. Entries are appended in the order they were saved, which is close to but not exactly their key order: the end
+ * of a request has the key of its start. So every segment has a sparse in-memory index of its blocks with the highest
+ * timestamp up to each block and the lowest timestamp from each block on. A read seeks to the first block that can hold
+ * an entry of its range with a binary search, and stops as soon as no later block can hold an entry that belongs in the
+ * result, so its cost depends on the limit and not on the size of the store.
+ */
+class RequestLogStore
+{
+    private static final Logger log = Logger.get(RequestLogStore.class);
+
+    private static final String SEGMENT_PREFIX = "requests-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final Pattern SEGMENT_NAME = Pattern.compile(Pattern.quote(SEGMENT_PREFIX) + "\\p{XDigit}{16}" + Pattern.quote(SEGMENT_SUFFIX));
+    private static final int ENTRIES_PER_BLOCK = 64;
+    // every segment starts with these bytes, "RQLG", so that a file with a segment name that was not written by the store is never read or truncated
+    private static final int SEGMENT_MAGIC = 0x52514c47;
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES;
+    // every record has its version after its length, a record of an unknown version is not read.
+    // Version 2 added the stage timings of the request outcome
+    private static final byte STAGE_TIMINGS_RECORD_VERSION = 2;
+    private static final byte RECORD_VERSION = STAGE_TIMINGS_RECORD_VERSION;
+    private static final Comparator<SaveEntry> COMPARATOR = comparing(SaveEntry::key);
+    private static final Comparator<SaveEntry> REVERSED_COMPARATOR = COMPARATOR.reversed();
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final AtomicLong blocksRead = new AtomicLong();
+
+    // only accessed by the writer, while holding the lock
+    private final List<SegmentView> sealedSegments = new ArrayList<>();
+    private ActiveSegment activeSegment;
+    private long nextSegmentId;
+
+    private volatile Snapshot snapshot;
+
+    // the segments and how much of each of them was written when the snapshot was taken
+    record Snapshot(List<SegmentView> segments)
+    {
+        Snapshot
+        {
+            segments = ImmutableList.copyOf(segments);
+        }
+    }
+
+    // blockOffsets[i] is where block i starts, blockMaxTimestamps[i] the highest timestamp in blocks 0 to i and
+    // blockMinTimestamps[i] the lowest timestamp in blocks i to the last one, so both are non-decreasing
+    private record SegmentView(Path path, long size, int blockCount, long[] blockOffsets, long[] blockMaxTimestamps, long[] blockMinTimestamps)
+    {
+        private SegmentView
+        {
+            requireNonNull(path, "path is null");
+            requireNonNull(blockOffsets, "blockOffsets is null");
+            requireNonNull(blockMaxTimestamps, "blockMaxTimestamps is null");
+            requireNonNull(blockMinTimestamps, "blockMinTimestamps is null");
+        }
+
+        private long minTimestamp()
+        {
+            return (blockCount == 0) ? Long.MAX_VALUE : blockMinTimestamps[0];
+        }
+
+        private long maxTimestamp()
+        {
+            return (blockCount == 0) ? Long.MIN_VALUE : blockMaxTimestamps[blockCount - 1];
+        }
+
+        // every block before the returned one only has entries older than startMillis
+        private int firstBlockFrom(long startMillis)
+        {
+            int low = 0;
+            int high = blockCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (blockMaxTimestamps[middle] < startMillis) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // every block after the returned one only has entries newer than endMillis
+        private int lastBlockUntil(long endMillis)
+        {
+            int low = 0;
+            int high = blockCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (blockMinTimestamps[middle] <= endMillis) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        private long blockEnd(int block)
+        {
+            return (block + 1 < blockCount) ? blockOffsets[block + 1] : size;
+        }
+    }
+
+    private static class ActiveSegment
+    {
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private int blockCount;
+        private int entriesInBlock;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private long[] blockOffsets = new long[16];
+        private long[] blockMaxTimestamps = new long[16];
+        // the lowest timestamp of each block by itself, the view turns these into the lowest from each block on
+        private long[] blockOwnMinTimestamps = new long[16];
+
+        private ActiveSegment(Path path, FileChannel channel)
+        {
+            this.path = requireNonNull(path, "path is null");
+            this.channel = requireNonNull(channel, "channel is null");
+            size = SEGMENT_HEADER_SIZE;
+        }
+
+        private void addEntry(long timestampMillis, int length)
+        {
+            if ((blockCount == 0) || (entriesInBlock == ENTRIES_PER_BLOCK)) {
+                if (blockCount == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                    blockMaxTimestamps = Arrays.copyOf(blockMaxTimestamps, blockCount * 2);
+                    blockOwnMinTimestamps = Arrays.copyOf(blockOwnMinTimestamps, blockCount * 2);
+                }
+                blockOffsets[blockCount] = size;
+                blockOwnMinTimestamps[blockCount] = Long.MAX_VALUE;
+                ++blockCount;
+                entriesInBlock = 0;
+            }
+            maxTimestamp = Math.max(maxTimestamp, timestampMillis);
+            blockMaxTimestamps[blockCount - 1] = maxTimestamp;
+            blockOwnMinTimestamps[blockCount - 1] = Math.min(blockOwnMinTimestamps[blockCount - 1], timestampMillis);
+            ++entriesInBlock;
+            size += length;
+        }
+
+        private SegmentView view()
+        {
+            long[] blockMinTimestamps = new long[blockCount];
+            long minTimestamp = Long.MAX_VALUE;
+            for (int block = blockCount - 1; block >= 0; --block) {
+                minTimestamp = Math.min(minTimestamp, blockOwnMinTimestamps[block]);
+                blockMinTimestamps[block] = minTimestamp;
+            }
+            return new SegmentView(path, size, blockCount, Arrays.copyOf(blockOffsets, blockCount), Arrays.copyOf(blockMaxTimestamps, blockCount), blockMinTimestamps);
+        }
+    }
+
+    RequestLogStore(Path directory, long segmentSize, int maxSegments)
+    {
+        checkArgument(segmentSize > 0, "segmentSize must be greater than 0");
+        checkArgument(maxSegments > 0, "maxSegments must be greater than 0");
+        this.directory = requireNonNull(directory, "directory is null");
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        try {
+            Files.createDirectories(directory);
+            // segments of a previous run stay readable, new entries always go to a new segment
+            for (Path path : existingSegments()) {
+                recoverSegment(path).ifPresent(sealedSegments::add);
+                nextSegmentId = segmentId(path) + 1;
+            }
+            startSegment();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the request log store in " + directory, e);
+        }
+        publish();
+    }
+
+    Snapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    synchronized Snapshot append(List<SaveEntry> entries)
+    {
+        List<PendingRecord> batch = new ArrayList<>();
+        long batchSize = 0;
+        try {
+            for (SaveEntry entry : entries) {
+                if (activeSegment.size + batchSize >= segmentSize) {
+                    write(batch);
+                    batchSize = 0;
+                    rotate();
+                }
+                byte[] record = encode(entry);
+                batch.add(new PendingRecord(entry.timestamp().toEpochMilli(), record));
+                batchSize += record.length;
+            }
+            write(batch);
+        }
+        catch (IOException e) {
+            // the index only has the records that were fully written, so the segment is sealed as it is. A record that was
+            // partly written is past the end of the sealed view and is truncated when the segment is recovered
+            try {
+                rotate();
+            }
+            catch (IOException rotateException) {
+                e.addSuppressed(rotateException);
+            }
+            publish();
+            throw new UncheckedIOException("Failed to write to the request log store in " + directory, e);
+        }
+        return publish();
+    }
+
+    /**
+     * Reads up to limit entries with keys from low to high, both inclusive, that match the predicate. The entries are
+     * returned in key order when ascending and in reverse key order otherwise.
+     */
+    List<SaveEntry> read(Snapshot snapshot, EntryKey low, EntryKey high, boolean ascending, int limit, Predicate<SaveEntry> predicate)
+    {
+        checkArgument(limit >= 0, "limit is negative");
+        if ((limit == 0) || (low.compareTo(high) > 0)) {
+            return ImmutableList.of();
+        }
+        try (BlockReader blockReader = new BlockReader(limit, ascending, entry -> {
+            EntryKey key = entry.key();
+            return (key.compareTo(low) >= 0) && (key.compareTo(high) <= 0) && predicate.test(entry);
+        })) {
+            if (ascending) {
+                return readAscending(snapshot.segments(), blockReader, low.timestampMillis(), high.timestampMillis());
+            }
+            return readDescending(snapshot.segments(), blockReader, low.timestampMillis(), high.timestampMillis());
+        }
+    }
+
+    @VisibleForTesting
+    long blocksRead()
+    {
+        return blocksRead.get();
+    }
+
+    synchronized Snapshot clear()
+    {
+        try {
+            activeSegment.channel.close();
+            Files.deleteIfExists(activeSegment.path);
+            for (SegmentView segment : sealedSegments) {
+                Files.deleteIfExists(segment.path());
+            }
+            sealedSegments.clear();
+            startSegment();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear the request log store in " + directory, e);
+        }
+        return publish();
+    }
+
+    synchronized void close()
+    {
+        try {
+            activeSegment.channel.force(false);
+            activeSegment.channel.close();
+        }
+        catch (IOException e) {
+            log.error(e, "Failed to close request log segment %s", activeSegment.path);
+        }
+    }
+
+    private Snapshot publish()
+    {
+        ImmutableList.Builder<SegmentView> segments = ImmutableList.<SegmentView>builder().addAll(sealedSegments);
+        // after a failed rotation the active segment is already sealed, until the next append starts a new one
+        if (activeSegment.channel.isOpen()) {
+            segments.add(activeSegment.view());
+        }
+        snapshot = new Snapshot(segments.build());
+        return snapshot;
+    }
+
+    private record PendingRecord(long timestampMillis, byte[] bytes) {}
+
+    private void write(List<PendingRecord> batch)
+            throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(batch.stream().mapToInt(record -> record.bytes().length).sum());
+        batch.forEach(record -> buffer.put(record.bytes()));
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            activeSegment.channel.write(buffer);
+        }
+        // records are only indexed once they are in the segment
+        for (PendingRecord record : batch) {
+            activeSegment.addEntry(record.timestampMillis(), record.bytes().length);
+        }
+        batch.clear();
+    }
+
+    private void rotate()
+            throws IOException
+    {
+        // the channel is already closed when a previous rotation failed to start the next segment
+        if (activeSegment.channel.isOpen()) {
+            activeSegment.channel.close();
+            sealedSegments.add(activeSegment.view());
+        }
+        startSegment();
+    }
+
+    private void startSegment()
+            throws IOException
+    {
+        Path path = directory.resolve("%s%016x%s".formatted(SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(SEGMENT_MAGIC).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        activeSegment = new ActiveSegment(path, channel);
+        // the active segment counts towards the limit
+        while (sealedSegments.size() >= maxSegments) {
+            Files.deleteIfExists(sealedSegments.removeFirst().path());
+        }
+    }
+
+    private List<SaveEntry> readAscending(List<SegmentView> segments, BlockReader blockReader, long lowMillis, long highMillis)
+    {
+        // laterMinTimestamps[i] is the lowest timestamp in the segments after segment i
+        long[] laterMinTimestamps = new long[segments.size()];
+        long minTimestamp = Long.MAX_VALUE;
+        for (int index = segments.size() - 1; index >= 0; --index) {
+            laterMinTimestamps[index] = minTimestamp;
+            minTimestamp = Math.min(minTimestamp, segments.get(index).minTimestamp());
+        }
+
+        for (int index = 0; index < segments.size(); ++index) {
+            SegmentView segment = segments.get(index);
+            if (segment.maxTimestamp() < lowMillis) {
+                continue;
+            }
+            for (int block = segment.firstBlockFrom(lowMillis); block < segment.blockCount(); ++block) {
+                // the lowest timestamp that is still to be read
+                long remainingMillis = Math.min(segment.blockMinTimestamps()[block], laterMinTimestamps[index]);
+                if ((remainingMillis > highMillis) || blockReader.isFullBefore(remainingMillis)) {
+                    return blockReader.entries();
+                }
+                if (!blockReader.read(segment, block)) {
+                    break;
+                }
+            }
+        }
+        return blockReader.entries();
+    }
+
+    private List<SaveEntry> readDescending(List<SegmentView> segments, BlockReader blockReader, long lowMillis, long highMillis)
+    {
+        // earlierMaxTimestamps[i] is the highest timestamp in the segments before segment i
+        long[] earlierMaxTimestamps = new long[segments.size()];
+        long maxTimestamp = Long.MIN_VALUE;
+        for (int index = 0; index < segments.size(); ++index) {
+            earlierMaxTimestamps[index] = maxTimestamp;
+            maxTimestamp = Math.max(maxTimestamp, segments.get(index).maxTimestamp());
+        }
+
+        for (int index = segments.size() - 1; index >= 0; --index) {
+            SegmentView segment = segments.get(index);
+            if (segment.minTimestamp() > highMillis) {
+                continue;
+            }
+            for (int block = segment.lastBlockUntil(highMillis); block >= 0; --block) {
+                // the highest timestamp that is still to be read
+                long remainingMillis = Math.max(segment.blockMaxTimestamps()[block], earlierMaxTimestamps[index]);
+                if ((remainingMillis < lowMillis) || blockReader.isFullBefore(remainingMillis)) {
+                    return blockReader.entries();
+                }
+                if (!blockReader.read(segment, block)) {
+                    break;
+                }
+            }
+        }
+        return blockReader.entries();
+    }
+
+    // keeps the first limit entries in the order of the read, reading blocks through one open segment at a time
+    private class BlockReader
+            implements AutoCloseable
+    {
+        private final int limit;
+        private final boolean ascending;
+        private final Comparator<SaveEntry> order;
+        private final Predicate<SaveEntry> predicate;
+        // the head is the last of the entries kept so far, the first to go when a better one is found
+        private final PriorityQueue<SaveEntry> entries;
+        private Path openPath;
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        private BlockReader(int limit, boolean ascending, Predicate<SaveEntry> predicate)
+        {
+            this.limit = limit;
+            this.ascending = ascending;
+            order = ascending ? COMPARATOR : REVERSED_COMPARATOR;
+            this.predicate = requireNonNull(predicate, "predicate is null");
+            entries = new PriorityQueue<>(Math.min(limit, 1024), order.reversed());
+        }
+
+        // whether limit entries were found and none of them can come after an entry with this timestamp
+        private boolean isFullBefore(long timestampMillis)
+        {
+            if (entries.size() < limit) {
+                return false;
+            }
+            long lastMillis = entries.element().timestamp().toEpochMilli();
+            return ascending ? (timestampMillis > lastMillis) : (timestampMillis < lastMillis);
+        }
+
+        // returns false when the segment is gone
+        private boolean read(SegmentView segment, int block)
+        {
+            long start = segment.blockOffsets()[block];
+            int length = toIntExact(segment.blockEnd(block) - start);
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+            }
+            buffer.clear().limit(length);
+            try {
+                if (!segment.path().equals(openPath)) {
+                    close();
+                    channel = FileChannel.open(segment.path(), READ);
+                    openPath = segment.path();
+                }
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new EOFException("Request log segment %s is shorter than expected".formatted(segment.path()));
+                    }
+                }
+            }
+            catch (NoSuchFileException _) {
+                // rotated out after the snapshot was taken
+                return false;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Failed to read request log segment " + segment.path(), e);
+            }
+            blocksRead.incrementAndGet();
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                SaveEntry entry = decode(nextRecord(buffer));
+                if (predicate.test(entry)) {
+                    entries.add(entry);
+                    if (entries.size() > limit) {
+                        entries.remove();
+                    }
+                }
+            }
+            return true;
+        }
+
+        private List<SaveEntry> entries()
+        {
+            return entries.stream()
+                    .sorted(order)
+                    .collect(toImmutableList());
+        }
+
+        @Override
+        public void close()
+        {
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    log.warn(e, "Failed to close request log segment %s", openPath);
+                }
+                channel = null;
+                openPath = null;
+            }
+        }
+    }
+
+    private List<Path> existingSegments()
+            throws IOException
+    {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(RequestLogStore::segmentId))
+                    .collect(toImmutableList());
+        }
+    }
+
+    private static long segmentId(Path path)
+    {
+        String name = path.getFileName().toString();
+        return Long.parseUnsignedLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16);
+    }
+
+    private static Optional<SegmentView> recoverSegment(Path path)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+            ActiveSegment segment = new ActiveSegment(path, channel);
+            ByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SEGMENT_HEADER_SIZE) {
+                // the process stopped before the header of a new segment was written
+                return Optional.of(segment.view());
+            }
+            if (buffer.getInt() != SEGMENT_MAGIC) {
+                log.warn("Skipping %s, it is not a request log segment", path);
+                return Optional.empty();
+            }
+            while (buffer.hasRemaining()) {
+                int position = buffer.position();
+                if (!hasCompleteRecord(buffer)) {
+                    // a write that was cut short when the process stopped
+                    log.warn("Truncating request log segment %s at offset %s", path, position);
+                    channel.truncate(position);
+                    break;
+                }
+                try {
+                    SaveEntry entry = decode(nextRecord(buffer));
+                    segment.addEntry(entry.timestamp().toEpochMilli(), buffer.position() - position);
+                }
+                catch (RuntimeException e) {
+                    // a complete record that cannot be read, e.g. one of a newer version. The segment is left as it is,
+                    // only the records before it are read
+                    log.warn(e, "Skipping request log segment %s from offset %s", path, position);
+                    break;
+                }
+            }
+            return Optional.of(segment.view());
+        }
+    }
+
+    private static boolean hasCompleteRecord(ByteBuffer buffer)
+    {
+        if (buffer.remaining() < Integer.BYTES) {
+            return false;
+        }
+        int length = buffer.getInt(buffer.position());
+        return (length >= 0) && (length <= buffer.remaining() - Integer.BYTES);
+    }
+
+    private static ByteBuffer nextRecord(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if ((length < 0) || (length > buffer.remaining())) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer record = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return record;
+    }
+
+    private static byte[] encode(SaveEntry entry)
+            throws IOException
+    {
+        return encode(entry, RECORD_VERSION);
+    }
+
+    @VisibleForTesting
+    static byte[] encode(SaveEntry entry, byte version)
+            throws IOException
+    {
+        checkArgument((version >= 1) && (version <= RECORD_VERSION), "Unsupported request log record version: %s", version);
+        RequestSummary request = entry.request();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0); // length placeholder
+        output.writeByte(version);
+        output.writeLong(request.requestId().getMostSignificantBits());
+        output.writeLong(request.requestId().getLeastSignificantBits());
+        output.writeLong(request.requestNumber());
+        output.writeLong(request.timestamp().getEpochSecond());
+        output.writeInt(request.timestamp().getNano());
+        writeString(output, request.serviceType().serviceName());
+        output.writeInt(request.serviceType().signingTraits().size());
+        for (SigningTrait signingTrait : request.serviceType().signingTraits()) {
+            writeString(output, signingTrait.name());
+        }
+        writeString(output, request.requestUri().toString());
+        writeString(output, request.httpMethod());
+        output.writeBoolean(request.hasEntity());
+        output.writeByte(entry.eventType().ordinal());
+        writeString(output, entry.message());
+        output.writeBoolean(entry.outcome().isPresent());
+        if (entry.outcome().isPresent()) {
+            RequestOutcome outcome = entry.outcome().get();
+            output.writeLong(outcome.elapsedMillis());
+            writeMap(output, outcome.properties());
+            writeMap(output, outcome.errors());
+            if (version >= STAGE_TIMINGS_RECORD_VERSION) {
+                output.writeInt(outcome.stageNanos().size());
+                for (Map.Entry<String, Long> stage : outcome.stageNanos().entrySet()) {
+                    writeString(output, stage.getKey());
+                    output.writeLong(stage.getValue());
+                }
+            }
+        }
+        output.flush();
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(record.length - Integer.BYTES);
+        return record;
+    }
+
+    private static SaveEntry decode(ByteBuffer buffer)
+    {
+        byte version = buffer.get();
+        if ((version < 1) || (version > RECORD_VERSION)) {
+            throw new IllegalArgumentException("Unsupported request log record version: " + version);
+        }
+        UUID requestId = new UUID(buffer.getLong(), buffer.getLong());
+        long requestNumber = buffer.getLong();
+        Instant timestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        String serviceName = readString(buffer);
+        SigningTrait[] signingTraits = new SigningTrait[buffer.getInt()];
+        for (int i = 0; i < signingTraits.length; ++i) {
+            signingTraits[i] = SigningTrait.valueOf(readString(buffer));
+        }
+        URI requestUri = URI.create(readString(buffer));
+        String httpMethod = readString(buffer);
+        boolean hasEntity = buffer.get() != 0;
+        EventType eventType = EventType.values()[buffer.get()];
+        String message = readString(buffer);
+        Optional<RequestOutcome> outcome = Optional.empty();
+        if (buffer.get() != 0) {
+            long elapsedMillis = buffer.getLong();
+            Map<String, Object> properties = readMap(buffer);
+            Map<String, Object> errors = readMap(buffer);
+            ImmutableMap.Builder<String, Long> stageNanos = ImmutableMap.builder();
+            if (version >= STAGE_TIMINGS_RECORD_VERSION) {
+                for (int stages = buffer.getInt(); stages > 0; --stages) {
+                    stageNanos.put(readString(buffer), buffer.getLong());
+                }
+            }
+            outcome = Optional.of(new RequestOutcome(elapsedMillis, properties, errors, stageNanos.buildOrThrow()));
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Request log record of version %s has %s unread bytes".formatted(version, buffer.remaining()));
+        }
+
+        RequestSummary request = new RequestSummary(requestId, requestNumber, timestamp, new SigningServiceType(serviceName, signingTraits), requestUri, httpMethod, hasEntity);
+        return new SaveEntry(request, eventType, message, outcome);
+    }
+
+    private static void writeMap(DataOutputStream output, Map<String, Object> map)
+            throws IOException
+    {
+        output.writeInt(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, String.valueOf(entry.getValue()));
+        }
+    }
+
+    private static Map<String, Object> readMap(ByteBuffer buffer)
+    {
+        int size = buffer.getInt();
+        ImmutableMap.Builder<String, Object> map = ImmutableMap.builderWithExpectedSize(size);
+        for (int i = 0; i < size; ++i) {
+            map.put(readString(buffer), readString(buffer));
+        }
+        return map.buildOrThrow();
+    }
+
+    private static void writeString(DataOutputStream output, String value)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
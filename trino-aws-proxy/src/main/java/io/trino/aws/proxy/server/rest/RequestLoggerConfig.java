@@ -15,11 +15,27 @@ package io.trino.aws.proxy.server.rest;
 
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.File;
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class RequestLoggerConfig
 {
     private int requestLoggerSavedQty = 10000;
+    private File storeDirectory;
+    private DataSize storeSegmentSize = DataSize.of(64, DataSize.Unit.MEGABYTE);
+    private int storeMaxSegments = 16;
+    private Duration storeFlushInterval = new Duration(1, SECONDS);
 
     @Min(0)
     public int getRequestLoggerSavedQty()
@@ -34,4 +50,68 @@ public class RequestLoggerConfig
         this.requestLoggerSavedQty = requestLoggerSavedQty;
         return this;
     }
+
+    public Optional<File> getStoreDirectory()
+    {
+        return Optional.ofNullable(storeDirectory);
+    }
+
+    @Config("aws.proxy.request.logger.store.directory")
+    @ConfigDescription("Directory where saved log entries are also written to rotating segment files, unset to keep them in memory only")
+    public RequestLoggerConfig setStoreDirectory(File storeDirectory)
+    {
+        this.storeDirectory = storeDirectory;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1MB")
+    @MaxDataSize("1GB")
+    public DataSize getStoreSegmentSize()
+    {
+        return storeSegmentSize;
+    }
+
+    @Config("aws.proxy.request.logger.store.segment-size")
+    @ConfigDescription("Size after which the current log store segment is closed and a new one is started")
+    public RequestLoggerConfig setStoreSegmentSize(DataSize storeSegmentSize)
+    {
+        this.storeSegmentSize = storeSegmentSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getStoreMaxSegments()
+    {
+        return storeMaxSegments;
+    }
+
+    @Config("aws.proxy.request.logger.store.max-segments")
+    @ConfigDescription("Number of log store segments to keep, the oldest segment is deleted when a new one is started")
+    public RequestLoggerConfig setStoreMaxSegments(int storeMaxSegments)
+    {
+        this.storeMaxSegments = storeMaxSegments;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getStoreFlushInterval()
+    {
+        return storeFlushInterval;
+    }
+
+    @Config("aws.proxy.request.logger.store.flush-interval")
+    @ConfigDescription("How often saved log entries are written to the log store")
+    public RequestLoggerConfig setStoreFlushInterval(Duration storeFlushInterval)
+    {
+        this.storeFlushInterval = storeFlushInterval;
+        return this;
+    }
+
+    @AssertTrue(message = "aws.proxy.request.logger.saved-qty must be greater than 0 when aws.proxy.request.logger.store.directory is set")
+    public boolean isStoreValid()
+    {
+        return (storeDirectory == null) || (requestLoggerSavedQty > 0);
+    }
 }
@@ -14,37 +14,61 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Stopwatch;
+import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
-import com.google.common.collect.EvictingQueue;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Queues;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
 
+import java.net.URI;
 import java.time.Instant;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.padStart;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
 import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_END;
 import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_START;
 import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.EMPTY;
 import static java.lang.Long.toHexString;
 import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingLong;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class RequestLoggerController
 {
@@ -52,7 +76,7 @@ public class RequestLoggerController
 
     private static final AtomicLong requestCounter = new AtomicLong();
 
-    private static final Comparator<SaveEntry> COMPARATOR = comparing(SaveEntry::entryId);
+    private static final Comparator<SaveEntry> COMPARATOR = comparing(SaveEntry::key);
     private static final Comparator<SaveEntry> REVERSED_COMPARATOR = COMPARATOR.reversed();
 
     private interface LoggerProc
@@ -107,15 +131,77 @@ public class RequestLoggerController
         }
     };
 
-    public record SaveEntry(String entryId, SigningServiceType serviceType, String message, Map<String, String> entries, Instant timestamp)
+    public record RequestSummary(UUID requestId, long requestNumber, Instant timestamp, SigningServiceType serviceType, URI requestUri, String httpMethod, boolean hasEntity)
     {
-        public SaveEntry
+        public RequestSummary
         {
+            requireNonNull(requestId, "requestId is null");
+            requireNonNull(timestamp, "timestamp is null");
             requireNonNull(serviceType, "serviceType is null");
-            requireNonNull(entryId, "entryId is null");
+            requireNonNull(requestUri, "requestUri is null");
+            requireNonNull(httpMethod, "httpMethod is null");
+        }
+    }
+
+    public record RequestOutcome(long elapsedMillis, Map<String, Object> properties, Map<String, Object> errors, Map<String, Long> stageNanos)
+    {
+        public RequestOutcome
+        {
+            properties = ImmutableMap.copyOf(properties);
+            errors = ImmutableMap.copyOf(errors);
+            stageNanos = ImmutableMap.copyOf(stageNanos);
+        }
+    }
+
+    public record SaveEntry(RequestSummary request, EventType eventType, String message, Optional<RequestOutcome> outcome)
+    {
+        public SaveEntry
+        {
+            requireNonNull(request, "request is null");
+            requireNonNull(eventType, "eventType is null");
             requireNonNull(message, "message is null");
-            entries = ImmutableMap.copyOf(entries);
-            requireNonNull(timestamp, "timestamp is null");
+            requireNonNull(outcome, "outcome is null");
+        }
+
+        public EntryKey key()
+        {
+            return new EntryKey(request.timestamp().toEpochMilli(), request.requestNumber(), eventType);
+        }
+
+        public String entryId()
+        {
+            return key().eventId();
+        }
+
+        public SigningServiceType serviceType()
+        {
+            return request.serviceType();
+        }
+
+        public Instant timestamp()
+        {
+            return request.timestamp();
+        }
+
+        // rendered when read so that saving an entry does not format anything
+        public Map<String, String> entries()
+        {
+            ImmutableMap.Builder<String, String> entries = ImmutableMap.<String, String>builder()
+                    .put("request.id", request.requestId().toString())
+                    .put("request.number", Long.toString(request.requestNumber()))
+                    .put("request.timestamp", request.timestamp().toString())
+                    .put("request.type", String.valueOf(request.serviceType()))
+                    .put("request.uri", request.requestUri().toString())
+                    .put("request.http.method", request.httpMethod())
+                    .put("request.http.entity", Boolean.toString(request.hasEntity()));
+            outcome.ifPresent(requestOutcome -> entries
+                    .put("request.elapsed.ms", Long.toString(requestOutcome.elapsedMillis()))
+                    .put("request.properties", requestOutcome.properties().toString())
+                    .put("request.errors", requestOutcome.errors().toString())
+                    .put("request.stages.us", Maps.transformValues(requestOutcome.stageNanos(), NANOSECONDS::toMicros).toString()));
+            return entries
+                    .put("request.eventId", entryId())
+                    .buildOrThrow();
         }
     }
 
@@ -125,29 +211,161 @@ public class RequestLoggerController
         REQUEST_END,
     }
 
-    public static String eventId(Instant timestamp, long requestNumber, EventType eventType)
+    // orders the entries the same way as their event ids
+    public record EntryKey(long timestampMillis, long requestNumber, EventType eventType)
+            implements Comparable<EntryKey>
     {
-        int typeKey = switch (eventType) {
-            case REQUEST_START -> 0;
-            case REQUEST_END -> 1;
-        };
+        public static final EntryKey FIRST = new EntryKey(Long.MIN_VALUE, Long.MIN_VALUE, REQUEST_START);
+        public static final EntryKey LAST = new EntryKey(Long.MAX_VALUE, Long.MAX_VALUE, REQUEST_END);
+
+        private static final Comparator<EntryKey> ORDER = comparingLong(EntryKey::timestampMillis)
+                .thenComparingLong(EntryKey::requestNumber)
+                .thenComparing(EntryKey::eventType);
+
+        public EntryKey
+        {
+            requireNonNull(eventType, "eventType is null");
+        }
+
+        public static EntryKey fromEventId(String eventId)
+        {
+            List<String> parts = Splitter.on('.').splitToList(eventId);
+            checkArgument(parts.size() == 3, "Invalid event id: %s", eventId);
+            EventType eventType = switch (parts.get(2)) {
+                case "0" -> REQUEST_START;
+                case "1" -> REQUEST_END;
+                default -> throw new IllegalArgumentException("Invalid event id: " + eventId);
+            };
+            return new EntryKey(Long.parseUnsignedLong(parts.get(0), 16), Long.parseUnsignedLong(parts.get(1), 16), eventType);
+        }
+
+        public String eventId()
+        {
+            int typeKey = switch (eventType) {
+                case REQUEST_START -> 0;
+                case REQUEST_END -> 1;
+            };
+
+            return "%s.%s.%s".formatted(padStart(toHexString(timestampMillis), 16, '0'), padStart(toHexString(requestNumber), 16, '0'), typeKey);
+        }
 
-        return "%s.%s.%s".formatted(padStart(toHexString(timestamp.toEpochMilli()), 16, '0'), padStart(toHexString(requestNumber), 16, '0'), typeKey);
+        @Override
+        public int compareTo(EntryKey other)
+        {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    // up to limit entries starting at from, from is inclusive and in the direction of the query
+    public record LogQuery(boolean ascending, Optional<EntryKey> from, Optional<Instant> startTime, Optional<Instant> endTime, Optional<Set<String>> serviceNames, int limit)
+    {
+        public LogQuery
+        {
+            requireNonNull(from, "from is null");
+            requireNonNull(startTime, "startTime is null");
+            requireNonNull(endTime, "endTime is null");
+            serviceNames = requireNonNull(serviceNames, "serviceNames is null").map(names -> names.stream().map(name -> name.toLowerCase(Locale.ROOT)).collect(toImmutableSet()));
+            checkArgument(limit >= 0, "limit is negative");
+        }
+
+        public LogQuery withPosition(boolean ascending, Optional<EntryKey> from, int limit)
+        {
+            return new LogQuery(ascending, from, startTime, endTime, serviceNames, limit);
+        }
+    }
+
+    private record KeyRange(EntryKey low, boolean lowInclusive, EntryKey high, boolean highInclusive)
+    {
+        private static KeyRange of(LogQuery query)
+        {
+            EntryKey low = query.startTime().map(startTime -> new EntryKey(startTime.toEpochMilli(), Long.MIN_VALUE, REQUEST_START)).orElse(EntryKey.FIRST);
+            boolean highInclusive = query.endTime().isEmpty();
+            EntryKey high = query.endTime().map(endTime -> new EntryKey(endTime.toEpochMilli(), Long.MIN_VALUE, REQUEST_START)).orElse(EntryKey.LAST);
+            if (query.from().isPresent()) {
+                EntryKey from = query.from().get();
+                if (query.ascending() && (from.compareTo(low) > 0)) {
+                    low = from;
+                }
+                else if (!query.ascending() && (from.compareTo(high) < 0)) {
+                    high = from;
+                    highInclusive = true;
+                }
+            }
+            return new KeyRange(low, true, high, highInclusive);
+        }
+
+        private boolean isEmpty()
+        {
+            int comparison = low.compareTo(high);
+            return (comparison > 0) || ((comparison == 0) && !(lowInclusive && highInclusive));
+        }
+
+        private boolean contains(EntryKey key)
+        {
+            int lowComparison = key.compareTo(low);
+            int highComparison = key.compareTo(high);
+            return ((lowComparison > 0) || (lowInclusive && (lowComparison == 0))) && ((highComparison < 0) || (highInclusive && (highComparison == 0)));
+        }
+    }
+
+    public static String eventId(Instant timestamp, long requestNumber, EventType eventType)
+    {
+        return new EntryKey(timestamp.toEpochMilli(), requestNumber, eventType).eventId();
     }
 
     private static final RequestLoggingSession NOP_REQUEST_LOGGING_SESSION = () -> {};
 
     private volatile LoggerProc loggerProc = nopLogger;
     private final Map<UUID, RequestLoggingSession> sessions = new ConcurrentHashMap<>();
-    private final Queue<SaveEntry> saveQueue;
+    // the entries of the save queue in event id order, in total and per service
+    private final ConcurrentSkipListMap<EntryKey, SaveEntry> entriesByKey = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<EntryKey, SaveEntry>> entriesByServiceName = new ConcurrentHashMap<>();
+    private final Optional<SaveEntryRing<SaveEntry>> saveQueue;
     private final boolean saveQueueEnabled;
+    private final Optional<RequestLogStore> logStore;
+    private final Duration storeFlushInterval;
+    private final ScheduledExecutorService storeExecutor;
+    private volatile StoreState storeState;
+
+    // the store snapshot has every saved entry before persistedSequence, the save queue has the ones that are not written yet
+    private record StoreState(long persistedSequence, RequestLogStore.Snapshot snapshot)
+    {
+        private StoreState
+        {
+            requireNonNull(snapshot, "snapshot is null");
+        }
+    }
 
     @Inject
     public RequestLoggerController(RequestLoggerConfig config)
     {
-        // *2 because we log request/response
-        saveQueue = Queues.synchronizedQueue(EvictingQueue.create(config.getRequestLoggerSavedQty() * 2));
         saveQueueEnabled = (config.getRequestLoggerSavedQty() > 0);
+        // *2 because we log request/response
+        saveQueue = saveQueueEnabled ? Optional.of(new SaveEntryRing<>(config.getRequestLoggerSavedQty() * 2)) : Optional.empty();
+
+        checkArgument(config.isStoreValid(), "The request log store needs the save queue");
+        logStore = config.getStoreDirectory().map(directory -> new RequestLogStore(directory.toPath(), config.getStoreSegmentSize().toBytes(), config.getStoreMaxSegments()));
+        storeFlushInterval = config.getStoreFlushInterval();
+        storeExecutor = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("request-log-store").setDaemon(true).build());
+        storeState = logStore.map(store -> new StoreState(0, store.snapshot())).orElse(null);
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (logStore.isPresent()) {
+            storeExecutor.scheduleWithFixedDelay(this::flushStore, storeFlushInterval.toMillis(), storeFlushInterval.toMillis(), MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        shutdownAndAwaitTermination(storeExecutor, 30, SECONDS);
+        logStore.ifPresent(store -> {
+            flushStore();
+            store.close();
+        });
     }
 
     @PreDestroy
@@ -183,17 +401,71 @@ public class RequestLoggerController
 
     public List<SaveEntry> savedEntries(boolean startFromHead, Predicate<SaveEntry> predicate)
     {
-        return saveQueue
-                .stream()
+        LogQuery query = new LogQuery(startFromHead, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Integer.MAX_VALUE);
+        return savedEntries(query).stream()
                 .filter(predicate)
-                .sorted(startFromHead ? COMPARATOR : REVERSED_COMPARATOR)
                 .collect(toImmutableList());
     }
 
+    public List<SaveEntry> savedEntries(LogQuery query)
+    {
+        KeyRange range = KeyRange.of(query);
+        if (range.isEmpty() || (query.limit() == 0)) {
+            return ImmutableList.of();
+        }
+
+        // entries that are older than everything in the index can only be in the request log store
+        Optional<EntryKey> firstIndexedKey = Optional.ofNullable(entriesByKey.firstEntry()).map(Map.Entry::getKey);
+        List<SaveEntry> indexedEntries = indexedEntries(query, range);
+        if (logStore.isEmpty()) {
+            return indexedEntries;
+        }
+
+        if (query.ascending()) {
+            if (firstIndexedKey.isPresent() && (range.low().compareTo(firstIndexedKey.get()) >= 0)) {
+                return indexedEntries;
+            }
+            return Stream.concat(storedEntries(query, range, firstIndexedKey).stream(), indexedEntries.stream())
+                    .limit(query.limit())
+                    .collect(toImmutableList());
+        }
+        if (indexedEntries.size() >= query.limit()) {
+            return indexedEntries;
+        }
+        return Stream.concat(indexedEntries.stream(), storedEntries(query, range, firstIndexedKey).stream())
+                .limit(query.limit())
+                .collect(toImmutableList());
+    }
+
+    @VisibleForTesting
+    public synchronized void clearSavedEntries()
+    {
+        entriesByKey.clear();
+        entriesByServiceName.clear();
+        saveQueue.ifPresent(queue -> logStore.ifPresent(store -> storeState = new StoreState(queue.nextSequence(), store.clear())));
+    }
+
     @VisibleForTesting
-    public void clearSavedEntries()
+    synchronized void flushStore()
     {
-        saveQueue.clear();
+        logStore.ifPresent(store -> {
+            StoreState state = storeState;
+            SaveEntryRing.Range<SaveEntry> range = saveQueue.orElseThrow().entriesFrom(state.persistedSequence());
+            if (range.evicted() > 0) {
+                log.warn("%s request log entries were evicted before they could be written to the request log store", range.evicted());
+            }
+            if (range.endSequence() == state.persistedSequence()) {
+                return;
+            }
+            try {
+                storeState = new StoreState(range.endSequence(), store.append(range.entries()));
+            }
+            catch (RuntimeException e) {
+                // don't retry the same entries forever, they are still in the save queue until evicted
+                log.error(e, "Failed to write %s request log entries to the request log store", range.entries().size());
+                storeState = new StoreState(range.endSequence(), store.snapshot());
+            }
+        });
     }
 
     private RequestLoggingSession internalNewRequestSession(Request request, SigningServiceType serviceType)
@@ -202,109 +474,180 @@ public class RequestLoggerController
             return NOP_REQUEST_LOGGING_SESSION;
         }
 
-        Instant now = Instant.now();
-        long requestNumber = requestCounter.getAndIncrement();
+        RequestSummary requestSummary = new RequestSummary(
+                request.requestId(),
+                requestCounter.getAndIncrement(),
+                Instant.now(),
+                serviceType,
+                request.requestUri(),
+                request.httpVerb(),
+                request.requestContent().contentType() != EMPTY);
 
-        Map<String, String> entries = new ConcurrentHashMap<>();
+        logAndSave(new SaveEntry(requestSummary, REQUEST_START, "RequestStart", Optional.empty()));
 
-        Map<String, String> properties = new ConcurrentHashMap<>();
+        return new InternalRequestLoggingSession(requestSummary);
+    }
 
-        Map<String, String> errors = new ConcurrentHashMap<>();
+    private void logAndSave(SaveEntry entry)
+    {
+        if (loggerProc.isEnabled()) {
+            loggerProc.log("%s: %s", entry.message(), entry.entries());
+        }
+        saveQueue.ifPresent(queue -> {
+            // indexed first so that the entry cannot be evicted before it is indexed
+            index(entry);
+            queue.add(entry).ifPresent(this::unindex);
+        });
+    }
 
-        Map<String, Object> requestDetails = ImmutableMap.of(
-                "request.id", request.requestId(),
-                "request.number", requestNumber,
-                "request.timestamp", now,
-                "request.type", serviceType,
-                "request.uri", request.requestUri(),
-                "request.http.method", request.httpVerb(),
-                "request.http.entity", request.requestContent().contentType() != EMPTY);
+    private void index(SaveEntry entry)
+    {
+        EntryKey key = entry.key();
+        entriesByKey.put(key, entry);
+        entriesByServiceName.computeIfAbsent(serviceName(entry), _ -> new ConcurrentSkipListMap<>()).put(key, entry);
+    }
 
-        addAll(entries, requestDetails);
+    private void unindex(SaveEntry entry)
+    {
+        EntryKey key = entry.key();
+        entriesByKey.remove(key, entry);
+        Optional.ofNullable(entriesByServiceName.get(serviceName(entry))).ifPresent(entries -> entries.remove(key, entry));
+    }
+
+    private List<SaveEntry> indexedEntries(LogQuery query, KeyRange range)
+    {
+        List<NavigableMap<EntryKey, SaveEntry>> indexes = query.serviceNames()
+                .map(serviceNames -> serviceNames.stream()
+                        .map(entriesByServiceName::get)
+                        .filter(Objects::nonNull)
+                        .<NavigableMap<EntryKey, SaveEntry>>map(entries -> entries)
+                        .collect(toImmutableList()))
+                .orElseGet(() -> ImmutableList.of(entriesByKey));
+
+        // the views iterate the skip lists from the start of the range without copying them
+        List<Iterator<SaveEntry>> iterators = indexes.stream()
+                .map(entries -> entries.subMap(range.low(), range.lowInclusive(), range.high(), range.highInclusive()))
+                .map(entries -> (query.ascending() ? entries : entries.descendingMap()).values().iterator())
+                .collect(toImmutableList());
+        return ImmutableList.copyOf(Iterators.limit(Iterators.mergeSorted(iterators, query.ascending() ? COMPARATOR : REVERSED_COMPARATOR), query.limit()));
+    }
 
-        logAndClear(requestNumber, serviceType, "RequestStart", entries, now, REQUEST_START);
+    private List<SaveEntry> storedEntries(LogQuery query, KeyRange range, Optional<EntryKey> firstIndexedKey)
+    {
+        Predicate<SaveEntry> predicate = entry -> {
+            EntryKey key = entry.key();
+            return range.contains(key) &&
+                    firstIndexedKey.map(first -> key.compareTo(first) < 0).orElse(true) &&
+                    query.serviceNames().map(serviceNames -> serviceNames.contains(serviceName(entry))).orElse(true);
+        };
+        // the index has everything from its first key on, so the read seeks past the entries it would only filter out
+        EntryKey high = firstIndexedKey.filter(first -> first.compareTo(range.high()) < 0).orElse(range.high());
+        return logStore.orElseThrow().read(storeState.snapshot(), range.low(), high, query.ascending(), query.limit(), predicate);
+    }
 
-        return new RequestLoggingSession()
+    private static String serviceName(SaveEntry entry)
+    {
+        return entry.serviceType().serviceName().toLowerCase(Locale.ROOT);
+    }
+
+    // values that cannot change are kept as they are and rendered when read, anything else is rendered now
+    private static Object loggableValue(Object value)
+    {
+        return switch (value) {
+            case null -> "null";
+            case String _, Integer _, Long _, Boolean _, Enum<?> _, Instant _, UUID _, URI _, ImmutableMap<?, ?> _, ImmutableCollection<?> _, ImmutableMultimap<?, ?> _ -> value;
+            default -> String.valueOf(value);
+        };
+    }
+
+    private final class InternalRequestLoggingSession
+            implements RequestLoggingSession
+    {
+        private final RequestSummary requestSummary;
+        private final long startNanos = System.nanoTime();
+        // allocated on first use, most requests log only a few properties and no errors
+        private Map<String, Object> properties;
+        private Map<String, Object> errors;
+        private Map<String, Long> stageNanos;
+        private volatile boolean closed;
+
+        private InternalRequestLoggingSession(RequestSummary requestSummary)
         {
-            private final Stopwatch stopwatch = Stopwatch.createStarted();
-            private volatile boolean closed;
+            this.requestSummary = requireNonNull(requestSummary, "requestSummary is null");
+        }
 
-            @Override
-            public void logProperty(String name, Object value)
-            {
-                properties.put(name, String.valueOf(value));
+        @Override
+        public synchronized void logProperty(String name, Object value)
+        {
+            if (properties == null) {
+                properties = new LinkedHashMap<>();
             }
+            properties.put(name, loggableValue(value));
+        }
 
-            @Override
-            public void logError(String name, Object value)
-            {
-                errors.put(name, String.valueOf(value));
+        @Override
+        public synchronized void logError(String name, Object value)
+        {
+            if (errors == null) {
+                errors = new LinkedHashMap<>();
             }
+            errors.put(name, loggableValue(value));
+        }
 
-            @SuppressWarnings({"ThrowableNotThrown", "SwitchStatementWithTooFewBranches"})
-            @Override
-            public void logException(Throwable e)
-            {
-                switch (Throwables.getRootCause(e)) {
-                    case WebApplicationException webApplicationException -> {
-                        errors.put("webException.status", Integer.toString(webApplicationException.getResponse().getStatus()));
-                        errors.put("webException.message", webApplicationException.getMessage());
-                    }
-
-                    default -> {
-                        errors.put("exception.type", e.getClass().getName());
-                        errors.put("exception.message", e.getMessage());
-                    }
-                }
+        @Override
+        public synchronized void logTiming(String stage, long nanos)
+        {
+            if (stageNanos == null) {
+                stageNanos = new LinkedHashMap<>();
             }
+            stageNanos.merge(stage, nanos, Long::sum);
+        }
 
-            @SuppressWarnings("resource")
-            @Override
-            public void close()
-            {
-                if (closed) {
-                    return;
+        @SuppressWarnings({"ThrowableNotThrown", "SwitchStatementWithTooFewBranches"})
+        @Override
+        public void logException(Throwable e)
+        {
+            switch (Throwables.getRootCause(e)) {
+                case WebApplicationException webApplicationException -> {
+                    logError("webException.status", webApplicationException.getResponse().getStatus());
+                    logError("webException.message", webApplicationException.getMessage());
                 }
-                closed = true;
 
-                try {
-                    addAll(entries, requestDetails);
-                    add(entries, "request.elapsed.ms", stopwatch.elapsed().toMillis());
-                    add(entries, "request.properties", properties);
-                    add(entries, "request.errors", errors);
-
-                    logAndClear(requestNumber, serviceType, "RequestEnd", entries, now, REQUEST_END);
-                }
-                finally {
-                    sessions.remove(request.requestId());
+                default -> {
+                    logError("exception.type", e.getClass().getName());
+                    logError("exception.message", e.getMessage());
                 }
             }
-        };
-    }
-
-    private void addAll(Map<String, String> entries, Map<String, Object> values)
-    {
-        values.forEach((key, value) -> add(entries, key, value));
-    }
-
-    private void add(Map<String, String> entries, String key, Object value)
-    {
-        entries.put(key, String.valueOf(value));
-    }
-
-    private void logAndClear(long requestNumber, SigningServiceType serviceType, String message, Map<String, String> entries, Instant now, EventType eventType)
-    {
-        String eventId = eventId(now, requestNumber, eventType);
+        }
 
-        Map<String, String> copy = ImmutableMap.<String, String>builder()
-                .putAll(entries)
-                .put("request.eventId", eventId)
-                .build();
-        entries.clear();
+        @Override
+        public void close()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                RequestOutcome requestOutcome;
+                synchronized (this) {
+                    requestOutcome = new RequestOutcome(
+                            NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                            (properties == null) ? ImmutableMap.of() : properties,
+                            (errors == null) ? ImmutableMap.of() : errors,
+                            (stageNanos == null) ? ImmutableMap.of() : stageNanos);
+                }
+                logAndSave(new SaveEntry(requestSummary, REQUEST_END, "RequestEnd", Optional.of(requestOutcome)));
+            }
+            finally {
+                sessions.remove(requestSummary.requestId());
+            }
+        }
 
-        loggerProc.log("%s: %s", message, copy);
-        if (saveQueueEnabled) {
-            saveQueue.add(new SaveEntry(eventId, serviceType, message, copy, now));
+        @Override
+        public String toString()
+        {
+            return requestSummary.toString();
         }
     }
 }
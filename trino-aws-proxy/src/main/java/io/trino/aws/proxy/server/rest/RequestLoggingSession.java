@@ -33,6 +33,14 @@ public interface RequestLoggingSession
         // NOP
     }
 
+    /**
+     * Records how long a stage of the request took. Timings of a stage that runs more than once are added up.
+     */
+    default void logTiming(String stage, long nanos)
+    {
+        // NOP
+    }
+
     @Override
     void close();
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.MaxDataSize;
+import jakarta.validation.constraints.NotNull;
+
+import java.io.File;
+
+public class RequestSpoolConfig
+{
+    private DataSize memoryThreshold = DataSize.of(1, DataSize.Unit.MEGABYTE);
+    private File spoolDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private DataSize maxSpoolSize = DataSize.of(10, DataSize.Unit.GIGABYTE);
+
+    @NotNull
+    @MaxDataSize("1GB")
+    public DataSize getMemoryThreshold()
+    {
+        return memoryThreshold;
+    }
+
+    @Config("aws.proxy.request.spool.memory-threshold")
+    @ConfigDescription("Request bodies larger than this are spilled to a temporary file instead of being held on the heap")
+    public RequestSpoolConfig setMemoryThreshold(DataSize memoryThreshold)
+    {
+        this.memoryThreshold = memoryThreshold;
+        return this;
+    }
+
+    @NotNull
+    public File getSpoolDirectory()
+    {
+        return spoolDirectory;
+    }
+
+    @Config("aws.proxy.request.spool.directory")
+    @ConfigDescription("Directory for temporary files of spilled request bodies")
+    public RequestSpoolConfig setSpoolDirectory(File spoolDirectory)
+    {
+        this.spoolDirectory = spoolDirectory;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMaxSpoolSize()
+    {
+        return maxSpoolSize;
+    }
+
+    @Config("aws.proxy.request.spool.max-size")
+    @ConfigDescription("Maximum total size of the spilled request bodies in use at once, requests that would spill more are rejected with 503")
+    public RequestSpoolConfig setMaxSpoolSize(DataSize maxSpoolSize)
+    {
+        this.maxSpoolSize = maxSpoolSize;
+        return this;
+    }
+}
@@ -32,12 +32,20 @@ public class ResourceSecurityDynamicFeature
 {
     private final SigningController signingController;
     private final RequestLoggerController requestLoggerController;
+    private final RequestContentSpooler requestContentSpooler;
+    private final ProxyRequestStats proxyRequestStats;
 
     @Inject
-    public ResourceSecurityDynamicFeature(SigningController signingController, RequestLoggerController requestLoggerController)
+    public ResourceSecurityDynamicFeature(
+            SigningController signingController,
+            RequestLoggerController requestLoggerController,
+            RequestContentSpooler requestContentSpooler,
+            ProxyRequestStats proxyRequestStats)
     {
         this.signingController = requireNonNull(signingController);
         this.requestLoggerController = requireNonNull(requestLoggerController);
+        this.requestContentSpooler = requireNonNull(requestContentSpooler);
+        this.proxyRequestStats = requireNonNull(proxyRequestStats);
     }
 
     @Override
@@ -48,7 +56,7 @@ public class ResourceSecurityDynamicFeature
             switch (accessType) {
                 case Public _ -> {}
                 case SigV4AccessType sigV4AccessType ->
-                        context.register(new SecurityFilter(signingController, sigV4AccessType.signingServiceType(), requestLoggerController));
+                        context.register(new SecurityFilter(signingController, sigV4AccessType.signingServiceType(), requestLoggerController, requestContentSpooler, proxyRequestStats));
             }
         }
     }
@@ -33,5 +33,10 @@ public class RestModule
 
         configBinder(binder).bindConfig(RequestLoggerConfig.class);
         binder.bind(RequestLoggerController.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(RequestSpoolConfig.class);
+        binder.bind(RequestContentSpooler.class).in(Scopes.SINGLETON);
+
+        configBinder(binder).bindConfig(RateLimitConfig.class);
     }
 }
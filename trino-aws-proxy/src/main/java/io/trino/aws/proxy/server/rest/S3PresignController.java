@@ -13,11 +13,14 @@
  */
 package io.trino.aws.proxy.server.rest;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.SecurityResponse.Failure;
 import io.trino.aws.proxy.spi.security.SecurityResponse.Success;
 import io.trino.aws.proxy.spi.signing.SigningContext;
@@ -27,19 +30,30 @@ import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Stream;
 
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
 public class S3PresignController
 {
+    private static final List<String> PRESIGNED_HTTP_METHODS = ImmutableList.of("GET", "PUT", "POST", "DELETE");
+
     private final SigningController signingController;
     private final Duration presignUrlDuration;
     private final S3SecurityController s3SecurityController;
 
+    private record PresignedRequest(ParsedS3Request checkRequest, URI signingUri)
+    {
+        private PresignedRequest
+        {
+            requireNonNull(checkRequest, "checkRequest is null");
+            requireNonNull(signingUri, "signingUri is null");
+        }
+    }
+
     @Inject
     public S3PresignController(SigningController signingController, TrinoAwsProxyConfig trinoAwsProxyConfig, S3SecurityController s3SecurityController)
     {
@@ -54,13 +68,26 @@ public class S3PresignController
     {
         Optional<Instant> signatureExpiry = Optional.of(Instant.now().plusMillis(presignUrlDuration.toMillis()));
 
-        return Stream.of("GET", "PUT", "POST", "DELETE")
-                .flatMap(httpMethod -> buildPresignedRemoteUrl(httpMethod, signingMetadata, identity, request, targetRequestTimestamp, remoteUri, signatureExpiry))
-                .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+        List<PresignedRequest> presignedRequests = PRESIGNED_HTTP_METHODS.stream()
+                .map(httpMethod -> buildPresignedRemoteUrl(httpMethod, signingMetadata, request, targetRequestTimestamp, remoteUri, signatureExpiry))
+                .collect(toImmutableList());
+
+        // the security checks for all the methods are evaluated together so that providers can batch them
+        List<SecurityResponse> securityResponses = s3SecurityController.applyAll(presignedRequests.stream().map(PresignedRequest::checkRequest).collect(toImmutableList()), identity);
+
+        ImmutableMap.Builder<String, URI> presignedUrls = ImmutableMap.builder();
+        for (int i = 0; i < presignedRequests.size(); ++i) {
+            PresignedRequest presignedRequest = presignedRequests.get(i);
+            switch (securityResponses.get(i)) {
+                case Success _ -> presignedUrls.put(presignedRequest.checkRequest().httpVerb(), presignedRequest.signingUri());
+                case Failure _ -> {}
+            }
+        }
+        return presignedUrls.buildOrThrow();
     }
 
-    private Stream<Map.Entry<String, URI>> buildPresignedRemoteUrl(String httpMethod, SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request,
-            Instant targetRequestTimestamp, URI remoteUri, Optional<Instant> signatureExpiry)
+    private PresignedRequest buildPresignedRemoteUrl(String httpMethod, SigningMetadata signingMetadata, ParsedS3Request request, Instant targetRequestTimestamp, URI remoteUri,
+            Optional<Instant> signatureExpiry)
     {
         SigningContext signingContext = signingController.presignRequest(
                 signingMetadata,
@@ -85,9 +112,6 @@ public class S3PresignController
                 request.rawQuery(),
                 request.requestContent());
 
-        return switch (s3SecurityController.apply(checkRequest, identity)) {
-            case Success _ -> Stream.of(Map.entry(httpMethod, signingContext.signingUri()));
-            case Failure _ -> Stream.empty();
-        };
+        return new PresignedRequest(checkRequest, signingContext.signingUri());
     }
 }
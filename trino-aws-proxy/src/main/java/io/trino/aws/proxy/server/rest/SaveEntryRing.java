@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fixed size ring of the most recent entries. Writers claim a sequence number and publish into its slot
+ * without locking and learn which entry they evicted, readers take the entries in sequence order without
+ * blocking writers. An entry whose writer has claimed a slot but not yet published it is not returned.
+ */
+class SaveEntryRing<T>
+{
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private record Slot<T>(long sequence, T entry)
+    {
+        private Slot
+        {
+            requireNonNull(entry, "entry is null");
+        }
+    }
+
+    // entries between two sequence numbers, used to hand entries over to a consumer in order
+    record Range<T>(List<T> entries, long endSequence, long evicted)
+    {
+        Range
+        {
+            entries = ImmutableList.copyOf(entries);
+        }
+    }
+
+    SaveEntryRing(int capacity)
+    {
+        checkArgument(capacity > 0, "capacity must be greater than 0");
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    // returns the entry that was evicted to make room, which is the added entry itself if the ring already wrapped past it
+    Optional<T> add(T entry)
+    {
+        long sequence = nextSequence.getAndIncrement();
+        int index = (int) (sequence % slots.length());
+        Slot<T> slot = new Slot<>(sequence, entry);
+        Slot<T> current;
+        do {
+            current = slots.get(index);
+            if ((current != null) && (current.sequence() > sequence)) {
+                // a writer that wrapped around the ring got here first, this entry is already evicted
+                return Optional.of(entry);
+            }
+        }
+        while (!slots.compareAndSet(index, current, slot));
+        return Optional.ofNullable(current).map(Slot::entry);
+    }
+
+    /**
+     * Returns the entries starting at {@code fromSequence}, up to the first entry that is not published yet.
+     * Entries that were overwritten before they could be returned are counted as evicted.
+     */
+    Range<T> entriesFrom(long fromSequence)
+    {
+        long endSequence = nextSequence.get();
+        long sequence = Math.max(fromSequence, endSequence - slots.length());
+        long evicted = sequence - fromSequence;
+
+        ImmutableList.Builder<T> builder = ImmutableList.builder();
+        for (; sequence < endSequence; ++sequence) {
+            Slot<T> slot = slots.get((int) (sequence % slots.length()));
+            if ((slot == null) || (slot.sequence() < sequence)) {
+                // claimed but not published yet, continue from here next time
+                break;
+            }
+            if (slot.sequence() == sequence) {
+                builder.add(slot.entry());
+            }
+            else {
+                ++evicted;
+            }
+        }
+        return new Range<>(builder.build(), sequence, evicted);
+    }
+
+    long nextSequence()
+    {
+        return nextSequence.get();
+    }
+}
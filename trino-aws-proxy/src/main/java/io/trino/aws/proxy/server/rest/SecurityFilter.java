@@ -35,6 +35,7 @@ import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.Optional;
 
+import static io.trino.aws.proxy.spi.signing.SigningTrait.STREAM_CONTENT;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
 
@@ -46,12 +47,21 @@ public class SecurityFilter
     private final SigningController signingController;
     private final SigningServiceType signingServiceType;
     private final RequestLoggerController requestLoggerController;
-
-    public SecurityFilter(SigningController signingController, SigningServiceType signingServiceType, RequestLoggerController requestLoggerController)
+    private final RequestContentSpooler requestContentSpooler;
+    private final ProxyRequestStats proxyRequestStats;
+
+    public SecurityFilter(
+            SigningController signingController,
+            SigningServiceType signingServiceType,
+            RequestLoggerController requestLoggerController,
+            RequestContentSpooler requestContentSpooler,
+            ProxyRequestStats proxyRequestStats)
     {
         this.signingController = requireNonNull(signingController, "signingController is null");
         this.signingServiceType = requireNonNull(signingServiceType, "signingServiceType is null");
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
+        this.requestContentSpooler = requireNonNull(requestContentSpooler, "requestContentSpooler is null");
+        this.proxyRequestStats = requireNonNull(proxyRequestStats, "proxyRequestStats is null");
     }
 
     @SuppressWarnings("ThrowableNotThrown")
@@ -65,17 +75,23 @@ public class SecurityFilter
                 throw new WebApplicationException(INTERNAL_SERVER_ERROR);
             }
 
-            Request request = RequestBuilder.fromRequest(containerRequest);
+            long parseStart = System.nanoTime();
+            Request request = RequestBuilder.fromRequest(containerRequest, signingServiceType.hasTrait(STREAM_CONTENT), requestContentSpooler);
+            long parseNanos = System.nanoTime() - parseStart;
             containerRequest.setProperty(Request.class.getName(), request);
 
             RequestLoggingSession requestLoggingSession = requestLoggerController.newRequestSession(request, signingServiceType);
             containerRequest.setProperty(RequestLoggingSession.class.getName(), requestLoggingSession);
+            requestLoggingSession.logTiming("request.parse", parseNanos);
 
             SigningIdentity signingIdentity;
+            long validationStart = System.nanoTime();
             try {
                 signingIdentity = signingController.validateAndParseAuthorization(request, signingServiceType);
+                requestLoggingSession.logTiming("signature.validation", proxyRequestStats.getSignatureValidation().addSince(validationStart));
             }
             catch (Exception e) {
+                requestLoggingSession.logTiming("signature.validation", proxyRequestStats.getSignatureValidation().addSince(validationStart));
                 requestLoggingSession.logException(e);
 
                 switch (Throwables.getRootCause(e)) {
@@ -99,6 +115,12 @@ public class SecurityFilter
     public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
             throws IOException
     {
+        proxyRequestStats.requestCompleted(signingServiceType, responseContext.getStatus());
+        if (requestContext.getRequest() instanceof ContainerRequest containerRequest) {
+            // the request content is not read once the response is ready, release its spooled content
+            Optional.ofNullable(unwrap(containerRequest, Request.class))
+                    .ifPresent(request -> RequestBuilder.closeRequestContent(request.requestContent()));
+        }
         if ((requestContext.getRequest() instanceof ContainerRequest containerRequest) && (responseContext instanceof ContainerResponse containerResponse)) {
             Optional.ofNullable(unwrap(containerRequest, RequestLoggingSession.class))
                     .ifPresent(requestLoggingSession -> {
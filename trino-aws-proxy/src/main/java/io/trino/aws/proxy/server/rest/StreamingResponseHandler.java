@@ -14,11 +14,12 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.airlift.http.client.HeaderName;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.Response;
 import io.airlift.http.client.ResponseHandler;
+import io.trino.aws.proxy.server.rest.LimitStreamController.RateLimitScope;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.StreamingOutput;
@@ -27,8 +28,12 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.google.common.util.concurrent.Futures.getUnchecked;
 import static jakarta.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static java.util.Objects.requireNonNull;
 
@@ -38,23 +43,40 @@ class StreamingResponseHandler
     private static final String PRESIGNED_URL_HEADER_BASE = "X-Trino-Pre-Signed-Url-";
 
     private final AsyncResponse asyncResponse;
-    private final Map<String, URI> presignedUrls;
+    private final Future<Map<String, URI>> presignedUrls;
     private final RequestLoggingSession requestLoggingSession;
     private final AtomicBoolean hasBeenResumed = new AtomicBoolean(false);
     private final LimitStreamController limitStreamController;
-
-    StreamingResponseHandler(AsyncResponse asyncResponse, Map<String, URI> presignedUrls, RequestLoggingSession requestLoggingSession, LimitStreamController limitStreamController)
+    private final RateLimitScope rateLimitScope;
+    private final ProxyRequestStats proxyRequestStats;
+    private final String bucket;
+    private final long startNanos = System.nanoTime();
+
+    StreamingResponseHandler(
+            AsyncResponse asyncResponse,
+            Future<Map<String, URI>> presignedUrls,
+            RequestLoggingSession requestLoggingSession,
+            LimitStreamController limitStreamController,
+            RateLimitScope rateLimitScope,
+            ProxyRequestStats proxyRequestStats,
+            String bucket)
     {
         this.asyncResponse = requireNonNull(asyncResponse, "asyncResponse is null");
-        this.presignedUrls = ImmutableMap.copyOf(presignedUrls);
+        this.presignedUrls = requireNonNull(presignedUrls, "presignedUrls is null");
         this.requestLoggingSession = requireNonNull(requestLoggingSession, "requestLoggingSession is null");
         this.limitStreamController = requireNonNull(limitStreamController, "quotaStreamController is null");
+        this.rateLimitScope = requireNonNull(rateLimitScope, "rateLimitScope is null");
+        this.proxyRequestStats = requireNonNull(proxyRequestStats, "proxyRequestStats is null");
+        this.bucket = requireNonNull(bucket, "bucket is null");
     }
 
     @Override
     public Void handleException(Request request, Exception exception)
             throws RuntimeException
     {
+        // the presigned URLs are not needed anymore
+        presignedUrls.cancel(true);
+
         requestLoggingSession.logException(exception);
         requestLoggingSession.close();
 
@@ -66,14 +88,36 @@ class StreamingResponseHandler
     public Void handle(Request request, Response response)
             throws RuntimeException
     {
+        requestLoggingSession.logTiming("remote.ttfb", proxyRequestStats.getRemoteTimeToFirstByte().addSince(startNanos));
+
+        Map<String, URI> presignedUrls;
+        try {
+            presignedUrls = getUnchecked(this.presignedUrls);
+        }
+        catch (UncheckedExecutionException e) {
+            // handle what the presigning threw, e.g. the WebApplicationException of a failed security check
+            return handleException(request, (e.getCause() instanceof Exception cause) ? cause : e);
+        }
+        catch (RuntimeException e) {
+            return handleException(request, e);
+        }
+
         StreamingOutput streamingOutput = output -> {
             InputStream inputStream = response.getInputStream();
 
             // HttpClient/Jersey timeouts control behavior. The configured HttpClient idle timeout
             // controls whether the InputStream will time out. Jersey configuration controls
             // OutputStream and general request timeouts.
-            inputStream.transferTo(limitStreamController.wrap(output));
-            output.flush();
+            long transferStart = proxyRequestStats.transferStarted();
+            long transferred = 0;
+            try {
+                transferred = limitStreamController.transfer(inputStream, output, rateLimitScope);
+                output.flush();
+            }
+            finally {
+                requestLoggingSession.logTiming("remote.transfer", proxyRequestStats.transferFinished(transferStart, bucket, transferred));
+                requestLoggingSession.logProperty("remote.transfer.bytes", transferred);
+            }
         };
 
         jakarta.ws.rs.core.Response.ResponseBuilder responseBuilder = jakarta.ws.rs.core.Response.status(response.getStatusCode());
@@ -96,6 +140,43 @@ class StreamingResponseHandler
         return null;
     }
 
+    /**
+     * The HttpClient calls the handler of an async request from one of its own threads. Resuming writes the response
+     * to the client, which takes as long as the client reads slowly or its bandwidth is throttled, so the returned
+     * handler does that on the executor instead.
+     */
+    ResponseHandler<Void, RuntimeException> handingOffTo(Executor executor)
+    {
+        requireNonNull(executor, "executor is null");
+        return new ResponseHandler<>()
+        {
+            @Override
+            public Void handleException(Request request, Exception exception)
+            {
+                handOff(executor, request, () -> StreamingResponseHandler.this.handleException(request, exception));
+                return null;
+            }
+
+            @Override
+            public Void handle(Request request, Response response)
+            {
+                handOff(executor, request, () -> StreamingResponseHandler.this.handle(request, response));
+                return null;
+            }
+        };
+    }
+
+    private void handOff(Executor executor, Request request, Runnable handler)
+    {
+        try {
+            executor.execute(handler);
+        }
+        catch (RejectedExecutionException e) {
+            // shutting down, the error response is small enough to write from here
+            handleException(request, e);
+        }
+    }
+
     @SuppressWarnings("ThrowableNotThrown")
     private void resume(Object result)
     {
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket that only keeps the time at which it is full again. Taking tokens moves that time forward
+ * by their cost, which is a single compare and set, so streams sharing a bucket never lock each other.
+ */
+class TokenBucket
+{
+    private final double nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier ticker;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double tokensPerSecond, long burstNanos, LongSupplier ticker)
+    {
+        checkArgument(tokensPerSecond > 0, "tokensPerSecond must be greater than 0");
+        checkArgument(burstNanos > 0, "burstNanos must be greater than 0");
+        this.nanosPerToken = SECONDS.toNanos(1) / tokensPerSecond;
+        // at least one token must fit, or a single request could never be let through
+        this.burstNanos = Math.max(burstNanos, (long) Math.ceil(nanosPerToken));
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        fullAt = new AtomicLong(ticker.getAsLong());
+    }
+
+    /**
+     * Takes the tokens if the bucket has them now.
+     */
+    boolean tryAcquire(long tokens)
+    {
+        long now = ticker.getAsLong();
+        long cost = cost(tokens);
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + cost;
+            if ((next - now) > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the tokens even if the bucket does not have them, and returns how many nanoseconds the caller has to wait
+     * until the bucket would have had them. Callers that wait keep the rate, and callers after them wait longer.
+     */
+    long acquire(long tokens)
+    {
+        long now = ticker.getAsLong();
+        long cost = cost(tokens);
+        long current;
+        long next;
+        do {
+            current = fullAt.get();
+            next = Math.max(current, now) + cost;
+        }
+        while (!fullAt.compareAndSet(current, next));
+        return Math.max((next - now) - burstNanos, 0);
+    }
+
+    private long cost(long tokens)
+    {
+        return (long) Math.ceil(tokens * nanosPerToken);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded pool of fixed-size transfer buffers used when relaying bodies between
+ * the remote S3 connection and the client. Buffers are handed out per transfer and
+ * returned when the transfer completes, so steady-state relaying does not allocate.
+ * When the pool is empty a new buffer is allocated; when it is full, returned buffers
+ * are dropped and left to the garbage collector.
+ */
+class TransferBufferPool
+{
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    TransferBufferPool(int bufferSize, int maxPooledBuffers)
+    {
+        checkArgument(bufferSize > 0, "bufferSize must be positive");
+        checkArgument(maxPooledBuffers > 0, "maxPooledBuffers must be positive");
+
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    byte[] acquire()
+    {
+        byte[] buffer = buffers.poll();
+        return (buffer != null) ? buffer : new byte[bufferSize];
+    }
+
+    void release(byte[] buffer)
+    {
+        buffers.offer(buffer);
+    }
+}
@@ -19,6 +19,8 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.EntryKey;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.LogQuery;
 import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
 import io.trino.aws.proxy.server.rest.ResourceSecurity.Logs;
 import io.trino.aws.proxy.server.rest.TrinoLogsResource.GetLogEventsResponse.Event;
@@ -32,11 +34,12 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Predicate;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
@@ -56,9 +59,9 @@ public class TrinoLogsResource
 
         private final String prefix;
 
-        private Optional<String> atIndex(int index)
+        private Optional<String> atKey(EntryKey key)
         {
-            return Optional.of(prefix + index);
+            return Optional.of(prefix + key.eventId());
         }
 
         TokenType(String prefix)
@@ -139,10 +142,10 @@ public class TrinoLogsResource
 
     private Response getLogEvents(Request request)
     {
-        byte[] bytes = request.requestContent().standardBytes().orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
+        InputStream inputStream = request.requestContent().inputStream().orElseThrow(() -> new WebApplicationException(BAD_REQUEST));
         GetLogEventsRequest getLogEvents;
         try {
-            getLogEvents = objectMapper.readValue(bytes, GetLogEventsRequest.class);
+            getLogEvents = objectMapper.readValue(inputStream, GetLogEventsRequest.class);
         }
         catch (IOException e) {
             throw new WebApplicationException(e, BAD_REQUEST);
@@ -151,99 +154,81 @@ public class TrinoLogsResource
         // TODO - support filter patterns
 
         boolean startFromHead = getLogEvents.startFromHead.orElse(false);
-        Predicate<SaveEntry> predicate = entry -> startTimePasses(getLogEvents, entry) &&
-                endTimePasses(getLogEvents, entry) &&
-                logStreamNamesPasses(entry, getLogEvents);
         int limit = getLogEvents.limit.orElse(Integer.MAX_VALUE);
+        if (limit < 1) {
+            throw new WebApplicationException("Invalid limit", BAD_REQUEST);
+        }
 
-        List<SaveEntry> filteredEntries = loggerController.savedEntries(startFromHead, predicate);
-
-        record StartIndex(TokenType tokenType, int index) {}
+        record StartKey(TokenType tokenType, EntryKey key) {}
 
-        // next token is merely an index
-        StartIndex startIndex = getLogEvents.nextToken().map(nextToken -> {
-            try {
-                TokenType tokenType;
-                if (nextToken.startsWith(TokenType.FORWARDS.prefix)) {
-                    tokenType = TokenType.FORWARDS;
-                }
-                else if (nextToken.startsWith(TokenType.BACKWARDS.prefix)) {
-                    tokenType = TokenType.BACKWARDS;
-                }
-                else {
-                    throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
-                }
-                return new StartIndex(tokenType, Integer.parseInt(nextToken.substring(2)));
+        // next token is the event id of the entry to continue from, it stays valid while new entries are saved
+        Optional<StartKey> startKey = getLogEvents.nextToken().map(nextToken -> {
+            TokenType tokenType;
+            if (nextToken.startsWith(TokenType.FORWARDS.prefix)) {
+                tokenType = TokenType.FORWARDS;
+            }
+            else if (nextToken.startsWith(TokenType.BACKWARDS.prefix)) {
+                tokenType = TokenType.BACKWARDS;
             }
-            catch (NumberFormatException _) {
+            else {
                 throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
             }
-        }).orElseGet(() -> startFromHead ? new StartIndex(TokenType.FORWARDS, 0) : new StartIndex(TokenType.BACKWARDS, Math.max(filteredEntries.size() - 1, 0)));
-
-        // Track the number of items we need to skip depending on the token we received
-        // and the order of iteration
-        int positionInFilteredStream;
-        if (startFromHead) {
-            positionInFilteredStream = startIndex.index;
-        }
-        else {
-            // The AWS spec mandates startFromHead must be true if using a forward token
-            if (startIndex.tokenType == TokenType.FORWARDS) {
-                throw new WebApplicationException("Invalid startIndex", BAD_REQUEST);
+            try {
+                return new StartKey(tokenType, EntryKey.fromEventId(nextToken.substring(2)));
+            }
+            catch (IllegalArgumentException _) {
+                throw new WebApplicationException("Invalid nextToken", BAD_REQUEST);
             }
-            // If traversing backwards, the index in the reversed stream needs to be computed based on its size
-            positionInFilteredStream = Math.max(filteredEntries.size() - startIndex.index - 1, 0);
+        });
+        // The AWS spec mandates startFromHead must be true if using a forward token
+        if (!startFromHead && startKey.map(StartKey::tokenType).filter(TokenType.FORWARDS::equals).isPresent()) {
+            throw new WebApplicationException("Invalid startIndex", BAD_REQUEST);
         }
-        List<Event> events = filteredEntries.stream()
-                .skip(positionInFilteredStream)
+
+        Optional<Set<String>> serviceNames = getLogEvents.logStreamName.<Set<String>>map(ImmutableSet::of).or(() -> getLogEvents.logStreamNames);
+        // one more than the limit tells whether there is a next page and where it starts
+        LogQuery query = new LogQuery(
+                startFromHead,
+                startKey.map(StartKey::key),
+                getLogEvents.startTime.map(Instant::ofEpochMilli),
+                getLogEvents.endTime.map(Instant::ofEpochMilli),
+                serviceNames,
+                (int) Math.min(limit + 1L, Integer.MAX_VALUE));
+        List<SaveEntry> entries = loggerController.savedEntries(query);
+        boolean hasMore = entries.size() > limit;
+
+        List<Event> events = entries.stream()
                 .limit(limit)
                 .map(entry -> new Event("trino", entry.entryId(), entry.timestamp().toEpochMilli(), entry.timestamp().toEpochMilli(), format(entry)))
                 .collect(toImmutableList());
 
+        EntryKey pageKey = startKey.map(StartKey::key)
+                .or(() -> entries.stream().findFirst().map(SaveEntry::key))
+                .orElse(startFromHead ? EntryKey.FIRST : EntryKey.LAST);
+        // the first entry before the page in the opposite direction, if any. Like the page itself this is a seek in the
+        // index or the store, and nothing can come before an empty page without a token
+        Optional<EntryKey> oppositeKey = Optional.of(pageKey)
+                .filter(key -> !key.equals(EntryKey.FIRST) && !key.equals(EntryKey.LAST))
+                .flatMap(key -> loggerController.savedEntries(query.withPosition(!startFromHead, Optional.of(key), 2)).stream()
+                        .map(SaveEntry::key)
+                        .filter(entryKey -> !entryKey.equals(key))
+                        .findFirst());
+
         Optional<String> nextBackwardToken;
         Optional<String> nextForwardToken;
         if (startFromHead) {
-            nextForwardToken = ((startIndex.index + limit) < filteredEntries.size()) ? TokenType.FORWARDS.atIndex(startIndex.index + limit) : TokenType.FORWARDS.atIndex(startIndex.index);
-            nextBackwardToken = (startIndex.index - 1 >= 0) ? TokenType.BACKWARDS.atIndex(startIndex.index - 1) : TokenType.BACKWARDS.atIndex(startIndex.index);
+            nextForwardToken = hasMore ? TokenType.FORWARDS.atKey(entries.get(limit).key()) : TokenType.FORWARDS.atKey(pageKey);
+            nextBackwardToken = TokenType.BACKWARDS.atKey(oppositeKey.orElse(pageKey));
         }
         else {
-            nextBackwardToken = ((startIndex.index - limit) >= 0) ? TokenType.BACKWARDS.atIndex(startIndex.index - limit) : TokenType.BACKWARDS.atIndex(startIndex.index);
-            nextForwardToken = (startIndex.index + 1) < filteredEntries.size() ? TokenType.FORWARDS.atIndex(startIndex.index + 1) : TokenType.FORWARDS.atIndex(startIndex.index);
+            nextBackwardToken = hasMore ? TokenType.BACKWARDS.atKey(entries.get(limit).key()) : TokenType.BACKWARDS.atKey(pageKey);
+            nextForwardToken = TokenType.FORWARDS.atKey(oppositeKey.orElse(pageKey));
         }
         GetLogEventsResponse response = new GetLogEventsResponse(events, nextBackwardToken, nextForwardToken);
 
         return Response.ok(response).build();
     }
 
-    private static boolean logStreamNamesPasses(SaveEntry entry, GetLogEventsRequest getLogEvents)
-    {
-        return getLogEvents.logStreamName.map(logStreamName -> logStreamNamePasses(logStreamName, entry))
-                .orElseGet(() -> getLogEvents.logStreamNames
-                        .map(logStreamNames -> logStreamNames.stream().anyMatch(logStreamName -> logStreamNamePasses(logStreamName, entry)))
-                        .orElse(true));
-    }
-
-    private static boolean logStreamNamePasses(String logStreamName, SaveEntry entry)
-    {
-        return entry.serviceType().serviceName().equalsIgnoreCase(logStreamName);
-    }
-
-    private static boolean startTimePasses(GetLogEventsRequest getLogEvents, SaveEntry entry)
-    {
-        long timestamp = entry.timestamp().toEpochMilli();
-        return getLogEvents.startTime
-                .map(startTime -> startTime <= timestamp)
-                .orElse(true);
-    }
-
-    private static boolean endTimePasses(GetLogEventsRequest getLogEvents, SaveEntry entry)
-    {
-        long timestamp = entry.timestamp().toEpochMilli();
-        return getLogEvents.endTime
-                .map(endTime -> endTime > timestamp)
-                .orElse(true);
-    }
-
     private String format(SaveEntry entry)
     {
         ObjectNode messageNode = objectMapper.createObjectNode();
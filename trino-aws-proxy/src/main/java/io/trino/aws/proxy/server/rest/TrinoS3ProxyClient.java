@@ -14,13 +14,18 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
 import io.airlift.http.client.Request;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
 import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController;
+import io.trino.aws.proxy.server.rest.LimitStreamController.RateLimitScope;
+import io.trino.aws.proxy.server.rest.ProxyClientRequestStats.EndpointStats;
 import io.trino.aws.proxy.server.security.S3SecurityController;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
@@ -52,7 +57,10 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
 import static io.airlift.http.client.StreamingBodyGenerator.streamingBodyGenerator;
 import static java.lang.annotation.ElementType.FIELD;
@@ -72,8 +80,11 @@ public class TrinoS3ProxyClient
     private final LimitStreamController limitStreamController;
     private final S3RequestRewriter s3RequestRewriter;
     private final RemoteS3ConnectionController remoteS3ConnectionController;
+    private final ProxyClientRequestStats proxyClientRequestStats;
+    private final ProxyRequestStats proxyRequestStats;
     private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
     private final boolean generatePresignedUrlsOnHead;
+    private final boolean asyncBodylessRequests;
 
     @Retention(RUNTIME)
     @Target({FIELD, PARAMETER, METHOD})
@@ -91,7 +102,9 @@ public class TrinoS3ProxyClient
             S3PresignController s3PresignController,
             LimitStreamController limitStreamController,
             S3RequestRewriter s3RequestRewriter,
-            RemoteS3ConnectionController remoteS3ConnectionController)
+            RemoteS3ConnectionController remoteS3ConnectionController,
+            ProxyClientRequestStats proxyClientRequestStats,
+            ProxyRequestStats proxyRequestStats)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.signingController = requireNonNull(signingController, "signingController is null");
@@ -100,8 +113,11 @@ public class TrinoS3ProxyClient
         this.limitStreamController = requireNonNull(limitStreamController, "quotaStreamController is null");
         this.s3RequestRewriter = requireNonNull(s3RequestRewriter, "s3RequestRewriter is null");
         this.remoteS3ConnectionController = requireNonNull(remoteS3ConnectionController, "remoteS3ConnectionController is null");
+        this.proxyClientRequestStats = requireNonNull(proxyClientRequestStats, "proxyClientRequestStats is null");
+        this.proxyRequestStats = requireNonNull(proxyRequestStats, "proxyRequestStats is null");
 
         generatePresignedUrlsOnHead = trinoAwsProxyConfig.isGeneratePresignedUrlsOnHead();
+        asyncBodylessRequests = trinoAwsProxyConfig.isAsyncBodylessRequests();
     }
 
     @PreDestroy
@@ -115,7 +131,12 @@ public class TrinoS3ProxyClient
     public void proxyRequest(Optional<Identity> identity, SigningMetadata signingMetadata, ParsedS3Request request, AsyncResponse asyncResponse,
             RequestLoggingSession requestLoggingSession)
     {
+        RateLimitScope rateLimitScope = new RateLimitScope(signingMetadata.credential().accessKey(), identity.map(Identity::user), request.bucketName());
+        limitStreamController.acquireRequest(rateLimitScope);
+
+        long securityCheckStart = System.nanoTime();
         SecurityResponse securityResponse = s3SecurityController.apply(request, identity);
+        requestLoggingSession.logTiming("security.check", proxyRequestStats.getSecurityCheck().addSince(securityCheckStart));
         if (securityResponse instanceof Failure(var error)) {
             log.debug("SecurityController check failed. AccessKey: %s, Request: %s, SecurityResponse: %s", signingMetadata.credential().accessKey(), request, securityResponse);
             requestLoggingSession.logError("request.security.fail.credentials", signingMetadata.credential());
@@ -124,15 +145,22 @@ public class TrinoS3ProxyClient
 
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
+        limitStreamController.acquireBucketRequest(rateLimitScope);
 
+        long rewriteStart = System.nanoTime();
         Optional<S3RewriteResult> rewriteResult = s3RequestRewriter.rewrite(identity, signingMetadata, request);
+        requestLoggingSession.logTiming("rewrite", System.nanoTime() - rewriteStart);
         String targetBucket = rewriteResult.map(S3RewriteResult::finalRequestBucket).orElse(request.bucketName());
         String targetKey = rewriteResult
                 .map(S3RewriteResult::finalRequestKey)
                 .map(SdkHttpUtils::urlEncodeIgnoreSlashes)
                 .orElse(request.rawPath());
 
+        boolean presignOnHead = generatePresignedUrlsOnHead && request.httpVerb().equalsIgnoreCase("HEAD");
+
+        long resolutionStart = System.nanoTime();
         RemoteRequestWithPresignedURIs remoteRequest = remoteS3ConnectionController.withRemoteConnection(signingMetadata, identity, request, (remoteCredential, remoteS3Facade) -> {
+            requestLoggingSession.logTiming("remote.connect", proxyRequestStats.getRemoteConnectionResolution().addSince(resolutionStart));
             URI remoteUri = remoteS3Facade.buildEndpoint(uriBuilder(request.queryParameters()), targetKey, targetBucket, request.requestAuthorization().region());
 
             Request.Builder remoteRequestBuilder = new Request.Builder()
@@ -159,19 +187,20 @@ public class TrinoS3ProxyClient
 
             SigningMetadata remoteSigningMetadata = signingMetadata.withCredential(remoteCredential);
 
-            Map<String, URI> presignedUrls;
-            if (generatePresignedUrlsOnHead && request.httpVerb().equalsIgnoreCase("HEAD")) {
-                presignedUrls = s3PresignController.buildPresignedRemoteUrls(identity, remoteSigningMetadata, request, targetRequestTimestamp, remoteUri);
+            Future<Map<String, URI>> presignedUrls;
+            if (presignOnHead) {
+                // signing and security checks run while the remote HEAD is in flight, the response handler waits for them before writing headers
+                presignedUrls = executorService.submit(() -> s3PresignController.buildPresignedRemoteUrls(identity, remoteSigningMetadata, request, targetRequestTimestamp, remoteUri));
             }
             else {
-                presignedUrls = ImmutableMap.of();
+                presignedUrls = immediateFuture(ImmutableMap.of());
             }
 
             remoteCredential
                     .session()
                     .ifPresent(sessionToken -> remoteRequestHeadersBuilder.putOrReplaceSingle("x-amz-security-token", sessionToken));
 
-            contentInputStream(request.requestContent(), remoteSigningMetadata).ifPresent(inputStream -> remoteRequestBuilder.setBodyGenerator(streamingBodyGenerator(inputStream)));
+            contentInputStream(request.requestContent(), remoteSigningMetadata, rateLimitScope).ifPresent(inputStream -> remoteRequestBuilder.setBodyGenerator(streamingBodyGenerator(inputStream)));
 
             // set the new signed request auth header
             MultiMap remoteRequestHeaders = remoteRequestHeadersBuilder.build();
@@ -195,31 +224,78 @@ public class TrinoS3ProxyClient
             return new WebApplicationException(Response.Status.NOT_FOUND);
         });
 
+        EndpointStats endpointStats = proxyClientRequestStats.endpoint(remoteRequest.remoteRequest().getUri());
+        request.requestContent().contentLength().ifPresent(length -> proxyRequestStats.bytesIn(targetBucket, length));
+
+        // waiting for the presigned URLs must not block an HttpClient thread, so those requests use a virtual thread
+        if (asyncBodylessRequests && isBodyless(request) && !presignOnHead) {
+            // the response body of these requests is empty or tiny, so the HttpClient can buffer it without parking a
+            // thread for the whole exchange. Its callback hands the response off, writing to the client can be slow
+            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, remoteRequest.presignedUrls(), requestLoggingSession, limitStreamController, rateLimitScope, proxyRequestStats, targetBucket);
+            long startNanos = endpointStats.requestStarted();
+            try {
+                HttpResponseFuture<Void> responseFuture = httpClient.executeAsync(remoteRequest.remoteRequest(), responseHandler.handingOffTo(executorService));
+                Futures.addCallback(responseFuture, new FutureCallback<>()
+                {
+                    @Override
+                    public void onSuccess(Void result)
+                    {
+                        endpointStats.requestFinished(startNanos, false);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t)
+                    {
+                        endpointStats.requestFinished(startNanos, true);
+                    }
+                }, directExecutor());
+            }
+            catch (Throwable e) {
+                endpointStats.requestFinished(startNanos, true);
+                responseHandler.handleException(remoteRequest.remoteRequest(), new RuntimeException(e));
+            }
+            return;
+        }
+
         executorService.submit(() -> {
-            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, remoteRequest.presignedUrls(), requestLoggingSession, limitStreamController);
+            StreamingResponseHandler responseHandler = new StreamingResponseHandler(asyncResponse, remoteRequest.presignedUrls(), requestLoggingSession, limitStreamController, rateLimitScope, proxyRequestStats, targetBucket);
+            long startNanos = endpointStats.requestStarted();
+            boolean failed = true;
             try {
                 httpClient.execute(remoteRequest.remoteRequest(), responseHandler);
+                failed = false;
             }
             catch (Throwable e) {
                 // TODO: if responseHandler is null this will throw an NPE inside a catch clause, so the request doesn't terminate properly; fix; also we should have a timeout
                 //  for request processing
                 responseHandler.handleException(remoteRequest.remoteRequest(), new RuntimeException(e));
             }
+            finally {
+                endpointStats.requestFinished(startNanos, failed);
+            }
         });
     }
 
-    private Optional<InputStream> contentInputStream(RequestContent requestContent, SigningMetadata signingMetadata)
+    private static boolean isBodyless(ParsedS3Request request)
+    {
+        if (request.requestContent().contentType() != RequestContent.ContentType.EMPTY) {
+            return false;
+        }
+        return request.httpVerb().equalsIgnoreCase("HEAD") || request.httpVerb().equalsIgnoreCase("DELETE");
+    }
+
+    private Optional<InputStream> contentInputStream(RequestContent requestContent, SigningMetadata signingMetadata, RateLimitScope rateLimitScope)
     {
         return switch (requestContent.contentType()) {
             case AWS_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> requestContent.inputStream()
-                    .map(inputStream -> new AwsChunkedInputStream(limitStreamController.wrap(inputStream), signingMetadata.requiredSigningContext().chunkSigningSession(), requestContent.contentLength().orElseThrow()));
+                    .map(inputStream -> new AwsChunkedInputStream(limitStreamController.wrap(inputStream, rateLimitScope), signingMetadata.requiredSigningContext().chunkSigningSession(), requestContent.contentLength().orElseThrow()));
 
             case STANDARD, W3C_CHUNKED -> requestContent.inputStream().map(inputStream -> {
                 SigningContext signingContext = signingMetadata.requiredSigningContext();
                 return signingContext.contentHash()
                         .filter(contentHash -> !contentHash.startsWith("STREAMING-") && !contentHash.startsWith("UNSIGNED-"))
-                        .map(contentHash -> (InputStream) new HashCheckInputStream(limitStreamController.wrap(inputStream), contentHash, requestContent.contentLength()))
-                        .orElse(inputStream);
+                        .map(contentHash -> (InputStream) new HashCheckInputStream(limitStreamController.wrap(inputStream, rateLimitScope), contentHash, requestContent.contentLength()))
+                        .orElseGet(() -> limitStreamController.throttle(inputStream, rateLimitScope));
             });
 
             case EMPTY -> Optional.empty();
@@ -242,7 +318,7 @@ public class TrinoS3ProxyClient
         return uriBuilder;
     }
 
-    private record RemoteRequestWithPresignedURIs(Request remoteRequest, Map<String, URI> presignedUrls)
+    private record RemoteRequestWithPresignedURIs(Request remoteRequest, Future<Map<String, URI>> presignedUrls)
     {
         private RemoteRequestWithPresignedURIs
         {
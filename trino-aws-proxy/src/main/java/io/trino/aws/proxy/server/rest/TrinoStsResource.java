@@ -15,6 +15,7 @@ package io.trino.aws.proxy.server.rest;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.server.rest.AssumeRoleResponse.AssumeRoleResult;
@@ -23,6 +24,7 @@ import io.trino.aws.proxy.server.rest.ResourceSecurity.Sts;
 import io.trino.aws.proxy.spi.credentials.AssumedRoleProvider;
 import io.trino.aws.proxy.spi.credentials.EmulatedAssumedRole;
 import io.trino.aws.proxy.spi.rest.Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import io.trino.aws.proxy.spi.util.AwsTimestamp;
 import io.trino.aws.proxy.spi.util.MultiMap;
@@ -31,13 +33,17 @@ import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.glassfish.jersey.uri.UriComponent;
 
+import java.io.InputStream;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Scanner;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static io.trino.aws.proxy.spi.rest.RequestContent.ContentType.STANDARD;
 import static java.util.Objects.requireNonNull;
 
 @ResourceSecurity(Sts.class)
@@ -59,7 +65,7 @@ public class TrinoStsResource
     @POST
     public Response post(@Context Request request, @Context SigningMetadata signingMetadata, @Context RequestLoggingSession requestLoggingSession)
     {
-        Map<String, String> arguments = deserializeRequest(request.requestQueryParameters(), request.requestContent().standardBytes());
+        Map<String, String> arguments = deserializeRequest(request.requestQueryParameters(), standardEntity(request.requestContent()));
 
         String action = Optional.ofNullable(arguments.get("Action")).orElse("");
 
@@ -129,13 +135,44 @@ public class TrinoStsResource
         }
     }
 
-    private Map<String, String> deserializeRequest(MultiMap queryParameters, Optional<byte[]> maybeEntity)
+    private static Optional<Map<String, String>> standardEntity(RequestContent requestContent)
     {
-        return maybeEntity
-                .map(entity -> UriComponent.decodeQuery(new String(entity, StandardCharsets.UTF_8), true).entrySet().stream())
-                .orElseGet(() -> queryParameters.entrySet().stream())
+        if (requestContent.contentType() != STANDARD) {
+            return Optional.empty();
+        }
+        return requestContent.inputStream().map(TrinoStsResource::decodeForm);
+    }
+
+    // decodes the form parameters one at a time from the stream, the first value of a parameter wins
+    private static Map<String, String> decodeForm(InputStream inputStream)
+    {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        try (Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8).useDelimiter("&")) {
+            while (scanner.hasNext()) {
+                String parameter = scanner.next();
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    String value = URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+                    if (!value.isEmpty()) {
+                        parameters.putIfAbsent(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8), value);
+                    }
+                }
+            }
+            if (scanner.ioException() != null) {
+                throw new WebApplicationException(scanner.ioException(), Response.Status.BAD_REQUEST);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+        }
+        return ImmutableMap.copyOf(parameters);
+    }
+
+    private Map<String, String> deserializeRequest(MultiMap queryParameters, Optional<Map<String, String>> maybeEntity)
+    {
+        return maybeEntity.orElseGet(() -> queryParameters.entrySet().stream()
                 .filter(entry -> !entry.getValue().isEmpty())
                 .map(entry -> Map.entry(entry.getKey(), entry.getValue().getFirst()))
-                .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+                .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue)));
     }
 }
@@ -22,9 +22,11 @@ import io.trino.aws.proxy.spi.security.S3SecurityFacade;
 import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
 import static java.util.Objects.requireNonNull;
 
@@ -49,6 +51,15 @@ public class S3SecurityController
         return s3SecurityFacade.apply(lowercaseAction);
     }
 
+    public List<SecurityResponse> applyAll(List<ParsedS3Request> requests, Optional<Identity> identity)
+    {
+        List<Optional<String>> lowercaseActions = requests.stream()
+                .map(request -> request.rawQuery().flatMap(S3SecurityController::parseAction))
+                .collect(toImmutableList());
+
+        return currentProvider().applyAll(requests, lowercaseActions, identity);
+    }
+
     @VisibleForTesting
     protected S3SecurityFacadeProvider currentProvider()
     {
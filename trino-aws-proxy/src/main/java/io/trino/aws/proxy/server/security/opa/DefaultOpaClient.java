@@ -13,18 +13,24 @@
  */
 package io.trino.aws.proxy.server.security.opa;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
 import io.airlift.http.client.Request;
 import io.airlift.json.JsonCodec;
 import io.trino.aws.proxy.spi.security.SecurityResponse;
 import io.trino.aws.proxy.spi.security.opa.OpaClient;
 import io.trino.aws.proxy.spi.security.opa.OpaRequest;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
 import static io.airlift.http.client.Request.Builder.preparePost;
@@ -50,6 +56,34 @@ public class DefaultOpaClient
 
     @Override
     public SecurityResponse getSecurityResponse(OpaRequest request)
+    {
+        Map<String, Object> responseDocument = httpClient.execute(buildRequest(request), createJsonResponseHandler(CODEC));
+        return toSecurityResponse(responseDocument);
+    }
+
+    @Override
+    public List<SecurityResponse> getSecurityResponses(List<OpaRequest> requests)
+    {
+        if (requests.size() == 1) {
+            return ImmutableList.of(getSecurityResponse(requests.getFirst()));
+        }
+
+        // send all the requests before waiting on any so that the batch takes about as long as its slowest request
+        List<HttpResponseFuture<Map<String, Object>>> responseFutures = requests.stream()
+                .map(request -> httpClient.executeAsync(buildRequest(request), createJsonResponseHandler(CODEC)))
+                .collect(toImmutableList());
+        try {
+            return responseFutures.stream()
+                    .map(DefaultOpaClient::getResponseDocument)
+                    .map(this::toSecurityResponse)
+                    .collect(toImmutableList());
+        }
+        finally {
+            responseFutures.forEach(responseFuture -> responseFuture.cancel(true));
+        }
+    }
+
+    protected Request buildRequest(OpaRequest request)
     {
         Map<String, Object> inputDocument = toInputDocument(request.document());
 
@@ -58,9 +92,7 @@ public class DefaultOpaClient
                 .addHeader(CONTENT_TYPE, APPLICATION_JSON_TYPE.getType())
                 .setBodyGenerator(jsonBodyGenerator(CODEC, inputDocument));
         request.additionalHeaders().forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
-
-        Map<String, Object> responseDocument = httpClient.execute(builder.build(), createJsonResponseHandler(CODEC));
-        return toSecurityResponse(responseDocument);
+        return builder.build();
     }
 
     protected Map<String, Object> toInputDocument(Map<String, Object> document)
@@ -100,4 +132,19 @@ public class DefaultOpaClient
             case null, default -> Optional.empty();
         };
     }
+
+    private static Map<String, Object> getResponseDocument(HttpResponseFuture<Map<String, Object>> responseFuture)
+    {
+        try {
+            return responseFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for OPA", e);
+        }
+        catch (ExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
 }
@@ -14,13 +14,20 @@
 package io.trino.aws.proxy.server.security.opa;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
 public class OpaS3SecurityConfig
 {
     private URI opaServerBaseUri;
+    private long decisionCacheMaxSize;
+    private Duration decisionCacheTtl = new Duration(1, TimeUnit.MINUTES);
 
     @NotNull
     public URI getOpaServerBaseUri()
@@ -34,4 +41,33 @@ public class OpaS3SecurityConfig
         this.opaServerBaseUri = URI.create(opaServerBaseUri);
         return this;
     }
+
+    @Min(0)
+    public long getDecisionCacheMaxSize()
+    {
+        return decisionCacheMaxSize;
+    }
+
+    @Config("opa-s3-security.decision-cache.max-size")
+    @ConfigDescription("Maximum number of OPA decisions to cache, defaults to 0 (no caching). Decisions are cached per identity, bucket, key, method, query string and action, so the installed OpaS3SecurityFacade must not depend on request headers when this is enabled")
+    public OpaS3SecurityConfig setDecisionCacheMaxSize(long decisionCacheMaxSize)
+    {
+        this.decisionCacheMaxSize = decisionCacheMaxSize;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getDecisionCacheTtl()
+    {
+        return decisionCacheTtl;
+    }
+
+    @Config("opa-s3-security.decision-cache.ttl")
+    @ConfigDescription("How long cached OPA decisions are used, policy changes can take this long to apply")
+    public OpaS3SecurityConfig setDecisionCacheTtl(Duration decisionCacheTtl)
+    {
+        this.decisionCacheTtl = decisionCacheTtl;
+        return this;
+    }
 }
@@ -13,18 +13,40 @@
  */
 package io.trino.aws.proxy.server.security.opa;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import io.trino.aws.proxy.spi.credentials.Identity;
 import io.trino.aws.proxy.spi.rest.ParsedS3Request;
 import io.trino.aws.proxy.spi.security.S3SecurityFacade;
 import io.trino.aws.proxy.spi.security.S3SecurityFacadeProvider;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.security.opa.OpaClient;
+import io.trino.aws.proxy.spi.security.opa.OpaRequest;
 import io.trino.aws.proxy.spi.security.opa.OpaS3SecurityFacade;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.UriBuilder;
+import org.weakref.jmx.Managed;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
 public class OpaS3SecurityFacadeProvider
@@ -32,18 +54,179 @@ public class OpaS3SecurityFacadeProvider
 {
     private final URI opaServerBaseUri;
     private final OpaS3SecurityFacade opaS3SecurityFacade;
+    private final OpaClient opaClient;
+    private final ExecutorService applyExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Optional<Cache<DecisionKey, SecurityResponse>> decisionCache;
+
+    // everything an OPA decision may depend on, the installed OpaS3SecurityFacade must not use headers when the cache is enabled
+    private record DecisionKey(Optional<Identity> identity, String bucketName, String keyInBucket, String httpVerb, Optional<String> rawQuery, Optional<String> lowercaseAction)
+    {
+        private DecisionKey
+        {
+            requireNonNull(identity, "identity is null");
+            requireNonNull(bucketName, "bucketName is null");
+            requireNonNull(keyInBucket, "keyInBucket is null");
+            requireNonNull(httpVerb, "httpVerb is null");
+            requireNonNull(rawQuery, "rawQuery is null");
+            requireNonNull(lowercaseAction, "lowercaseAction is null");
+        }
+
+        private static DecisionKey of(ParsedS3Request request, Optional<String> lowercaseAction, Optional<Identity> identity)
+        {
+            return new DecisionKey(identity, request.bucketName(), request.keyInBucket(), request.httpVerb(), request.rawQuery(), lowercaseAction);
+        }
+    }
 
     @Inject
-    public OpaS3SecurityFacadeProvider(OpaS3SecurityFacade opaS3SecurityFacade, OpaS3SecurityConfig config)
+    public OpaS3SecurityFacadeProvider(OpaS3SecurityFacade opaS3SecurityFacade, OpaClient opaClient, OpaS3SecurityConfig config)
     {
         this.opaS3SecurityFacade = requireNonNull(opaS3SecurityFacade, "opaS3SecurityFacade is null");
+        this.opaClient = requireNonNull(opaClient, "opaClient is null");
         opaServerBaseUri = UriBuilder.fromUri(config.getOpaServerBaseUri()).build();
+        if (config.getDecisionCacheMaxSize() > 0) {
+            decisionCache = Optional.of(Caffeine.newBuilder()
+                    .maximumSize(config.getDecisionCacheMaxSize())
+                    .expireAfterWrite(config.getDecisionCacheTtl().toJavaTime())
+                    .recordStats()
+                    .build());
+        }
+        else {
+            decisionCache = Optional.empty();
+        }
     }
 
     @Override
     public S3SecurityFacade securityFacadeForRequest(ParsedS3Request request, Optional<Identity> identity)
             throws WebApplicationException
     {
-        return lowercaseAction -> opaS3SecurityFacade.apply(request, lowercaseAction, opaServerBaseUri, identity);
+        return decisionCache.<S3SecurityFacade>map(cache -> lowercaseAction -> {
+            DecisionKey key = DecisionKey.of(request, lowercaseAction, identity);
+            // concurrent identical queries wait for the first one instead of each calling OPA
+            return cache.get(key, _ -> opaS3SecurityFacade.apply(request, lowercaseAction, opaServerBaseUri, identity));
+        }).orElseGet(() -> lowercaseAction -> opaS3SecurityFacade.apply(request, lowercaseAction, opaServerBaseUri, identity));
+    }
+
+    @Override
+    public List<SecurityResponse> applyAll(List<ParsedS3Request> requests, List<Optional<String>> lowercaseActions, Optional<Identity> identity)
+            throws WebApplicationException
+    {
+        checkArgument(requests.size() == lowercaseActions.size(), "requests and lowercaseActions must have the same size");
+
+        if (decisionCache.isEmpty()) {
+            return evaluateAll(requests, lowercaseActions, identity);
+        }
+
+        List<DecisionKey> keys = new ArrayList<>(requests.size());
+        Map<DecisionKey, Integer> requestIndexes = new HashMap<>();
+        for (int i = 0; i < requests.size(); ++i) {
+            DecisionKey key = DecisionKey.of(requests.get(i), lowercaseActions.get(i), identity);
+            keys.add(key);
+            requestIndexes.putIfAbsent(key, i);
+        }
+        // only the decisions that are not cached are evaluated, together in one batch
+        Map<DecisionKey, SecurityResponse> decisions = decisionCache.get().getAll(keys,
+                missingKeys -> evaluateAll(missingKeys, requestIndexes, requests, lowercaseActions, identity));
+        return keys.stream()
+                .map(decisions::get)
+                .collect(toImmutableList());
+    }
+
+    @PreDestroy
+    public void shutDown()
+    {
+        applyExecutor.shutdownNow();
+    }
+
+    @Managed
+    public long getDecisionCacheSize()
+    {
+        return decisionCache.map(Cache::estimatedSize).orElse(0L);
+    }
+
+    @Managed
+    public long getDecisionCacheHitCount()
+    {
+        return decisionCache.map(cache -> cache.stats().hitCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getDecisionCacheMissCount()
+    {
+        return decisionCache.map(cache -> cache.stats().missCount()).orElse(0L);
+    }
+
+    @Managed
+    public long getDecisionCacheEvictionCount()
+    {
+        return decisionCache.map(cache -> cache.stats().evictionCount()).orElse(0L);
+    }
+
+    private Map<DecisionKey, SecurityResponse> evaluateAll(Set<? extends DecisionKey> keys, Map<DecisionKey, Integer> requestIndexes, List<ParsedS3Request> requests,
+            List<Optional<String>> lowercaseActions, Optional<Identity> identity)
+    {
+        List<DecisionKey> orderedKeys = List.copyOf(keys);
+        List<Integer> indexes = orderedKeys.stream().map(requestIndexes::get).collect(toImmutableList());
+        List<SecurityResponse> responses = evaluateAll(
+                indexes.stream().map(requests::get).collect(toImmutableList()),
+                indexes.stream().map(lowercaseActions::get).collect(toImmutableList()),
+                identity);
+
+        Map<DecisionKey, SecurityResponse> decisions = new LinkedHashMap<>();
+        for (int i = 0; i < orderedKeys.size(); ++i) {
+            decisions.put(orderedKeys.get(i), responses.get(i));
+        }
+        return decisions;
+    }
+
+    private List<SecurityResponse> evaluateAll(List<ParsedS3Request> requests, List<Optional<String>> lowercaseActions, Optional<Identity> identity)
+    {
+        if (requests.size() == 1) {
+            return ImmutableList.of(opaS3SecurityFacade.apply(requests.getFirst(), lowercaseActions.getFirst(), opaServerBaseUri, identity));
+        }
+
+        List<Optional<OpaRequest>> opaRequests = IntStream.range(0, requests.size())
+                .mapToObj(i -> opaS3SecurityFacade.opaRequest(requests.get(i), lowercaseActions.get(i), opaServerBaseUri, identity))
+                .collect(toImmutableList());
+
+        // checks without an OPA request are applied concurrently while the OPA requests are evaluated as one batch
+        Map<Integer, Future<SecurityResponse>> applyFutures = new HashMap<>();
+        for (int i = 0; i < requests.size(); ++i) {
+            if (opaRequests.get(i).isEmpty()) {
+                ParsedS3Request request = requests.get(i);
+                Optional<String> lowercaseAction = lowercaseActions.get(i);
+                applyFutures.put(i, applyExecutor.submit(() -> opaS3SecurityFacade.apply(request, lowercaseAction, opaServerBaseUri, identity)));
+            }
+        }
+        try {
+            List<OpaRequest> batch = opaRequests.stream().flatMap(Optional::stream).collect(toImmutableList());
+            List<SecurityResponse> batchResponses = batch.isEmpty() ? ImmutableList.of() : opaClient.getSecurityResponses(batch);
+            checkArgument(batchResponses.size() == batch.size(), "OpaClient returned %s responses for %s requests", batchResponses.size(), batch.size());
+
+            ImmutableList.Builder<SecurityResponse> responses = ImmutableList.builder();
+            int batchIndex = 0;
+            for (int i = 0; i < requests.size(); ++i) {
+                responses.add(opaRequests.get(i).isPresent() ? batchResponses.get(batchIndex++) : getResponse(applyFutures.get(i)));
+            }
+            return responses.build();
+        }
+        finally {
+            applyFutures.values().forEach(applyFuture -> applyFuture.cancel(true));
+        }
+    }
+
+    private static SecurityResponse getResponse(Future<SecurityResponse> responseFuture)
+    {
+        try {
+            return responseFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for OPA", e);
+        }
+        catch (ExecutionException e) {
+            // rethrow what apply threw, e.g. a WebApplicationException with its status
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
     }
 }
@@ -14,6 +14,7 @@
 package io.trino.aws.proxy.server.security.opa;
 
 import com.google.inject.Binder;
+import com.google.inject.Scopes;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
 import io.trino.aws.proxy.spi.security.opa.OpaClient;
 
@@ -21,6 +22,7 @@ import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
 import static io.airlift.configuration.ConfigBinder.configBinder;
 import static io.airlift.http.client.HttpClientBinder.httpClientBinder;
 import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.s3SecurityFacadeProviderModule;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class OpaS3SecurityModule
         extends AbstractConfigurationAwareModule
@@ -36,6 +38,8 @@ public class OpaS3SecurityModule
             configBinder(internalBinder).bindConfig(OpaS3SecurityConfig.class);
             httpClientBinder(internalBinder).bindHttpClient(OPA_S3_SECURITY_IDENTIFIER, ForOpa.class);
             newOptionalBinder(internalBinder, OpaClient.class).setDefault().to(DefaultOpaClient.class);
+            internalBinder.bind(OpaS3SecurityFacadeProvider.class).in(Scopes.SINGLETON);
+            newExporter(internalBinder).export(OpaS3SecurityFacadeProvider.class).withGeneratedName();
         }));
     }
 }
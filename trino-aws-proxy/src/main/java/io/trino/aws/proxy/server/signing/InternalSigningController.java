@@ -20,21 +20,28 @@ import io.airlift.log.Logger;
 import io.trino.aws.proxy.server.rest.RequestLoggerController;
 import io.trino.aws.proxy.spi.credentials.Credential;
 import io.trino.aws.proxy.spi.credentials.CredentialsProvider;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
 import io.trino.aws.proxy.spi.signing.SigningContext;
 import io.trino.aws.proxy.spi.signing.SigningController;
 import io.trino.aws.proxy.spi.signing.SigningMetadata;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import io.trino.aws.proxy.spi.util.MultiMap;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.util.Objects.requireNonNull;
 
@@ -46,6 +53,10 @@ public class InternalSigningController
     private final Duration maxClockDrift;
     private final RequestLoggerController requestLoggerController;
     private final CredentialsProvider credentialsProvider;
+    private final SigningKeyCache signingKeyCache;
+    private final boolean nativeSigner;
+    private final Optional<ExecutorService> chunkVerificationExecutor;
+    private final int chunkVerificationMaxPendingWrites;
 
     private static final Set<String> LOWERCASE_HEADERS = ImmutableSet.of("content-type");
 
@@ -56,6 +67,23 @@ public class InternalSigningController
         this.requestLoggerController = requireNonNull(requestLoggerController, "requestLoggerController is null");
 
         maxClockDrift = signingControllerConfig.getMaxClockDrift().toJavaTime();
+        signingKeyCache = new SigningKeyCache(signingControllerConfig.getSigningKeyCacheMaxSize());
+        nativeSigner = signingControllerConfig.isNativeSignerEnabled();
+        chunkVerificationExecutor = signingControllerConfig.isPipelinedChunkVerification() ? Optional.of(Executors.newVirtualThreadPerTaskExecutor()) : Optional.empty();
+        chunkVerificationMaxPendingWrites = signingControllerConfig.getChunkVerificationMaxPendingWrites();
+    }
+
+    @PreDestroy
+    public void shutDown()
+    {
+        chunkVerificationExecutor.ifPresent(ExecutorService::shutdownNow);
+    }
+
+    @Managed
+    @Nested
+    public SigningKeyCache getSigningKeyCache()
+    {
+        return signingKeyCache;
     }
 
     @Override
@@ -111,7 +139,11 @@ public class InternalSigningController
             throw new WebApplicationException(Response.Status.UNAUTHORIZED);
         }
 
-        return credentialsProvider.credentials(request.requestAuthorization().accessKey(), request.requestAuthorization().securityToken())
+        long lookupStart = System.nanoTime();
+        Optional<IdentityCredential> credentials = credentialsProvider.credentials(request.requestAuthorization().accessKey(), request.requestAuthorization().securityToken());
+        requestLoggerController.currentRequestSession(request.requestId()).logTiming("credentials.lookup", System.nanoTime() - lookupStart);
+
+        return credentials
                 .flatMap(identityCredential ->
                         isValidAuthorization(new SigningMetadata(signingServiceType, identityCredential.emulated(), Optional.empty()), request)
                                 .map(signingMetadata -> new SigningIdentity(signingMetadata, identityCredential.identity())))
@@ -145,7 +177,8 @@ public class InternalSigningController
                 httpMethod,
                 credential,
                 maxClockDrift,
-                requestContent)
+                requestContent,
+                signingKeyCache)
         ).orElseGet(() -> Signer.sign(
                 metadata.signingServiceType(),
                 requestURI,
@@ -156,7 +189,9 @@ public class InternalSigningController
                 httpMethod,
                 credential,
                 maxClockDrift,
-                requestContent));
+                requestContent,
+                signingKeyCache,
+                nativeSigner));
     }
 
     @SuppressWarnings("resource")
@@ -176,9 +211,9 @@ public class InternalSigningController
                 request.requestQueryParameters(),
                 request.httpVerb());
 
-        boolean generatedMatchesRequest = request.requestAuthorization().equals(signingContext.signingAuthorization());
+        boolean generatedMatchesRequest = authorizationMatches(request.requestAuthorization(), signingContext.signingAuthorization());
         if (generatedMatchesRequest) {
-            return Optional.of(metadata.withSigningContext(signingContext));
+            return Optional.of(metadata.withSigningContext(withChunkVerificationPipeline(signingContext, request.requestContent())));
         }
 
         requestLoggerController.currentRequestSession(request.requestId())
@@ -186,4 +221,37 @@ public class InternalSigningController
                         signingContext.signingAuthorization()));
         return Optional.empty();
     }
+
+    private SigningContext withChunkVerificationPipeline(SigningContext signingContext, RequestContent requestContent)
+    {
+        return switch (requestContent.contentType()) {
+            case AWS_CHUNKED, AWS_CHUNKED_IN_W3C_CHUNKED -> chunkVerificationExecutor
+                    .map(executor -> new SigningContext(
+                            signingContext.signingAuthorization(),
+                            new PipelinedChunkSigningSession(signingContext.chunkSigningSession(), executor, chunkVerificationMaxPendingWrites),
+                            signingContext.contentHash(),
+                            signingContext.signingUri()))
+                    .orElse(signingContext);
+            default -> signingContext;
+        };
+    }
+
+    private static boolean authorizationMatches(RequestAuthorization requestAuthorization, RequestAuthorization generatedAuthorization)
+    {
+        // compare signatures in constant time, everything else is not secret
+        boolean signatureMatches = SigV4Signer.signaturesMatch(generatedAuthorization.signature(), requestAuthorization.signature());
+        return signatureMatches && withoutSignature(requestAuthorization).equals(withoutSignature(generatedAuthorization));
+    }
+
+    private static RequestAuthorization withoutSignature(RequestAuthorization requestAuthorization)
+    {
+        return new RequestAuthorization(
+                requestAuthorization.accessKey(),
+                requestAuthorization.region(),
+                requestAuthorization.keyPath(),
+                requestAuthorization.lowercaseSignedHeaders(),
+                "",
+                requestAuthorization.expiry(),
+                requestAuthorization.securityToken());
+    }
 }
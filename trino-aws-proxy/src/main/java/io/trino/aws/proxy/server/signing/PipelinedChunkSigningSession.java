@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Forwards every call, in order, to a delegate session on a worker so that chunk hashing and
+ * signature verification overlap with reading and forwarding the next chunk. The caller's
+ * {@link #complete()} (issued after the final, empty chunk) waits for all pending verifications,
+ * so the last bytes of the payload are still only released once every signature has validated.
+ * A verification failure is rethrown from the first call made after it is detected.
+ */
+class PipelinedChunkSigningSession
+        implements ChunkSigningSession
+{
+    private static final int SINGLE_BYTE_BATCH_SIZE = 4096;
+
+    private final ChunkSigningSession delegate;
+    private final Executor executor;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final Semaphore pendingPermits;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Throwable failure;
+
+    private byte[] singleBytes;
+    private int singleBytesCount;
+
+    PipelinedChunkSigningSession(ChunkSigningSession delegate, Executor executor, int maxPendingWrites)
+    {
+        checkArgument(maxPendingWrites > 0, "maxPendingWrites must be greater than 0");
+
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        pendingPermits = new Semaphore(maxPendingWrites);
+    }
+
+    @Override
+    public void startChunk(String expectedSignature)
+    {
+        requireNonNull(expectedSignature, "expectedSignature is null");
+
+        flushSingleBytes();
+        enqueue(() -> delegate.startChunk(expectedSignature));
+    }
+
+    @Override
+    public void complete()
+    {
+        flushSingleBytes();
+        enqueue(delegate::complete);
+
+        CompletableFuture<Void> drained = new CompletableFuture<>();
+        enqueue(() -> {
+            Throwable failure = this.failure;
+            if (failure != null) {
+                drained.completeExceptionally(failure);
+            }
+            else {
+                drained.complete(null);
+            }
+        });
+        try {
+            drained.join();
+        }
+        catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    @Override
+    public void write(byte b)
+    {
+        if (singleBytes == null) {
+            singleBytes = new byte[SINGLE_BYTE_BATCH_SIZE];
+        }
+        singleBytes[singleBytesCount++] = b;
+        if (singleBytesCount == singleBytes.length) {
+            flushSingleBytes();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+    {
+        flushSingleBytes();
+
+        // the caller re-uses its buffer as soon as this returns
+        byte[] copy = Arrays.copyOfRange(b, off, off + len);
+        enqueue(() -> delegate.write(copy, 0, copy.length));
+    }
+
+    private void flushSingleBytes()
+    {
+        if (singleBytesCount > 0) {
+            byte[] copy = Arrays.copyOf(singleBytes, singleBytesCount);
+            singleBytesCount = 0;
+            enqueue(() -> delegate.write(copy, 0, copy.length));
+        }
+    }
+
+    private void enqueue(Runnable operation)
+    {
+        throwIfFailed();
+
+        pendingPermits.acquireUninterruptibly();
+        pending.add(operation);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            }
+            catch (RejectedExecutionException e) {
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain()
+    {
+        while (true) {
+            Runnable operation;
+            while ((operation = pending.poll()) != null) {
+                pendingPermits.release();
+                try {
+                    operation.run();
+                }
+                catch (Throwable e) {
+                    // errors too, the drain must go on to the end of the queue or complete() waits forever
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            draining.set(false);
+
+            // an operation may have been queued after the last poll but before draining was cleared
+            if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void throwIfFailed()
+    {
+        Throwable failure = this.failure;
+        if (failure != null) {
+            throw rethrow(failure);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable failure)
+    {
+        throwIfUnchecked(failure);
+        throw new RuntimeException(failure);
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import io.trino.aws.proxy.spi.util.MultiMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Header based SigV4 signer. Produces the same signatures as the AWS SDK signers used by {@link Signer}
+ * but streams the canonical request and the string to sign straight into the digest/MAC through a
+ * small buffer instead of building an {@code SdkHttpFullRequest}, intermediate strings and an
+ * {@code Authorization} header that then needs to be parsed again.
+ * <p>
+ * Mirrors the SDK behavior: the {@code host}, {@code x-amz-date} and (for session credentials)
+ * {@code x-amz-security-token} headers are always signed with computed values, header values are
+ * trimmed with inner whitespace runs collapsed, and query parameters are RFC 3986 encoded and sorted.
+ * Paths are not normalized, so callers must not use this signer for paths containing dot segments.
+ * The digest, MAC and buffer are kept per thread, since signing is done once or twice per request.
+ */
+final class SigV4Signer
+{
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String TERMINATOR = "aws4_request";
+    private static final HexFormat HEX = HexFormat.of();
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    // see LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE in the SDK signers
+    private static final Set<String> IGNORED_HEADERS = ImmutableSet.of("connection", "x-amzn-trace-id", "user-agent", "expect");
+    private static final Set<String> LEGACY_IGNORED_HEADERS = ImmutableSet.of("connection", "x-amzn-trace-id", "expect");
+
+    private static final ThreadLocal<DigestWriter> DIGEST_WRITER = ThreadLocal.withInitial(DigestWriter::new);
+
+    private SigV4Signer() {}
+
+    static boolean canSign(URI requestURI)
+    {
+        String path = requestURI.getRawPath();
+        if ((path == null) || path.isEmpty()) {
+            return true;
+        }
+        return !(path.contains("/./") || path.contains("/../") || path.endsWith("/.") || path.endsWith("/..") || path.startsWith("./") || path.startsWith("../") || path.equals(".") || path.equals(".."));
+    }
+
+    static RequestAuthorization sign(
+            String serviceName,
+            URI requestURI,
+            SigningHeaders signingHeaders,
+            MultiMap queryParameters,
+            String region,
+            Instant requestDate,
+            String httpMethod,
+            Credential credential,
+            boolean legacy,
+            String contentHash,
+            byte[] signingKey)
+    {
+        String amzDate = AwsTimestamp.toRequestFormat(requestDate);
+        String scope = SigningKeyCache.dateStamp(requestDate) + "/" + region + "/" + serviceName + "/" + TERMINATOR;
+
+        TreeMap<String, List<String>> canonicalHeaders = canonicalHeaders(requestURI, signingHeaders, amzDate, credential, legacy ? LEGACY_IGNORED_HEADERS : IGNORED_HEADERS);
+
+        DigestWriter canonicalRequest = DIGEST_WRITER.get().startDigest();
+        canonicalRequest.append(httpMethod.toUpperCase(Locale.ROOT)).append('\n');
+        appendCanonicalPath(canonicalRequest, requestURI.getRawPath());
+        canonicalRequest.append('\n');
+        appendCanonicalQuery(canonicalRequest, queryParameters);
+        canonicalRequest.append('\n');
+        canonicalHeaders.forEach((name, values) -> {
+            canonicalRequest.append(name).append(':');
+            boolean first = true;
+            for (String value : values) {
+                if (!first) {
+                    canonicalRequest.append(',');
+                }
+                first = false;
+                appendTrimmed(canonicalRequest, value);
+            }
+            canonicalRequest.append('\n');
+        });
+        canonicalRequest.append('\n');
+        String signedHeaders = String.join(";", canonicalHeaders.keySet());
+        canonicalRequest.append(signedHeaders).append('\n');
+        canonicalRequest.append(contentHash);
+        byte[] canonicalRequestHash = canonicalRequest.digest();
+
+        DigestWriter stringToSign = DIGEST_WRITER.get().startMac(signingKey);
+        stringToSign.append(ALGORITHM).append('\n')
+                .append(amzDate).append('\n')
+                .append(scope).append('\n')
+                .appendHex(canonicalRequestHash);
+        String signature = HEX.formatHex(stringToSign.digest());
+
+        return new RequestAuthorization(credential.accessKey(), region, scope, canonicalHeaders.keySet(), signature, Optional.empty(), credential.session());
+    }
+
+    /**
+     * Compare two signatures without leaking timing information about where they differ
+     */
+    static boolean signaturesMatch(String expected, String actual)
+    {
+        return MessageDigest.isEqual(expected.getBytes(US_ASCII), actual.getBytes(US_ASCII));
+    }
+
+    private static TreeMap<String, List<String>> canonicalHeaders(URI requestURI, SigningHeaders signingHeaders, String amzDate, Credential credential, Set<String> ignoredHeaders)
+    {
+        TreeMap<String, List<String>> headers = new TreeMap<>();
+        signingHeaders.lowercaseHeadersToSign().forEach(entry -> {
+            String name = entry.getKey().toLowerCase(Locale.ROOT);
+            if (!ignoredHeaders.contains(name)) {
+                headers.computeIfAbsent(name, _ -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        });
+
+        // these are always replaced by the SDK signer
+        credential.session().ifPresent(session -> headers.put("x-amz-security-token", List.of(session)));
+        headers.put("host", List.of(hostHeader(requestURI)));
+        headers.put("x-amz-date", List.of(amzDate));
+        return headers;
+    }
+
+    private static String hostHeader(URI requestURI)
+    {
+        String host = requireNonNull(requestURI.getHost(), "request URI has no host");
+        int port = requestURI.getPort();
+        int standardPort = "https".equalsIgnoreCase(requestURI.getScheme()) ? 443 : 80;
+        if ((port == -1) || (port == standardPort)) {
+            return host;
+        }
+        return host + ":" + port;
+    }
+
+    private static void appendCanonicalPath(DigestWriter writer, String rawPath)
+    {
+        if ((rawPath == null) || rawPath.isEmpty()) {
+            writer.append('/');
+            return;
+        }
+        if (rawPath.charAt(0) != '/') {
+            writer.append('/');
+        }
+        writer.append(rawPath);
+    }
+
+    private static void appendCanonicalQuery(DigestWriter writer, MultiMap queryParameters)
+    {
+        if (queryParameters.keySet().isEmpty()) {
+            return;
+        }
+
+        TreeMap<String, List<String>> encoded = new TreeMap<>();
+        queryParameters.forEach((name, values) -> {
+            List<String> encodedValues = encoded.computeIfAbsent(urlEncode(name), _ -> new ArrayList<>(values.size()));
+            values.forEach(value -> encodedValues.add(urlEncode(value)));
+        });
+
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : encoded.entrySet()) {
+            List<String> values = entry.getValue();
+            values.sort(null);
+            for (String value : values) {
+                if (!first) {
+                    writer.append('&');
+                }
+                first = false;
+                writer.append(entry.getKey()).append('=').append(value);
+            }
+        }
+    }
+
+    // same rules as SdkHttpUtils.urlEncode(): RFC 3986 unreserved characters are kept, everything else is percent encoded
+    private static String urlEncode(String value)
+    {
+        int length = value.length();
+        int index = 0;
+        while ((index < length) && isUnreserved(value.charAt(index))) {
+            index++;
+        }
+        if (index == length) {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(length + 16);
+        builder.append(value, 0, index);
+        byte[] bytes = value.substring(index).getBytes(UTF_8);
+        for (byte b : bytes) {
+            char c = (char) (b & 0xff);
+            if (isUnreserved(c)) {
+                builder.append(c);
+            }
+            else {
+                builder.append('%').append(HEX_UPPER[(b >> 4) & 0x0f]).append(HEX_UPPER[b & 0x0f]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isUnreserved(char c)
+    {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '_') || (c == '.') || (c == '~');
+    }
+
+    // same rules as the SDK: leading and trailing whitespace is dropped and inner whitespace runs are collapsed to their first character
+    private static void appendTrimmed(DigestWriter writer, String value)
+    {
+        int start = 0;
+        int end = value.length();
+        while ((start < end) && isWhiteSpace(value.charAt(start))) {
+            start++;
+        }
+        while ((end > start) && isWhiteSpace(value.charAt(end - 1))) {
+            end--;
+        }
+
+        boolean previousIsWhiteSpace = false;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (isWhiteSpace(c)) {
+                if (!previousIsWhiteSpace) {
+                    writer.append(c);
+                }
+                previousIsWhiteSpace = true;
+            }
+            else {
+                writer.append(c);
+                previousIsWhiteSpace = false;
+            }
+        }
+    }
+
+    private static boolean isWhiteSpace(char c)
+    {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000b') || (c == '\r') || (c == '\f');
+    }
+
+    private static MessageDigest sha256()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Mac hmacSha256()
+    {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 into a small buffer that is flushed into a digest or MAC,
+     * so that the canonical request and string to sign are never materialized.
+     * Each thread reuses one writer, which is started again for every digest or MAC.
+     */
+    private static class DigestWriter
+    {
+        private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+
+        private final MessageDigest messageDigest = sha256();
+        private final Mac mac = hmacSha256();
+        private final byte[] buffer = new byte[512];
+        private int position;
+        private boolean useMac;
+
+        DigestWriter startDigest()
+        {
+            // a previous use may have failed before digest() reset it
+            messageDigest.reset();
+            useMac = false;
+            position = 0;
+            return this;
+        }
+
+        DigestWriter startMac(byte[] key)
+        {
+            try {
+                // init also resets the MAC
+                mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            }
+            catch (InvalidKeyException e) {
+                throw new IllegalStateException(e);
+            }
+            useMac = true;
+            position = 0;
+            return this;
+        }
+
+        DigestWriter append(String value)
+        {
+            int index = 0;
+            while (index < value.length()) {
+                int codePoint = value.codePointAt(index);
+                index += Character.charCount(codePoint);
+                appendCodePoint(codePoint);
+            }
+            return this;
+        }
+
+        DigestWriter append(char c)
+        {
+            appendCodePoint(c);
+            return this;
+        }
+
+        DigestWriter appendHex(byte[] bytes)
+        {
+            for (byte b : bytes) {
+                put((byte) HEX_LOWER[(b >> 4) & 0x0f]);
+                put((byte) HEX_LOWER[b & 0x0f]);
+            }
+            return this;
+        }
+
+        byte[] digest()
+        {
+            flush();
+            return useMac ? mac.doFinal() : messageDigest.digest();
+        }
+
+        private void appendCodePoint(int codePoint)
+        {
+            if (codePoint < 0x80) {
+                put((byte) codePoint);
+            }
+            else if (codePoint < 0x800) {
+                put((byte) (0xc0 | (codePoint >> 6)));
+                put((byte) (0x80 | (codePoint & 0x3f)));
+            }
+            else if (Character.isSurrogate((char) codePoint) && (codePoint <= 0xffff)) {
+                // unpaired surrogate - String.getBytes(UTF_8), as used by the SDK, replaces it with '?'
+                put((byte) '?');
+            }
+            else if (codePoint < 0x10000) {
+                put((byte) (0xe0 | (codePoint >> 12)));
+                put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                put((byte) (0x80 | (codePoint & 0x3f)));
+            }
+            else {
+                put((byte) (0xf0 | (codePoint >> 18)));
+                put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                put((byte) (0x80 | (codePoint & 0x3f)));
+            }
+        }
+
+        private void put(byte b)
+        {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = b;
+        }
+
+        private void flush()
+        {
+            if (useMac) {
+                mac.update(buffer, 0, position);
+            }
+            else {
+                messageDigest.update(buffer, 0, position);
+            }
+            position = 0;
+        }
+    }
+}
@@ -14,6 +14,10 @@
 package io.trino.aws.proxy.server.signing;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import io.airlift.log.Logger;
 import io.trino.aws.proxy.server.signing.Signers.SigningApi;
 import io.trino.aws.proxy.spi.credentials.Credential;
@@ -30,7 +34,6 @@ import jakarta.ws.rs.core.UriBuilder;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
-import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
 import software.amazon.awssdk.auth.signer.params.Aws4PresignerParams;
 import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
 import software.amazon.awssdk.auth.signer.params.AwsS3V4SignerParams;
@@ -38,6 +41,8 @@ import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.http.SdkHttpMethod;
 import software.amazon.awssdk.regions.Region;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.time.Clock;
 import java.time.Duration;
@@ -69,11 +74,6 @@ final class Signer
 
     private Signer() {}
 
-    static byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
-    {
-        return awsS3V4Signer.signingKey(credentials, signerRequestParams);
-    }
-
     static SigningContext presign(
             SigningServiceType serviceType,
             URI requestURI,
@@ -85,7 +85,8 @@ final class Signer
             String httpMethod,
             Credential credential,
             Duration maxClockDrift,
-            RequestContent requestContent)
+            RequestContent requestContent,
+            SigningKeyCache signingKeyCache)
     {
         Duration requestToExpiry = Duration.between(requestDate, requestExpiry);
         if (requestToExpiry.isNegative() || requestToExpiry.compareTo(MAX_PRESIGNED_REQUEST_AGE) > 0) {
@@ -115,7 +116,8 @@ final class Signer
                 region,
                 requestDate,
                 httpMethod,
-                credential);
+                credential,
+                signingKeyCache);
     }
 
     static SigningContext sign(
@@ -128,9 +130,32 @@ final class Signer
             String httpMethod,
             Credential credential,
             Duration maxClockDrift,
-            RequestContent requestContent)
+            RequestContent requestContent,
+            SigningKeyCache signingKeyCache,
+            boolean nativeSigner)
     {
         enforceMaxDrift(requestDate, maxClockDrift, maxClockDrift);
+
+        if (nativeSigner && SigV4Signer.canSign(requestURI)) {
+            Optional<String> contentHash = nativeContentHash(serviceType, signingHeaders, requestContent);
+            if (contentHash.isPresent()) {
+                byte[] signingKey = signingKeyCache.signingKey(credential, requestDate, region, serviceType.serviceName());
+                RequestAuthorization requestAuthorization = SigV4Signer.sign(
+                        serviceType.serviceName(),
+                        requestURI,
+                        signingHeaders,
+                        queryParameters,
+                        region,
+                        requestDate,
+                        httpMethod,
+                        credential,
+                        serviceType.hasTrait(S3V4_SIGNER) && isLegacy(signingHeaders),
+                        contentHash.get(),
+                        signingKey);
+                return buildSigningContext(new InternalRequestAuthorization(requestAuthorization, requestURI), signingKey, requestDate, signingHeaders.getFirst("x-amz-content-sha256"));
+            }
+        }
+
         boolean enableChunkedEncoding = requestContent.contentType() == AWS_CHUNKED || requestContent.contentType() == AWS_CHUNKED_IN_W3C_CHUNKED;
         AwsS3V4SignerParams.Builder signerParamsBuilder = AwsS3V4SignerParams.builder()
                 .enablePayloadSigning(true)
@@ -169,7 +194,27 @@ final class Signer
                 region,
                 requestDate,
                 httpMethod,
-                credential);
+                credential,
+                signingKeyCache);
+    }
+
+    private static Optional<String> nativeContentHash(SigningServiceType serviceType, SigningHeaders signingHeaders, RequestContent requestContent)
+    {
+        if (serviceType.hasTrait(STREAM_CONTENT)) {
+            // without the header the SDK S3 signer adds its own x-amz-content-sha256 - leave that case to the SDK
+            return signingHeaders.getFirst("x-amz-content-sha256");
+        }
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        requestContent.inputStream().ifPresent(inputStream -> {
+            try {
+                ByteStreams.copy(inputStream, Funnels.asOutputStream(hasher));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return Optional.of(hasher.hash().toString());
     }
 
     private record InternalRequestAuthorization(RequestAuthorization requestAuthorization, URI signingUri)
@@ -192,7 +237,8 @@ final class Signer
             String region,
             Instant requestDate,
             String httpMethod,
-            Credential credential)
+            Credential credential,
+            SigningKeyCache signingKeyCache)
     {
         requestBuilder.uri(UriBuilder.fromUri(requestURI).replaceQuery("").build()).method(SdkHttpMethod.fromValue(httpMethod));
 
@@ -214,15 +260,15 @@ final class Signer
 
         SigningApi signer;
         if (serviceType.hasTrait(S3V4_SIGNER)) {
-            signer = isLegacy(signingHeaders) ? legacyS3AwsV4Signer : awsS3V4Signer;
+            signer = isLegacy(signingHeaders) ? legacyS3AwsV4Signer(signingKeyCache) : awsS3V4Signer(signingKeyCache);
         }
         else {
-            signer = awsV4Signer;
+            signer = awsV4Signer(signingKeyCache);
         }
         InternalRequestAuthorization internalRequestAuthorization = authorizationBuilder.apply(signer, requestBuilder.build());
         return buildSigningContext(
                 internalRequestAuthorization,
-                signingKey(credentials, new Aws4SignerRequestParams(paramsBuilder.build())),
+                signingKeyCache.signingKey(credential, requestDate, region, serviceType.serviceName()),
                 requestDate,
                 signingHeaders.getFirst("x-amz-content-sha256"));
     }
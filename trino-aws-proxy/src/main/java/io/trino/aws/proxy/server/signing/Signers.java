@@ -14,42 +14,66 @@
 package io.trino.aws.proxy.server.signing;
 
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.signer.internal.AbstractAwsS3V4Signer;
-import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
-import software.amazon.awssdk.auth.signer.internal.BaseAws4Signer;
 import software.amazon.awssdk.auth.signer.internal.CopiedAbstractAwsS3V4Signer;
+import software.amazon.awssdk.auth.signer.internal.CopiedBaseAws4Signer;
 import software.amazon.awssdk.auth.signer.params.Aws4PresignerParams;
 import software.amazon.awssdk.auth.signer.params.AwsS3V4SignerParams;
 import software.amazon.awssdk.core.checksums.SdkChecksum;
 import software.amazon.awssdk.http.SdkHttpFullRequest;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
+import static java.util.Objects.requireNonNull;
+import static software.amazon.awssdk.auth.signer.internal.CopiedAbstractAws4Signer.LEGACY_LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE;
+import static software.amazon.awssdk.auth.signer.internal.CopiedAbstractAws4Signer.LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE;
+
+/**
+ * SDK signers built on the copied signer base classes, so that their signing keys come from the
+ * {@link SigningKeyCache} instead of the SDK's global 300 entry cache. The signers hold no state
+ * besides the cache, so a new one is created for each request.
+ */
 class Signers
 {
     static final String OVERRIDE_CONTENT_HASH = "__TRINO__OVERRIDE_CONTENT_HASH__";
 
-    static final SigningApi awsV4Signer = new InternalAwsV4Signer();
-
-    static final SigningApi awsS3V4Signer = new InternalAwsS3V4Signer();
-
-    static final SigningApi legacyS3AwsV4Signer = new InternalLegacyAwsS3V4Signer();
-
     interface SigningApi
     {
         SdkHttpFullRequest sign(SdkHttpFullRequest request, AwsS3V4SignerParams signingParams);
 
         SdkHttpFullRequest presign(SdkHttpFullRequest request, Aws4PresignerParams signingParams);
-
-        byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams);
     }
 
     private Signers() {}
 
+    static SigningApi awsV4Signer(SigningKeyCache signingKeyCache)
+    {
+        return new InternalAwsV4Signer(signingKeyCache);
+    }
+
+    static SigningApi awsS3V4Signer(SigningKeyCache signingKeyCache)
+    {
+        return new InternalAwsS3V4Signer(LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE, signingKeyCache);
+    }
+
+    static SigningApi legacyS3AwsV4Signer(SigningKeyCache signingKeyCache)
+    {
+        return new InternalAwsS3V4Signer(LEGACY_LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE, signingKeyCache);
+    }
+
     private static class InternalAwsV4Signer
-            extends BaseAws4Signer
+            extends CopiedBaseAws4Signer
             implements SigningApi
     {
+        private final SigningKeyCache signingKeyCache;
+
+        private InternalAwsV4Signer(SigningKeyCache signingKeyCache)
+        {
+            super(LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE);
+            this.signingKeyCache = requireNonNull(signingKeyCache, "signingKeyCache is null");
+        }
+
         @Override
         public SdkHttpFullRequest sign(SdkHttpFullRequest request, AwsS3V4SignerParams signingParams)
         {
@@ -57,37 +81,28 @@ class Signers
         }
 
         @Override
-        public byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
+        protected byte[] deriveSigningKey(AwsCredentials credentials, Instant signingInstant, String region, String service)
         {
-            return deriveSigningKey(credentials, signerRequestParams);
+            return signingKeyCache.signingKey(credentials.secretAccessKey(), signingInstant, region, service);
         }
     }
 
     private static class InternalAwsS3V4Signer
-            extends AbstractAwsS3V4Signer
+            extends CopiedAbstractAwsS3V4Signer
             implements SigningApi
     {
-        @Override
-        public byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
-        {
-            return deriveSigningKey(credentials, signerRequestParams);
-        }
+        private final SigningKeyCache signingKeyCache;
 
-        @Override
-        protected String calculateContentHash(SdkHttpFullRequest.Builder mutableRequest, AwsS3V4SignerParams signerParams, SdkChecksum contentFlexibleChecksum)
+        private InternalAwsS3V4Signer(List<String> headersToIgnoreInLowerCase, SigningKeyCache signingKeyCache)
         {
-            return extractOverrideContentHash(mutableRequest).orElseGet(() -> super.calculateContentHash(mutableRequest, signerParams, contentFlexibleChecksum));
+            super(headersToIgnoreInLowerCase);
+            this.signingKeyCache = requireNonNull(signingKeyCache, "signingKeyCache is null");
         }
-    }
 
-    private static class InternalLegacyAwsS3V4Signer
-            extends CopiedAbstractAwsS3V4Signer
-            implements SigningApi
-    {
         @Override
-        public byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
+        protected byte[] deriveSigningKey(AwsCredentials credentials, Instant signingInstant, String region, String service)
         {
-            return deriveSigningKey(credentials, signerRequestParams);
+            return signingKeyCache.signingKey(credentials.secretAccessKey(), signingInstant, region, service);
         }
 
         @Override
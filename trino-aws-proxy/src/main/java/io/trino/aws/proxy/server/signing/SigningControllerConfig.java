@@ -14,14 +14,20 @@
 package io.trino.aws.proxy.server.signing;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.Duration;
 import io.airlift.units.MinDuration;
+import jakarta.validation.constraints.Min;
 
 import java.util.concurrent.TimeUnit;
 
 public class SigningControllerConfig
 {
     private Duration maxClockDrift = new Duration(15, TimeUnit.MINUTES);
+    private long signingKeyCacheMaxSize = 10_000;
+    private boolean nativeSignerEnabled;
+    private boolean pipelinedChunkVerification;
+    private int chunkVerificationMaxPendingWrites = 64;
 
     @MinDuration("0s")
     public Duration getMaxClockDrift()
@@ -35,4 +41,58 @@ public class SigningControllerConfig
         this.maxClockDrift = maxClockDrift;
         return this;
     }
+
+    @Min(0)
+    public long getSigningKeyCacheMaxSize()
+    {
+        return signingKeyCacheMaxSize;
+    }
+
+    @Config("signing-controller.signing-key-cache.max-size")
+    @ConfigDescription("Maximum number of derived SigV4 signing keys to cache")
+    public SigningControllerConfig setSigningKeyCacheMaxSize(long signingKeyCacheMaxSize)
+    {
+        this.signingKeyCacheMaxSize = signingKeyCacheMaxSize;
+        return this;
+    }
+
+    public boolean isNativeSignerEnabled()
+    {
+        return nativeSignerEnabled;
+    }
+
+    @Config("signing-controller.native-signer.enabled")
+    @ConfigDescription("Compute header based SigV4 signatures with the built-in signer instead of the AWS SDK signers")
+    public SigningControllerConfig setNativeSignerEnabled(boolean nativeSignerEnabled)
+    {
+        this.nativeSignerEnabled = nativeSignerEnabled;
+        return this;
+    }
+
+    public boolean isPipelinedChunkVerification()
+    {
+        return pipelinedChunkVerification;
+    }
+
+    @Config("signing-controller.chunk-verification.pipelined")
+    @ConfigDescription("Verify aws-chunked payload signatures on a worker while the following chunks are read and forwarded")
+    public SigningControllerConfig setPipelinedChunkVerification(boolean pipelinedChunkVerification)
+    {
+        this.pipelinedChunkVerification = pipelinedChunkVerification;
+        return this;
+    }
+
+    @Min(1)
+    public int getChunkVerificationMaxPendingWrites()
+    {
+        return chunkVerificationMaxPendingWrites;
+    }
+
+    @Config("signing-controller.chunk-verification.max-pending-writes")
+    @ConfigDescription("Maximum number of payload reads queued for pipelined chunk verification before reading blocks")
+    public SigningControllerConfig setChunkVerificationMaxPendingWrites(int chunkVerificationMaxPendingWrites)
+    {
+        this.chunkVerificationMaxPendingWrites = chunkVerificationMaxPendingWrites;
+        return this;
+    }
 }
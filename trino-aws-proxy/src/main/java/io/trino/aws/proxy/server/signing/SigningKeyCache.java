@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.util.AwsTimestamp;
+import org.weakref.jmx.Managed;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.hash.Hashing.hmacSha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of derived SigV4 signing keys. Deriving a key takes four chained HMACs and the
+ * result only depends on the secret key, the date stamp, the region and the service,
+ * so it can be shared by every request signed with the same credential on the same day.
+ * Both the built-in signer and the SDK signers get their keys from here. A maximum size of
+ * zero disables caching, and every key is derived again.
+ */
+public class SigningKeyCache
+{
+    private static final DateTimeFormatter DATE_STAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.US).withZone(AwsTimestamp.ZONE);
+    private static final String TERMINATOR = "aws4_request";
+
+    private final boolean enabled;
+    private final Cache<SigningKeyId, byte[]> cache;
+
+    public SigningKeyCache(long maxSize)
+    {
+        checkArgument(maxSize >= 0, "maxSize is negative");
+        enabled = maxSize > 0;
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    byte[] signingKey(Credential credential, Instant requestDate, String region, String serviceName)
+    {
+        return signingKey(credential.secretKey(), requestDate, region, serviceName);
+    }
+
+    byte[] signingKey(String secretKey, Instant requestDate, String region, String serviceName)
+    {
+        SigningKeyId signingKeyId = new SigningKeyId(secretKey, dateStamp(requestDate), region, serviceName);
+        // a cache with no room still hands out a key until it gets around to evicting it
+        return enabled ? cache.get(signingKeyId, SigningKeyCache::deriveSigningKey) : deriveSigningKey(signingKeyId);
+    }
+
+    static String dateStamp(Instant requestDate)
+    {
+        return DATE_STAMP_FORMAT.format(requestDate);
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.estimatedSize();
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        return cache.stats().hitRate();
+    }
+
+    @Managed
+    public long getEvictionCount()
+    {
+        return cache.stats().evictionCount();
+    }
+
+    @Managed
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    private static byte[] deriveSigningKey(SigningKeyId signingKeyId)
+    {
+        byte[] dateKey = hmac(("AWS4" + signingKeyId.secretKey).getBytes(UTF_8), signingKeyId.dateStamp);
+        byte[] regionKey = hmac(dateKey, signingKeyId.region);
+        byte[] serviceKey = hmac(regionKey, signingKeyId.serviceName);
+        return hmac(serviceKey, TERMINATOR);
+    }
+
+    private static byte[] hmac(byte[] key, String data)
+    {
+        return hmacSha256(key).hashString(data, UTF_8).asBytes();
+    }
+
+    private record SigningKeyId(String secretKey, String dateStamp, String region, String serviceName)
+    {
+        private SigningKeyId
+        {
+            requireNonNull(secretKey, "secretKey is null");
+            requireNonNull(dateStamp, "dateStamp is null");
+            requireNonNull(region, "region is null");
+            requireNonNull(serviceName, "serviceName is null");
+        }
+
+        @Override
+        public String toString()
+        {
+            // never expose the secret key
+            return "SigningKeyId{dateStamp=%s, region=%s, serviceName=%s}".formatted(dateStamp, region, serviceName);
+        }
+    }
+}
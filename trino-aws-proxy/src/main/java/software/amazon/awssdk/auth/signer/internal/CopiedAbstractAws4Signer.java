@@ -65,13 +65,19 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
     public static final String EMPTY_STRING_SHA256_HEX = BinaryUtils.toHex(hash(""));
 
     private static final Logger LOG = Logger.loggerFor(Aws4Signer.class);
-    private static final int SIGNER_CACHE_MAX_SIZE = 300;
-    private static final FifoCache<SignerKey> SIGNER_CACHE =
-        new FifoCache<>(SIGNER_CACHE_MAX_SIZE);
-    // ONLY CODE CHANGE - remove user-agent from ignored headers
-    private static final List<String> LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE =
+    public static final List<String> LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE =
+        Arrays.asList("connection", "x-amzn-trace-id", "user-agent", "expect");
+    // CODE CHANGE - legacy signers do not ignore user-agent
+    public static final List<String> LEGACY_LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE =
         Arrays.asList("connection", "x-amzn-trace-id", "expect");
 
+    // CODE CHANGE - the headers to ignore are chosen by the subclass
+    private final List<String> headersToIgnoreInLowerCase;
+
+    protected CopiedAbstractAws4Signer(List<String> headersToIgnoreInLowerCase) {
+        this.headersToIgnoreInLowerCase = headersToIgnoreInLowerCase;
+    }
+
     protected SdkHttpFullRequest.Builder doSign(SdkHttpFullRequest request,
                                                 Aws4SignerRequestParams requestParams,
                                                 T signingParams) {
@@ -226,23 +232,8 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
                 signerRequestParams.getServiceSigningName());
     }
 
-    protected final byte[] deriveSigningKey(AwsCredentials credentials, Instant signingInstant, String region, String service) {
-        String cacheKey = createSigningCacheKeyName(credentials, region, service);
-        SignerKey signerKey = SIGNER_CACHE.get(cacheKey);
-
-        if (signerKey != null && signerKey.isValidForDate(signingInstant)) {
-            return signerKey.getSigningKey();
-        }
-
-        LOG.trace(() -> "Generating a new signing key as the signing key not available in the cache for the date: " +
-                signingInstant.toEpochMilli());
-        byte[] signingKey = newSigningKey(credentials,
-                Aws4SignerUtils.formatDateStamp(signingInstant),
-                region,
-                service);
-        SIGNER_CACHE.add(cacheKey, new SignerKey(signingInstant, signingKey));
-        return signingKey;
-    }
+    // CODE CHANGE - signing keys are derived and cached by the subclass instead of the global FifoCache
+    protected abstract byte[] deriveSigningKey(AwsCredentials credentials, Instant signingInstant, String region, String service);
 
     /**
      * Step 1 of the AWS Signature version 4 calculation. Refer to
@@ -255,7 +246,8 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
                                                     String contentSha256,
                                                     boolean doubleUrlEncode,
                                                     boolean normalizePath) {
-        return new CanonicalRequest(request, requestBuilder, contentSha256, doubleUrlEncode, normalizePath);
+        return new CanonicalRequest(request, requestBuilder, contentSha256, doubleUrlEncode, normalizePath,
+                                    headersToIgnoreInLowerCase);
     }
 
     /**
@@ -282,12 +274,6 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
         return stringToSign;
     }
 
-    private String createSigningCacheKeyName(AwsCredentials credentials,
-                                             String regionName,
-                                             String serviceName) {
-        return credentials.secretAccessKey() + "-" + regionName + "-" + serviceName;
-    }
-
     /**
      * Step 3 of the AWS Signature version 4 calculation. It involves deriving
      * the signing key and computing the signature. Refer to
@@ -390,20 +376,6 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
         return expirationInSeconds;
     }
 
-    /**
-     * Generates a new signing key from the given parameters and returns it.
-     */
-    private byte[] newSigningKey(AwsCredentials credentials,
-                                 String dateStamp, String regionName, String serviceName) {
-        byte[] kSecret = ("AWS4" + credentials.secretAccessKey())
-            .getBytes(StandardCharsets.UTF_8);
-        byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
-        byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
-        byte[] kService = sign(serviceName, kRegion,
-                               SigningAlgorithm.HmacSHA256);
-        return sign(SignerConstant.AWS4_TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
-    }
-
     protected <B extends Aws4PresignerParams.Builder> B extractPresignerParams(B builder,
                                                                                ExecutionAttributes executionAttributes) {
         builder = extractSignerParams(builder, executionAttributes);
@@ -484,6 +456,7 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
         private final String contentSha256;
         private final boolean doubleUrlEncode;
         private final boolean normalizePath;
+        private final List<String> headersToIgnoreInLowerCase;
 
         private String canonicalRequestString;
         private StringBuilder signedHeaderStringBuilder;
@@ -494,12 +467,14 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
                          SdkHttpFullRequest.Builder requestBuilder,
                          String contentSha256,
                          boolean doubleUrlEncode,
-                         boolean normalizePath) {
+                         boolean normalizePath,
+                         List<String> headersToIgnoreInLowerCase) {
             this.request = request;
             this.requestBuilder = requestBuilder;
             this.contentSha256 = contentSha256;
             this.doubleUrlEncode = doubleUrlEncode;
             this.normalizePath = normalizePath;
+            this.headersToIgnoreInLowerCase = headersToIgnoreInLowerCase;
         }
 
         public String string() {
@@ -640,7 +615,7 @@ public abstract class CopiedAbstractAws4Signer<T extends Aws4SignerParams, U ext
 
             headers.forEachHeader((key, value) -> {
                 String lowerCaseHeader = lowerCase(key);
-                if (!LIST_OF_HEADERS_TO_IGNORE_IN_LOWER_CASE.contains(lowerCaseHeader)) {
+                if (!headersToIgnoreInLowerCase.contains(lowerCaseHeader)) {
                     result.add(Pair.of(lowerCaseHeader, value));
                 }
             });
@@ -33,6 +33,7 @@ import software.amazon.awssdk.utils.BinaryUtils;
 import software.amazon.awssdk.utils.StringUtils;
 
 import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
 
 import static software.amazon.awssdk.auth.signer.internal.Aws4SignerUtils.calculateRequestContentLength;
@@ -57,6 +58,9 @@ public abstract class CopiedAbstractAwsS3V4Signer
     private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
     private static final String CONTENT_LENGTH = "Content-Length";
 
+    protected CopiedAbstractAwsS3V4Signer(List<String> headersToIgnoreInLowerCase) {
+        super(headersToIgnoreInLowerCase);
+    }
 
     @Override
     public SdkHttpFullRequest sign(SdkHttpFullRequest request, ExecutionAttributes executionAttributes) {
@@ -102,8 +102,17 @@ public class TestOpaSecurity
             if (request.keyInBucket().equals("default-deny")) {
                 return SecurityResponse.FAILURE;
             }
+            return opaClient.getSecurityResponse(opaRequest(request, lowercaseAction, opaServerBaseUri, identity).orElseThrow());
+        }
+
+        @Override
+        public Optional<OpaRequest> opaRequest(ParsedS3Request request, Optional<String> lowercaseAction, URI opaServerBaseUri, Optional<Identity> identity)
+        {
+            if (request.keyInBucket().equals("default-allow") || request.keyInBucket().equals("default-deny")) {
+                return Optional.empty();
+            }
             URI uri = UriBuilder.fromUri(opaServerBaseUri).host(opaContainerHost).port(opaContainerPort).path("test").path("allow").build();
-            return opaClient.getSecurityResponse(new OpaRequest(uri, ImmutableMap.of("table", request.keyInBucket())));
+            return Optional.of(new OpaRequest(uri, ImmutableMap.of("table", request.keyInBucket())));
         }
     }
 
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class TestTrinoAwsProxyConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(TrinoAwsProxyConfig.class)
+                .setS3HostName(null)
+                .setS3Path("/api/v1/s3Proxy/s3")
+                .setStsPath("/api/v1/s3Proxy/sts")
+                .setPresignedUrlsDuration(new Duration(15, MINUTES))
+                .setGeneratePresignedUrlsOnHead(true)
+                .setLogsPath("/api/v1/s3Proxy/logs")
+                .setMaxPayloadSize(null)
+                .setStatusPath("/api/v1/s3Proxy/status")
+                .setStreamingBufferSize(DataSize.of(64, DataSize.Unit.KILOBYTE))
+                .setStreamingBufferPoolSize(256)
+                .setAsyncBodylessRequests(false));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.s3.hostname", "s3.example.com")
+                .put("aws.proxy.s3.path", "/s3")
+                .put("aws.proxy.sts.path", "/sts")
+                .put("aws.proxy.s3.presigned-url.duration", "5m")
+                .put("aws.proxy.s3.presigned-url.head-generation.enabled", "false")
+                .put("aws.proxy.logs.path", "/logs")
+                .put("aws.proxy.request.payload.max-size", "10MB")
+                .put("aws.proxy.status.path", "/status")
+                .put("aws.proxy.streaming.buffer-size", "1MB")
+                .put("aws.proxy.streaming.buffer-pool-size", "16")
+                .put("aws.proxy.s3.async-bodyless-requests.enabled", "true")
+                .buildOrThrow();
+
+        TrinoAwsProxyConfig expected = new TrinoAwsProxyConfig()
+                .setS3HostName("s3.example.com")
+                .setS3Path("/s3")
+                .setStsPath("/sts")
+                .setPresignedUrlsDuration(new Duration(5, MINUTES))
+                .setGeneratePresignedUrlsOnHead(false)
+                .setLogsPath("/logs")
+                .setMaxPayloadSize(DataSize.of(10, DataSize.Unit.MEGABYTE))
+                .setStatusPath("/status")
+                .setStreamingBufferSize(DataSize.of(1, DataSize.Unit.MEGABYTE))
+                .setStreamingBufferPoolSize(16)
+                .setAsyncBodylessRequests(true);
+        assertFullMapping(properties, expected);
+    }
+}
@@ -13,8 +13,10 @@
  */
 package io.trino.aws.proxy.server.credentials.file;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
+import io.airlift.units.Duration;
 import io.trino.aws.proxy.server.testing.TestingIdentity;
 import io.trino.aws.proxy.server.testing.TestingTrinoAwsProxyServer;
 import io.trino.aws.proxy.server.testing.harness.BuilderFilter;
@@ -29,6 +31,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static io.trino.aws.proxy.spi.plugin.TrinoAwsProxyServerBinding.bindIdentityType;
 import static java.util.Objects.requireNonNull;
@@ -38,6 +41,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class TestFileBasedCredentialsProvider
 {
     private final CredentialsProvider credentialsProvider;
+    private final ObjectMapper objectMapper;
 
     public static class Filter
             implements BuilderFilter
@@ -78,9 +82,10 @@ public class TestFileBasedCredentialsProvider
     }
 
     @Inject
-    public TestFileBasedCredentialsProvider(CredentialsProvider credentialsProvider)
+    public TestFileBasedCredentialsProvider(CredentialsProvider credentialsProvider, ObjectMapper objectMapper)
     {
         this.credentialsProvider = requireNonNull(credentialsProvider, "credentialsProvider is null");
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper is null");
     }
 
     @Test
@@ -98,4 +103,78 @@ public class TestFileBasedCredentialsProvider
         Optional<IdentityCredential> actual = credentialsProvider.credentials("non-existent-key", Optional.empty());
         assertThat(actual).isEmpty();
     }
+
+    @Test
+    public void testCredentialsWithSession()
+            throws IOException
+    {
+        File credentialsFile = writeCredentialsFile(null, """
+                [
+                  {
+                    "emulated": {"accessKey": "key", "secretKey": "secret-without-session"},
+                    "identity": {"user": "user", "id": "id"}
+                  },
+                  {
+                    "emulated": {"accessKey": "key", "secretKey": "secret-with-session", "session": "session"},
+                    "identity": {"user": "user", "id": "id"}
+                  }
+                ]
+                """);
+        FileBasedCredentialsProvider provider = new FileBasedCredentialsProvider(new FileBasedCredentialsProviderConfig().setCredentialsFile(credentialsFile), objectMapper);
+
+        assertThat(provider.credentials("key", Optional.empty())).map(credential -> credential.emulated().secretKey()).contains("secret-without-session");
+        assertThat(provider.credentials("key", Optional.of("session"))).map(credential -> credential.emulated().secretKey()).contains("secret-with-session");
+        assertThat(provider.credentials("key", Optional.of("other-session"))).isEmpty();
+    }
+
+    @Test
+    public void testRefresh()
+            throws IOException
+    {
+        File credentialsFile = writeCredentialsFile(null, credentialsJson("first-key"));
+        FileBasedCredentialsProvider provider = new FileBasedCredentialsProvider(
+                new FileBasedCredentialsProviderConfig().setCredentialsFile(credentialsFile).setRefreshPeriod(new Duration(1, TimeUnit.HOURS)),
+                objectMapper);
+        assertThat(provider.credentials("first-key", Optional.empty())).isPresent();
+
+        // unchanged file is not reloaded
+        provider.refreshIfChanged();
+        assertThat(provider.credentials("first-key", Optional.empty())).isPresent();
+
+        writeCredentialsFile(credentialsFile, credentialsJson("second-key"));
+        provider.refreshIfChanged();
+        assertThat(provider.credentials("first-key", Optional.empty())).isEmpty();
+        assertThat(provider.credentials("second-key", Optional.empty())).isPresent();
+
+        // a file that can't be parsed keeps the previous credentials
+        writeCredentialsFile(credentialsFile, "[{\"emulated\": ");
+        provider.refreshIfChanged();
+        assertThat(provider.credentials("second-key", Optional.empty())).isPresent();
+    }
+
+    private static String credentialsJson(String accessKey)
+    {
+        return """
+                [
+                  {
+                    "emulated": {"accessKey": "%s", "secretKey": "secret"},
+                    "identity": {"user": "user", "id": "id"}
+                  }
+                ]
+                """.formatted(accessKey);
+    }
+
+    private static File writeCredentialsFile(File credentialsFile, String content)
+            throws IOException
+    {
+        if (credentialsFile == null) {
+            credentialsFile = File.createTempFile("credentials-provider", ".json");
+            credentialsFile.deleteOnExit();
+        }
+        long previousLastModified = credentialsFile.lastModified();
+        Files.writeString(credentialsFile.toPath(), content);
+        // make sure the change is visible even with a coarse file system timestamp resolution
+        credentialsFile.setLastModified(Math.max(System.currentTimeMillis(), previousLastModified + 2000));
+        return credentialsFile;
+    }
 }
@@ -14,11 +14,13 @@
 package io.trino.aws.proxy.server.credentials.file;
 
 import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
@@ -30,7 +32,8 @@ public class TestFileBasedCredentialsProviderConfig
     public void testDefaults()
     {
         assertRecordedDefaults(recordDefaults(FileBasedCredentialsProviderConfig.class)
-                .setCredentialsFile(null));
+                .setCredentialsFile(null)
+                .setRefreshPeriod(null));
     }
 
     @Test
@@ -39,9 +42,12 @@ public class TestFileBasedCredentialsProviderConfig
     {
         File configFile = File.createTempFile("credentials", ".json");
         Map<String, String> properties = ImmutableMap.of(
-                "credentials-provider.credentials-file-path", configFile.toString());
+                "credentials-provider.credentials-file-path", configFile.toString(),
+                "credentials-provider.credentials-file-refresh-period", "30s");
 
-        FileBasedCredentialsProviderConfig expected = new FileBasedCredentialsProviderConfig().setCredentialsFile(configFile);
+        FileBasedCredentialsProviderConfig expected = new FileBasedCredentialsProviderConfig()
+                .setCredentialsFile(configFile)
+                .setRefreshPeriod(new Duration(30, TimeUnit.SECONDS));
         assertFullMapping(properties, expected);
     }
 }
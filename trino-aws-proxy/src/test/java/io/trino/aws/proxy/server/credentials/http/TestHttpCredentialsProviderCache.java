@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.credentials.http;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.json.ObjectMapperProvider;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.credentials.JsonIdentityProvider;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import io.trino.aws.proxy.spi.credentials.StandardIdentity;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.net.MediaType.JSON_UTF_8;
+import static io.airlift.http.client.testing.TestingResponse.mockResponse;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHttpCredentialsProviderCache
+{
+    private static final JsonCodec<IdentityCredential> JSON_CODEC = jsonCodec();
+    private static final String KNOWN_KEY = "known";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final CredentialsService credentialsService = new CredentialsService();
+
+    @Test
+    public void testBackgroundRefresh()
+    {
+        HttpCredentialsProvider provider = provider(new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setCacheRefreshInterval(new Duration(1, MINUTES)));
+
+        assertSecretKey(provider, "secret-1");
+        assertThat(credentialsService.requests()).isEqualTo(1);
+
+        credentialsService.secretKey = "secret-2";
+        nanos.addAndGet(MINUTES.toNanos(2));
+
+        // the cached credentials are returned while they are reloaded in the background
+        assertSecretKey(provider, "secret-1");
+        runRefreshes();
+        assertThat(credentialsService.requests()).isEqualTo(2);
+        assertSecretKey(provider, "secret-2");
+        assertThat(credentialsService.requests()).isEqualTo(2);
+
+        // a key that was removed is gone after its refresh
+        credentialsService.status = HttpStatus.NOT_FOUND;
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertSecretKey(provider, "secret-2");
+        runRefreshes();
+        assertThat(provider.credentials(KNOWN_KEY, Optional.empty())).isEmpty();
+    }
+
+    @Test
+    public void testStaleOnServerError()
+    {
+        HttpCredentialsProvider provider = provider(new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setCacheRefreshInterval(new Duration(1, MINUTES)));
+
+        assertSecretKey(provider, "secret-1");
+
+        credentialsService.secretKey = "secret-2";
+        credentialsService.status = HttpStatus.SERVICE_UNAVAILABLE;
+        nanos.addAndGet(MINUTES.toNanos(2));
+
+        // failed refreshes keep the cached credentials
+        assertSecretKey(provider, "secret-1");
+        runRefreshes();
+        assertThat(credentialsService.requests()).isEqualTo(2);
+        assertSecretKey(provider, "secret-1");
+        runRefreshes();
+
+        // until they expire
+        nanos.addAndGet(MINUTES.toNanos(9));
+        assertThat(provider.credentials(KNOWN_KEY, Optional.empty())).isEmpty();
+
+        credentialsService.status = HttpStatus.OK;
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(provider.credentials(KNOWN_KEY, Optional.empty())).isEmpty();
+        runRefreshes();
+        assertSecretKey(provider, "secret-2");
+    }
+
+    @Test
+    public void testNegativeTtl()
+    {
+        HttpCredentialsProvider provider = provider(new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setCacheNegativeTtl(new Duration(1, MINUTES)));
+
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertSecretKey(provider, "secret-1");
+        assertThat(credentialsService.requests()).isEqualTo(2);
+
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertThat(credentialsService.requests()).isEqualTo(2);
+
+        // unknown keys are looked up again after the negative TTL, known keys are still cached
+        nanos.addAndGet(MINUTES.toNanos(2));
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertSecretKey(provider, "secret-1");
+        assertThat(credentialsService.requests()).isEqualTo(3);
+    }
+
+    @Test
+    public void testPrefetch()
+    {
+        HttpCredentialsProvider provider = provider(new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setCachePrefetchKeys(KNOWN_KEY + ",unknown"));
+
+        provider.prefetchCredentials();
+        assertThat(credentialsService.requests()).isEqualTo(2);
+
+        assertSecretKey(provider, "secret-1");
+        assertThat(provider.credentials("unknown", Optional.empty())).isEmpty();
+        assertThat(credentialsService.requests()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPrefetchFailure()
+    {
+        HttpCredentialsProvider provider = provider(new HttpCredentialsProviderConfig()
+                .setCacheTtl(new Duration(10, MINUTES))
+                .setCachePrefetchKeys(KNOWN_KEY));
+
+        // an unreachable credentials service does not fail startup
+        credentialsService.failRequests = true;
+        provider.prefetchCredentials();
+        assertThat(credentialsService.requests()).isEqualTo(1);
+
+        credentialsService.failRequests = false;
+        assertSecretKey(provider, "secret-1");
+        assertThat(credentialsService.requests()).isEqualTo(2);
+    }
+
+    private HttpCredentialsProvider provider(HttpCredentialsProviderConfig config)
+    {
+        config.setEndpoint(URI.create("http://credentials.example.com/credentials"))
+                .setCacheSize(100);
+        return new HttpCredentialsProvider(new TestingHttpClient(credentialsService), config, JSON_CODEC, nanos::get, refreshes::add);
+    }
+
+    private void runRefreshes()
+    {
+        while (!refreshes.isEmpty()) {
+            refreshes.removeFirst().run();
+        }
+    }
+
+    private static void assertSecretKey(HttpCredentialsProvider provider, String secretKey)
+    {
+        assertThat(provider.credentials(KNOWN_KEY, Optional.empty()))
+                .map(identityCredential -> identityCredential.emulated().secretKey())
+                .contains(secretKey);
+    }
+
+    private static JsonCodec<IdentityCredential> jsonCodec()
+    {
+        ObjectMapperProvider objectMapperProvider = new ObjectMapperProvider();
+        objectMapperProvider.setModules(ImmutableSet.of(new JsonIdentityProvider(StandardIdentity.class).get()));
+        return new JsonCodecFactory(objectMapperProvider).jsonCodec(IdentityCredential.class);
+    }
+
+    private static class CredentialsService
+            implements TestingHttpClient.Processor
+    {
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile String secretKey = "secret-1";
+        private volatile HttpStatus status = HttpStatus.OK;
+        private volatile boolean failRequests;
+
+        @Override
+        public Response handle(Request request)
+        {
+            requests.incrementAndGet();
+            if (failRequests) {
+                throw new IllegalStateException("Connection refused");
+            }
+            String path = request.getUri().getPath();
+            String emulatedAccessKey = path.substring(path.lastIndexOf('/') + 1);
+            if ((status != HttpStatus.OK) || !emulatedAccessKey.equals(KNOWN_KEY)) {
+                return mockResponse(status == HttpStatus.OK ? HttpStatus.NOT_FOUND : status, JSON_UTF_8, "");
+            }
+            IdentityCredential credential = new IdentityCredential(new Credential(KNOWN_KEY, secretKey), new StandardIdentity("user", ImmutableList.of()));
+            return mockResponse(HttpStatus.OK, JSON_UTF_8, JSON_CODEC.toJson(credential));
+        }
+
+        private int requests()
+        {
+            return requests.get();
+        }
+    }
+}
@@ -37,12 +37,18 @@ public class TestHttpCredentialsProviderConfig
                 .put("credentials-provider.http.headers", "x-api-key: xyz123, Content-Type: application/json")
                 .put("credentials-provider.http.cache-size", "123")
                 .put("credentials-provider.http.cache-ttl", "2m")
+                .put("credentials-provider.http.cache-negative-ttl", "10s")
+                .put("credentials-provider.http.cache-refresh-interval", "1m")
+                .put("credentials-provider.http.cache-prefetch-keys", "key1, key2")
                 .buildOrThrow();
         HttpCredentialsProviderConfig expected = new HttpCredentialsProviderConfig()
                 .setEndpoint(URI.create("http://usersvc:9000/api/v1/users"))
                 .setHttpHeaders("x-api-key: xyz123, Content-Type: application/json")
                 .setCacheSize(123)
-                .setCacheTtl(new Duration(2, TimeUnit.MINUTES));
+                .setCacheTtl(new Duration(2, TimeUnit.MINUTES))
+                .setCacheNegativeTtl(new Duration(10, TimeUnit.SECONDS))
+                .setCacheRefreshInterval(new Duration(1, TimeUnit.MINUTES))
+                .setCachePrefetchKeys("key1, key2");
         assertFullMapping(properties, expected);
     }
 
@@ -53,7 +59,10 @@ public class TestHttpCredentialsProviderConfig
                 .setEndpoint(null)
                 .setHttpHeaders("")
                 .setCacheSize(0)
-                .setCacheTtl(Duration.ZERO));
+                .setCacheTtl(Duration.ZERO)
+                .setCacheNegativeTtl(null)
+                .setCacheRefreshInterval(Duration.ZERO)
+                .setCachePrefetchKeys(""));
     }
 
     @Test
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.remote.RemoteS3Connection;
+import io.trino.aws.proxy.spi.remote.RemoteS3ConnectionProvider;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestCachingRemoteS3ConnectionProvider
+{
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @Test
+    public void testCachedPerAccessKeyAndBucket()
+    {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingRemoteS3ConnectionProvider provider = new CachingRemoteS3ConnectionProvider(delegate, 100, TTL, TTL, Duration.ZERO, directExecutor());
+
+        Optional<RemoteS3Connection> first = provider.remoteConnection(signingMetadata("key1"), Optional.empty(), request("bucket1", "a"));
+        assertThat(first).isPresent();
+        assertThat(provider.remoteConnection(signingMetadata("key1"), Optional.empty(), request("bucket1", "b"))).isEqualTo(first);
+        assertThat(delegate.lookups()).isEqualTo(1);
+
+        provider.remoteConnection(signingMetadata("key1"), Optional.empty(), request("bucket2", "a"));
+        assertThat(delegate.lookups()).isEqualTo(2);
+
+        provider.remoteConnection(signingMetadata("key2"), Optional.empty(), request("bucket1", "a"));
+        assertThat(delegate.lookups()).isEqualTo(3);
+
+        assertThat(provider.hitCount()).isEqualTo(1);
+        assertThat(provider.missCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testNegativeCaching()
+    {
+        CountingProvider delegate = new CountingProvider(false);
+        CachingRemoteS3ConnectionProvider provider = new CachingRemoteS3ConnectionProvider(delegate, 100, TTL, TTL, Duration.ZERO, directExecutor());
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEmpty();
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEmpty();
+        assertThat(delegate.lookups()).isEqualTo(1);
+
+        delegate = new CountingProvider(false);
+        provider = new CachingRemoteS3ConnectionProvider(delegate, 100, TTL, Duration.ZERO, Duration.ZERO, directExecutor());
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEmpty();
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEmpty();
+        assertThat(delegate.lookups()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRefresh()
+    {
+        AtomicLong nanos = new AtomicLong();
+        List<Runnable> refreshes = new ArrayList<>();
+        CountingProvider delegate = new CountingProvider(true);
+        CachingRemoteS3ConnectionProvider provider = new CachingRemoteS3ConnectionProvider(delegate, 100, TTL, TTL, Duration.ofMinutes(1), nanos::get, refreshes::add);
+
+        Optional<RemoteS3Connection> first = provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"));
+        nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEqualTo(first);
+        assertThat(refreshes).isEmpty();
+
+        // the stale value is served while the refresh runs, and only one refresh is started
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "b"))).isEqualTo(first);
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "c"))).isEqualTo(first);
+        assertThat(refreshes).hasSize(1);
+        assertThat(delegate.lookups()).isEqualTo(1);
+
+        // the refresh is done with the arguments of the request that found the entry stale
+        refreshes.removeFirst().run();
+        assertThat(delegate.lookups()).isEqualTo(2);
+        assertThat(delegate.lastKeyInBucket()).isEqualTo("b");
+
+        Optional<RemoteS3Connection> refreshed = provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"));
+        assertThat(refreshed).isPresent().isNotEqualTo(first);
+        assertThat(refreshes).isEmpty();
+        assertThat(delegate.lookups()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedRefresh()
+    {
+        AtomicLong nanos = new AtomicLong();
+        List<Runnable> refreshes = new ArrayList<>();
+        CountingProvider delegate = new CountingProvider(true);
+        CachingRemoteS3ConnectionProvider provider = new CachingRemoteS3ConnectionProvider(delegate, 100, TTL, TTL, Duration.ofMinutes(1), nanos::get, refreshes::add);
+
+        Optional<RemoteS3Connection> first = provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"));
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        delegate.failLookups();
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEqualTo(first);
+        refreshes.removeFirst().run();
+
+        // the current value is kept and the next request retries the refresh
+        assertThat(provider.remoteConnection(signingMetadata("key"), Optional.empty(), request("bucket", "a"))).isEqualTo(first);
+        assertThat(refreshes).hasSize(1);
+    }
+
+    @Test
+    public void testDisabledByDefault()
+    {
+        RemoteS3ConnectionProvider delegate = new CountingProvider(true);
+        assertThat(CachingRemoteS3ConnectionProvider.withCache(delegate, new RemoteS3ConnectionControllerConfig(), directExecutor())).isSameAs(delegate);
+        assertThat(CachingRemoteS3ConnectionProvider.withCache(delegate, new RemoteS3ConnectionControllerConfig().setProviderCacheMaxSize(10), directExecutor()))
+                .isInstanceOf(CachingRemoteS3ConnectionProvider.class);
+        assertThat(CachingRemoteS3ConnectionProvider.withCache(RemoteS3ConnectionProvider.NOOP, new RemoteS3ConnectionControllerConfig().setProviderCacheMaxSize(10), directExecutor()))
+                .isSameAs(RemoteS3ConnectionProvider.NOOP);
+    }
+
+    private static SigningMetadata signingMetadata(String emulatedAccessKey)
+    {
+        return new SigningMetadata(S3, new Credential(emulatedAccessKey, "secret"), Optional.empty());
+    }
+
+    private static ParsedS3Request request(String bucketName, String keyInBucket)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                bucketName,
+                keyInBucket,
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                "GET",
+                "/%s/%s".formatted(bucketName, keyInBucket),
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+
+    private static class CountingProvider
+            implements RemoteS3ConnectionProvider
+    {
+        private final boolean found;
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile boolean failLookups;
+        private volatile String lastKeyInBucket;
+
+        private CountingProvider(boolean found)
+        {
+            this.found = found;
+        }
+
+        @Override
+        public Optional<RemoteS3Connection> remoteConnection(SigningMetadata signingMetadata, Optional<Identity> identity, ParsedS3Request request)
+        {
+            if (failLookups) {
+                throw new IllegalStateException("lookup failed");
+            }
+            int lookup = lookups.incrementAndGet();
+            lastKeyInBucket = request.keyInBucket();
+            if (!found) {
+                return Optional.empty();
+            }
+            return Optional.of(new RemoteS3Connection(new Credential("remote-" + lookup, "secret"), Optional.empty(), Optional.empty()));
+        }
+
+        private int lookups()
+        {
+            return lookups.get();
+        }
+
+        private String lastKeyInBucket()
+        {
+            return lastKeyInBucket;
+        }
+
+        private void failLookups()
+        {
+            failLookups = true;
+        }
+    }
+}
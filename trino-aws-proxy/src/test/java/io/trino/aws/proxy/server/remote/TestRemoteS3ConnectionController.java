@@ -0,0 +1,264 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
+import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController.ConfiguredFacade;
+import io.trino.aws.proxy.server.remote.RemoteS3ConnectionController.Session;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.remote.RemoteS3Connection;
+import io.trino.aws.proxy.spi.remote.RemoteS3ConnectionProvider;
+import io.trino.aws.proxy.spi.remote.RemoteSessionRole;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.annotation.PreDestroy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static io.airlift.units.Duration.succinctDuration;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRemoteS3ConnectionController
+{
+    private static final RemoteSessionRole ROLE = new RemoteSessionRole("us-east-1", "arn:aws:iam::123456789012:role/remote", Optional.empty(), Optional.empty());
+    // each bucket is served with its own remote credential, and so with its own session
+    private static final RemoteS3ConnectionProvider PROVIDER = (_, _, request) ->
+            Optional.of(new RemoteS3Connection(new Credential(request.bucketName(), "secret"), Optional.of(ROLE), Optional.empty()));
+    // buckets named "<domain>.<name>" are served by a facade configured with that domain, each request gets its own copy of the configuration
+    private static final RemoteS3ConnectionProvider FACADE_PROVIDER = (_, _, request) ->
+            Optional.of(new RemoteS3Connection(new Credential(request.bucketName(), "secret"), Optional.empty(),
+                    Optional.of(new HashMap<>(Map.of("remoteS3.domain", request.bucketName().substring(0, request.bucketName().indexOf('.')))))));
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final List<ConfiguredFacade> facades = new CopyOnWriteArrayList<>();
+    private final List<StopTracker> stopTrackers = new CopyOnWriteArrayList<>();
+
+    public static class StopTracker
+    {
+        private volatile boolean stopped;
+
+        @PreDestroy
+        public void stop()
+        {
+            stopped = true;
+        }
+    }
+
+    @Test
+    public void testIdleSessionEviction()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig()
+                .setSessionIdleTimeout(succinctDuration(1, MINUTES)));
+
+        assertThat(sessionCredential(controller, "bucket")).isEqualTo("bucket-1");
+        advance(Duration.ofSeconds(59));
+        assertThat(sessionCredential(controller, "bucket")).isEqualTo("bucket-1");
+        assertThat(sessions).hasSize(1);
+
+        // each use restarts the idle timeout
+        advance(Duration.ofSeconds(59));
+        controller.cleanUp();
+        assertThat(sessions.getFirst().isClosed()).isFalse();
+
+        advance(Duration.ofMinutes(1));
+        controller.cleanUp();
+        assertThat(sessions.getFirst().isClosed()).isTrue();
+        assertThat(controller.getRemoteSessionCount()).isEqualTo(0);
+
+        assertThat(sessionCredential(controller, "bucket")).isEqualTo("bucket-2");
+        assertThat(sessions).hasSize(2);
+    }
+
+    @Test
+    public void testMaxSessions()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig().setMaxSessions(2));
+
+        sessionCredential(controller, "bucket1");
+        sessionCredential(controller, "bucket2");
+        sessionCredential(controller, "bucket3");
+        controller.cleanUp();
+
+        assertThat(sessions).hasSize(3);
+        assertThat(sessions.stream().filter(Session::isClosed)).hasSize(1);
+        assertThat(controller.getRemoteSessionCount()).isEqualTo(2);
+        assertThat(controller.getRemoteSessionEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictedSessionClosedAfterRelease()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig()
+                .setSessionIdleTimeout(succinctDuration(1, MINUTES)));
+
+        String credential = withSession(controller, "bucket", _ -> {
+            // the session expires while it is in use
+            advance(Duration.ofMinutes(2));
+            controller.cleanUp();
+            assertThat(controller.getRemoteSessionCount()).isEqualTo(0);
+            assertThat(sessions.getFirst().isClosed()).isFalse();
+
+            // a new request does not get the evicted session
+            assertThat(sessionCredential(controller, "bucket")).isEqualTo("bucket-2");
+            assertThat(sessions.getFirst().isClosed()).isFalse();
+            return "done";
+        });
+
+        assertThat(credential).isEqualTo("done");
+        assertThat(sessions.getFirst().isClosed()).isTrue();
+        assertThat(sessions.getLast().isClosed()).isFalse();
+    }
+
+    @Test
+    public void testFacadeReuse()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig(), FACADE_PROVIDER);
+
+        assertThat(withSession(controller, "one.bucket1", Credential::accessKey)).isEqualTo("one.bucket1");
+        assertThat(withSession(controller, "one.bucket2", Credential::accessKey)).isEqualTo("one.bucket2");
+        assertThat(withSession(controller, "two.bucket1", Credential::accessKey)).isEqualTo("two.bucket1");
+
+        // equal configurations share a facade
+        assertThat(facades).hasSize(2);
+        assertThat(controller.getFacadeCacheSize()).isEqualTo(2);
+        assertThat(controller.getFacadeCacheHitCount()).isEqualTo(1);
+        assertThat(controller.getFacadeCacheMissCount()).isEqualTo(2);
+        assertThat(stopTrackers).noneMatch(stopTracker -> stopTracker.stopped);
+    }
+
+    @Test
+    public void testEvictedFacadeStopped()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig()
+                .setFacadeCacheIdleTimeout(succinctDuration(1, MINUTES)), FACADE_PROVIDER);
+
+        withSession(controller, "one.bucket", Credential::accessKey);
+        advance(Duration.ofMinutes(2));
+        controller.cleanUp();
+
+        assertThat(controller.getFacadeCacheSize()).isEqualTo(0);
+        assertThat(facades.getFirst().isClosed()).isTrue();
+        assertThat(stopTrackers.getFirst().stopped).isTrue();
+
+        withSession(controller, "one.bucket", Credential::accessKey);
+        assertThat(facades).hasSize(2);
+        assertThat(stopTrackers.getLast().stopped).isFalse();
+    }
+
+    @Test
+    public void testEvictedFacadeStoppedAfterRelease()
+    {
+        RemoteS3ConnectionController controller = controller(new RemoteS3ConnectionControllerConfig()
+                .setFacadeCacheIdleTimeout(succinctDuration(1, MINUTES)), FACADE_PROVIDER);
+
+        String result = withSession(controller, "one.bucket", _ -> {
+            // the facade expires while it is in use
+            advance(Duration.ofMinutes(2));
+            controller.cleanUp();
+            assertThat(controller.getFacadeCacheSize()).isEqualTo(0);
+            assertThat(stopTrackers.getFirst().stopped).isFalse();
+
+            // a new request does not get the evicted facade
+            withSession(controller, "one.bucket", Credential::accessKey);
+            assertThat(facades).hasSize(2);
+            assertThat(stopTrackers.getFirst().stopped).isFalse();
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(stopTrackers.getFirst().stopped).isTrue();
+        assertThat(stopTrackers.getLast().stopped).isFalse();
+    }
+
+    private RemoteS3ConnectionController controller(RemoteS3ConnectionControllerConfig config)
+    {
+        return controller(config, PROVIDER);
+    }
+
+    private RemoteS3ConnectionController controller(RemoteS3ConnectionControllerConfig config, RemoteS3ConnectionProvider provider)
+    {
+        return new RemoteS3ConnectionController(facade("testS3Domain.com"), provider, config, nanos::get, (_, remoteCredential, sessionName) -> {
+            String sessionCredential = "%s-%s".formatted(remoteCredential.accessKey(), sessions.size() + 1);
+            Session session = new Session(sessionName, () -> new Credential(sessionCredential, "secret"), () -> {});
+            sessions.add(session);
+            return session;
+        }, facadeConfig -> {
+            Injector injector = new Bootstrap(binder -> binder.bind(StopTracker.class).in(Scopes.SINGLETON))
+                    .doNotInitializeLogging()
+                    .quiet()
+                    .initialize();
+            ConfiguredFacade configuredFacade = new ConfiguredFacade(facade(facadeConfig.get("remoteS3.domain")), injector.getInstance(LifeCycleManager.class));
+            facades.add(configuredFacade);
+            stopTrackers.add(injector.getInstance(StopTracker.class));
+            return configuredFacade;
+        });
+    }
+
+    private static PathStyleRemoteS3Facade facade(String domain)
+    {
+        return new PathStyleRemoteS3Facade(new DefaultRemoteS3Config().setDomain(domain));
+    }
+
+    private void advance(Duration duration)
+    {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static String sessionCredential(RemoteS3ConnectionController controller, String bucket)
+    {
+        return withSession(controller, bucket, Credential::accessKey);
+    }
+
+    private static String withSession(RemoteS3ConnectionController controller, String bucket, Function<Credential, String> consumer)
+    {
+        SigningMetadata signingMetadata = new SigningMetadata(S3, new Credential("emulated", "secret"), Optional.empty());
+        return controller.withRemoteConnection(signingMetadata, Optional.empty(), request(bucket), (credential, _) -> consumer.apply(credential)).orElseThrow();
+    }
+
+    private static ParsedS3Request request(String bucketName)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                bucketName,
+                "key",
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                "GET",
+                "/%s/key".formatted(bucketName),
+                Optional.empty(),
+                RequestContent.EMPTY);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.remote;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+
+public class TestRemoteS3ConnectionControllerConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RemoteS3ConnectionControllerConfig.class)
+                .setSessionIdleTimeout(new Duration(30, TimeUnit.MINUTES))
+                .setMaxSessions(10_000)
+                .setCredentialsPrefetchTime(new Duration(5, TimeUnit.MINUTES))
+                .setCredentialsStaleTime(new Duration(1, TimeUnit.MINUTES))
+                .setFacadeCacheMaxSize(1_000)
+                .setFacadeCacheIdleTimeout(new Duration(1, TimeUnit.HOURS))
+                .setProviderCacheMaxSize(0)
+                .setProviderCacheTtl(new Duration(5, TimeUnit.MINUTES))
+                .setProviderCacheNegativeTtl(new Duration(30, TimeUnit.SECONDS))
+                .setProviderCacheRefreshInterval(Duration.ZERO));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("remote-s3-connection.session.idle-timeout", "2h")
+                .put("remote-s3-connection.session.max-sessions", "50")
+                .put("remote-s3-connection.session.credentials-prefetch-time", "10m")
+                .put("remote-s3-connection.session.credentials-stale-time", "2m")
+                .put("remote-s3-connection.facade-cache.max-size", "20")
+                .put("remote-s3-connection.facade-cache.idle-timeout", "5m")
+                .put("remote-s3-connection.provider-cache.max-size", "100")
+                .put("remote-s3-connection.provider-cache.ttl", "10m")
+                .put("remote-s3-connection.provider-cache.negative-ttl", "1m")
+                .put("remote-s3-connection.provider-cache.refresh-interval", "2m")
+                .buildOrThrow();
+
+        RemoteS3ConnectionControllerConfig expected = new RemoteS3ConnectionControllerConfig()
+                .setSessionIdleTimeout(new Duration(2, TimeUnit.HOURS))
+                .setMaxSessions(50)
+                .setCredentialsPrefetchTime(new Duration(10, TimeUnit.MINUTES))
+                .setCredentialsStaleTime(new Duration(2, TimeUnit.MINUTES))
+                .setFacadeCacheMaxSize(20)
+                .setFacadeCacheIdleTimeout(new Duration(5, TimeUnit.MINUTES))
+                .setProviderCacheMaxSize(100)
+                .setProviderCacheTtl(new Duration(10, TimeUnit.MINUTES))
+                .setProviderCacheNegativeTtl(new Duration(1, TimeUnit.MINUTES))
+                .setProviderCacheRefreshInterval(new Duration(2, TimeUnit.MINUTES));
+        assertFullMapping(properties, expected);
+    }
+}
@@ -18,6 +18,7 @@ import com.google.inject.Inject;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.Request;
 import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import io.trino.aws.proxy.server.rest.LimitStreamController.RateLimitScope;
 import io.trino.aws.proxy.server.rest.TestHangingStreamingResponseHandler.ForTimeout;
 import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.GET;
@@ -31,9 +32,11 @@ import jakarta.ws.rs.core.UriInfo;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static jakarta.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
@@ -64,7 +67,8 @@ public class HangingResource
     {
         // simulate calling a remote request and streaming the result while the remote server hangs
         Request request = prepareGet().setUri(uriInfo.getBaseUri().resolve("hang")).build();
-        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, ImmutableMap.of(), () -> {}, new LimitStreamController(new TrinoAwsProxyConfig())));
+        httpClient.execute(request, new StreamingResponseHandler(asyncResponse, immediateFuture(ImmutableMap.of()), () -> {}, new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()),
+                new RateLimitScope("dummy", Optional.empty(), ""), new ProxyRequestStats(), ""));
     }
 
     @GET
@@ -26,6 +26,7 @@ import software.amazon.awssdk.auth.signer.internal.chunkedencoding.AwsS3V4ChunkS
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -110,6 +111,42 @@ public class TestAwsChunkedInputStream
         assertThat(readChunked(chunkedStream, goodTestSigningSession())).isEqualTo(GOOD_CONTENT.getBytes(UTF_8));
     }
 
+    @Test
+    public void testLargeChunksWithFragmentedReads()
+            throws IOException
+    {
+        // chunks and headers that straddle the internal buffer while the delegate returns only a few bytes at a time
+        String content = "0123456789abcdef".repeat(10_000);
+        TestingChunkSigningSession session = goodTestSigningSession();
+        String chunkedStream = session.generateChunkedStream(content, 7);
+
+        InputStream fragmented = new FilterInputStream(new ByteArrayInputStream(chunkedStream.getBytes(UTF_8)))
+        {
+            private int nextReadSize = 1;
+
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException
+            {
+                nextReadSize = (nextReadSize % 13) + 1;
+                return super.read(b, off, Math.min(len, nextReadSize));
+            }
+        };
+        try (InputStream in = new AwsChunkedInputStream(fragmented, goodTestSigningSession(), content.length())) {
+            assertThat(ByteStreams.toByteArray(in)).isEqualTo(content.getBytes(UTF_8));
+        }
+    }
+
+    @Test
+    public void testChunkHeaderWhitespaceAndCase()
+            throws IOException
+    {
+        String chunkedStream = goodTestSigningSession().generateChunkedStream(GOOD_CONTENT, 3);
+        chunkedStream = chunkedStream.replace(";chunk-signature=", " ; Chunk-Signature = ");
+
+        assertThat(readChunked(chunkedStream, goodTestSigningSession())).isEqualTo(GOOD_CONTENT.getBytes(UTF_8));
+    }
+
     @Test
     public void testAwsChunkedCornerCases()
             throws IOException
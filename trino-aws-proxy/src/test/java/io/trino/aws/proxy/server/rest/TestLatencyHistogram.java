@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class TestLatencyHistogram
+{
+    @Test
+    public void testBuckets()
+    {
+        long previousIndex = -1;
+        for (long micros = 0; micros < 1_000_000; ++micros) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            assertThat(index).isBetween((int) previousIndex, (int) previousIndex + 1);
+            assertThat(LatencyHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(micros);
+            assertThat(LatencyHistogram.bucketUpperBound(index)).isLessThanOrEqualTo(micros + (micros / 8));
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getP99Millis()).isEqualTo(0);
+
+        LongStream.rangeClosed(1, 1000).forEach(millis -> histogram.add(MILLISECONDS.toNanos(millis)));
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getAverageMillis()).isEqualTo(500.5);
+        assertThat(histogram.getMaxMillis()).isEqualTo(1000);
+        assertThat(histogram.getP50Millis()).isCloseTo(500, within(500 * 0.125));
+        assertThat(histogram.getP99Millis()).isCloseTo(990, within(990 * 0.125));
+        assertThat(histogram.percentileMillis(1)).isEqualTo(1000);
+
+        histogram.add(MICROSECONDS.toNanos(3));
+        assertThat(histogram.percentileMillis(0)).isEqualTo(0.003);
+    }
+}
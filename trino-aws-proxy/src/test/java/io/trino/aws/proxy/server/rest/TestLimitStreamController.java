@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import io.trino.aws.proxy.server.rest.LimitStreamController.RateLimitScope;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestLimitStreamController
+{
+    private static final RateLimitScope BUCKET_A = new RateLimitScope("key", Optional.of("user"), "a");
+    private static final RateLimitScope BUCKET_B = new RateLimitScope("key", Optional.of("user"), "b");
+
+    @Test
+    public void testRequestRates()
+    {
+        // the burst fits two identity requests and one bucket request, the next tokens take seconds to come back
+        LimitStreamController controller = new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()
+                .setIdentityRequestRate(0.2)
+                .setBucketRequestRate(0.1)
+                .setBurst(new Duration(10, SECONDS)));
+
+        // the bucket rate is not used up by acquiring the caller rates
+        controller.acquireRequest(BUCKET_A);
+        controller.acquireBucketRequest(BUCKET_A);
+        assertRejected(() -> controller.acquireBucketRequest(BUCKET_A));
+        assertThat(controller.getRejectedRequests()).isEqualTo(1);
+
+        // other buckets have their own rate, the identity is shared
+        controller.acquireRequest(BUCKET_B);
+        controller.acquireBucketRequest(BUCKET_B);
+        assertRejected(() -> controller.acquireRequest(new RateLimitScope("other-key", Optional.of("user"), "c")));
+        assertThat(controller.getRejectedRequests()).isEqualTo(2);
+
+        // requests without an identity are only limited by the other rates
+        controller.acquireRequest(new RateLimitScope("key", Optional.empty(), "c"));
+    }
+
+    @Test
+    public void testNoLimits()
+            throws IOException
+    {
+        LimitStreamController controller = new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig());
+        for (int i = 0; i < 100; ++i) {
+            controller.acquireRequest(BUCKET_A);
+            controller.acquireBucketRequest(BUCKET_A);
+        }
+        assertThat(transfer(controller, BUCKET_A, 1024 * 1024)).isEqualTo(1024 * 1024);
+
+        InputStream inputStream = new ByteArrayInputStream(new byte[10]);
+        assertThat(controller.throttle(inputStream, BUCKET_A)).isSameAs(inputStream);
+        assertThat(controller.getRejectedRequests()).isEqualTo(0);
+        assertThat(controller.getThrottledMillis()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBandwidth()
+            throws IOException
+    {
+        // 1MB per second, of which 100ms worth can be used at once after being idle
+        LimitStreamController controller = new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()
+                .setBucketBandwidth(DataSize.of(1, MEGABYTE))
+                .setBurst(new Duration(100, MILLISECONDS)));
+
+        assertThat(transfer(controller, BUCKET_A, 100_000)).isEqualTo(100_000);
+        assertThat(controller.getThrottledMillis()).isEqualTo(0);
+
+        // the next 200KB of the bucket take about 200ms
+        long start = System.nanoTime();
+        assertThat(transfer(controller, BUCKET_A, 200_000)).isEqualTo(200_000);
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(100);
+        long throttledMillis = controller.getThrottledMillis();
+        assertThat(throttledMillis).isGreaterThanOrEqualTo(100);
+
+        // another bucket is not slowed down
+        assertThat(transfer(controller, BUCKET_B, 100_000)).isEqualTo(100_000);
+        assertThat(controller.getThrottledMillis()).isEqualTo(throttledMillis);
+
+        // wrapped streams are throttled as they are read or written
+        start = System.nanoTime();
+        try (InputStream inputStream = controller.wrap(new ByteArrayInputStream(new byte[200_000]), BUCKET_B)) {
+            assertThat(inputStream.readAllBytes()).hasSize(200_000);
+        }
+        try (OutputStream outputStream = controller.wrap(OutputStream.nullOutputStream(), BUCKET_B)) {
+            outputStream.write(new byte[100_000]);
+        }
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(150);
+        assertThat(controller.getThrottledMillis()).isGreaterThan(throttledMillis);
+    }
+
+    @Test
+    public void testSingleByteIo()
+            throws IOException
+    {
+        LimitStreamController controller = new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()
+                .setBucketBandwidth(DataSize.of(1, MEGABYTE))
+                .setBurst(new Duration(100, MILLISECONDS)));
+
+        // single bytes are charged in batches, the next 200KB of the bucket take about 200ms
+        long start = System.nanoTime();
+        try (InputStream inputStream = controller.wrap(new ByteArrayInputStream(new byte[300_000]), BUCKET_A)) {
+            int read = 0;
+            while (inputStream.read() >= 0) {
+                read++;
+            }
+            assertThat(read).isEqualTo(300_000);
+        }
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(100);
+        assertThat(controller.getThrottledMillis()).isGreaterThanOrEqualTo(100);
+
+        // bytes short of a batch are charged when the stream is closed, here about 500ms over the 1KB burst
+        controller = new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()
+                .setBucketBandwidth(DataSize.of(1, KILOBYTE))
+                .setBurst(new Duration(1, SECONDS)));
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream outputStream = controller.wrap(written, BUCKET_A);
+        for (int i = 0; i < 1_500; ++i) {
+            outputStream.write(i);
+        }
+        assertThat(written.size()).isEqualTo(1_500);
+        assertThat(controller.getThrottledMillis()).isEqualTo(0);
+
+        start = System.nanoTime();
+        outputStream.close();
+        assertThat(NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(400);
+        assertThat(controller.getThrottledMillis()).isGreaterThanOrEqualTo(400);
+    }
+
+    @Test
+    public void testQuota()
+    {
+        LimitStreamController controller = new LimitStreamController(new TrinoAwsProxyConfig().setMaxPayloadSize(DataSize.of(10, KILOBYTE)), new RateLimitConfig());
+
+        assertThatThrownBy(() -> transfer(controller, BUCKET_A, 20 * 1024))
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(413));
+        assertThatThrownBy(() -> controller.wrap(new ByteArrayInputStream(new byte[20 * 1024]), BUCKET_A).readAllBytes())
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(413));
+    }
+
+    private static long transfer(LimitStreamController controller, RateLimitScope scope, int bytes)
+            throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes);
+        long transferred = controller.transfer(new ByteArrayInputStream(new byte[bytes]), outputStream, scope);
+        assertThat(outputStream.size()).isEqualTo(transferred);
+        return transferred;
+    }
+
+    private static void assertRejected(Runnable acquire)
+    {
+        assertThatThrownBy(acquire::run)
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.trino.aws.proxy.server.rest.ProxyClientRequestStats.EndpointStats;
+import org.junit.jupiter.api.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static io.trino.aws.proxy.server.rest.ProxyClientRequestStats.OTHER_ENDPOINTS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.weakref.jmx.ObjectNames.generatedNameOf;
+
+public class TestProxyClientRequestStats
+{
+    @Test
+    public void testEndpoints()
+    {
+        ProxyClientRequestStats stats = new ProxyClientRequestStats(Optional.empty());
+
+        EndpointStats endpoint = stats.endpoint(URI.create("https://s3.amazonaws.com/bucket/key"));
+        assertThat(stats.endpoint(URI.create("https://s3.amazonaws.com:443/other/key"))).isSameAs(endpoint);
+        assertThat(stats.endpoint(URI.create("http://s3.amazonaws.com/bucket/key"))).isNotSameAs(endpoint);
+        assertThat(stats.getEndpointCount()).isEqualTo(2);
+
+        long startNanos = endpoint.requestStarted();
+        assertThat(stats.getActiveRequests()).isEqualTo(1);
+        assertThat(endpoint.getActiveRequests()).isEqualTo(1);
+        endpoint.requestFinished(startNanos, true);
+
+        assertThat(stats.getActiveRequests()).isEqualTo(0);
+        assertThat(stats.getTotalRequests()).isEqualTo(1);
+        assertThat(stats.getFailedRequests()).isEqualTo(1);
+        assertThat(endpoint.getTotalRequests()).isEqualTo(1);
+        assertThat(endpoint.getFailedRequests()).isEqualTo(1);
+        assertThat(stats.endpoint(URI.create("http://s3.amazonaws.com/bucket/key")).getTotalRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void testMaxEndpoints()
+    {
+        ProxyClientRequestStats stats = new ProxyClientRequestStats(Optional.empty(), 2);
+
+        EndpointStats first = stats.endpoint(URI.create("https://one.s3.amazonaws.com"));
+        EndpointStats second = stats.endpoint(URI.create("https://two.s3.amazonaws.com"));
+        EndpointStats other = stats.endpoint(URI.create("https://three.s3.amazonaws.com"));
+        assertThat(stats.endpoint(URI.create("https://four.s3.amazonaws.com"))).isSameAs(other);
+        assertThat(stats.endpoint(URI.create("https://one.s3.amazonaws.com"))).isSameAs(first);
+        assertThat(stats.getEndpointCount()).isEqualTo(2);
+
+        first.requestStarted();
+        second.requestStarted();
+        other.requestStarted();
+        other.requestStarted();
+        assertThat(stats.getActiveRequests()).isEqualTo(4);
+        assertThat(stats.getTotalRequests()).isEqualTo(4);
+        assertThat(other.getTotalRequests()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEndpointMBeans()
+            throws JMException
+    {
+        TestingMBeanServer mbeanServer = new TestingMBeanServer();
+        ProxyClientRequestStats stats = new ProxyClientRequestStats(Optional.of(new MBeanExporter(mbeanServer)), 1);
+
+        ObjectName endpointName = endpointName("https://s3.amazonaws.com:443");
+        ObjectName otherName = endpointName(OTHER_ENDPOINTS);
+        assertThat(mbeanServer.isRegistered(otherName)).isTrue();
+        assertThat(mbeanServer.isRegistered(endpointName)).isFalse();
+
+        stats.endpoint(URI.create("https://s3.amazonaws.com/bucket/key")).requestStarted();
+        stats.endpoint(URI.create("https://other.s3.amazonaws.com/bucket/key")).requestStarted();
+        assertThat(mbeanServer.getAttribute(endpointName, "TotalRequests")).isEqualTo(1L);
+        assertThat(mbeanServer.getAttribute(otherName, "TotalRequests")).isEqualTo(1L);
+        assertThat(mbeanServer.isRegistered(endpointName("https://other.s3.amazonaws.com:443"))).isFalse();
+
+        stats.shutdown();
+        assertThat(mbeanServer.isRegistered(endpointName)).isFalse();
+        assertThat(mbeanServer.isRegistered(otherName)).isFalse();
+    }
+
+    private static ObjectName endpointName(String endpoint)
+            throws JMException
+    {
+        return new ObjectName(generatedNameOf(ProxyClientRequestStats.class, endpoint));
+    }
+}
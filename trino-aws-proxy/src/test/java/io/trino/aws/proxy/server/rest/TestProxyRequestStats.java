@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static io.trino.aws.proxy.server.rest.ProxyRequestStats.OTHER_BUCKETS;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.STS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class TestProxyRequestStats
+{
+    @Test
+    public void testRequests()
+    {
+        ProxyRequestStats stats = new ProxyRequestStats();
+
+        stats.requestCompleted(S3, 200);
+        stats.requestCompleted(S3, 404);
+        stats.requestCompleted(STS, 403);
+        stats.requestCompleted(S3, 404);
+
+        assertThat(stats.getRequestsPerServiceType()).containsExactly(entry("s3", 3L), entry("sts", 1L));
+        assertThat(stats.getErrorsPerStatus()).containsExactly(entry("403", 1L), entry("404", 2L));
+    }
+
+    @Test
+    public void testBytes()
+    {
+        ProxyRequestStats stats = new ProxyRequestStats();
+
+        stats.bytesIn("one", 100);
+        stats.bytesIn("two", 10);
+        stats.bytesIn("one", 1);
+
+        long startNanos = stats.transferStarted();
+        assertThat(stats.getActiveTransfers()).isEqualTo(1);
+        stats.transferFinished(startNanos, "two", 1000);
+        assertThat(stats.getActiveTransfers()).isEqualTo(0);
+        assertThat(stats.getRemoteTransfer().getCount()).isEqualTo(1);
+
+        assertThat(stats.getBytesInPerBucket()).containsExactly(entry("one", 101L), entry("two", 10L));
+        assertThat(stats.getBytesOutPerBucket()).containsExactly(entry("two", 1000L));
+        assertThat(stats.getBytesIn()).isEqualTo(111);
+        assertThat(stats.getBytesOut()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testMaxBuckets()
+    {
+        ProxyRequestStats stats = new ProxyRequestStats(2);
+
+        stats.bytesIn("one", 1);
+        stats.bytesIn("two", 2);
+        stats.bytesIn("three", 3);
+        stats.bytesIn("four", 4);
+        stats.bytesIn("one", 10);
+        stats.transferFinished(stats.transferStarted(), "five", 5);
+
+        // buckets past the limit are counted together, the totals still include them
+        assertThat(stats.getBytesInPerBucket()).containsExactly(entry(OTHER_BUCKETS, 7L), entry("one", 11L), entry("two", 2L));
+        assertThat(stats.getBytesOutPerBucket()).containsExactly(entry("five", 5L));
+        assertThat(stats.getBytesIn()).isEqualTo(20);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRateLimitConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RateLimitConfig.class)
+                .setAccessKeyBandwidth(null)
+                .setAccessKeyRequestRate(null)
+                .setIdentityBandwidth(null)
+                .setIdentityRequestRate(null)
+                .setBucketBandwidth(null)
+                .setBucketRequestRate(null)
+                .setBurst(new Duration(1, SECONDS))
+                .setMaxTrackedKeys(10_000));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("aws.proxy.rate-limit.access-key.bandwidth", "100MB")
+                .put("aws.proxy.rate-limit.access-key.requests-per-second", "500")
+                .put("aws.proxy.rate-limit.identity.bandwidth", "200MB")
+                .put("aws.proxy.rate-limit.identity.requests-per-second", "1000")
+                .put("aws.proxy.rate-limit.bucket.bandwidth", "1GB")
+                .put("aws.proxy.rate-limit.bucket.requests-per-second", "2.5")
+                .put("aws.proxy.rate-limit.burst", "250ms")
+                .put("aws.proxy.rate-limit.max-tracked-keys", "100")
+                .buildOrThrow();
+
+        RateLimitConfig expected = new RateLimitConfig()
+                .setAccessKeyBandwidth(DataSize.of(100, DataSize.Unit.MEGABYTE))
+                .setAccessKeyRequestRate(500.0)
+                .setIdentityBandwidth(DataSize.of(200, DataSize.Unit.MEGABYTE))
+                .setIdentityRequestRate(1000.0)
+                .setBucketBandwidth(DataSize.of(1, DataSize.Unit.GIGABYTE))
+                .setBucketRequestRate(2.5)
+                .setBurst(new Duration(250, MILLISECONDS))
+                .setMaxTrackedKeys(100);
+        assertFullMapping(properties, expected);
+    }
+
+    @Test
+    public void testRatesValid()
+    {
+        assertThat(new RateLimitConfig().isRatesValid()).isTrue();
+        assertThat(new RateLimitConfig().setBucketRequestRate(0.0).isRatesValid()).isFalse();
+        assertThat(new RateLimitConfig().setIdentityBandwidth(DataSize.ofBytes(0)).isRatesValid()).isFalse();
+    }
+}
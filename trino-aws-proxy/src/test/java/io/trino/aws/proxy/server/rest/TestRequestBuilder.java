@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.hash.Hashing;
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.RequestHeadersBuilder.InternalRequestHeaders;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+
+import static io.trino.aws.proxy.server.rest.RequestBuilder.buildRequestContent;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestBuilder
+{
+    @TempDir
+    private Path spoolDirectory;
+
+    @Test
+    public void testStandardBytesBeforeStreaming()
+            throws IOException
+    {
+        byte[] content = randomBytes(2048);
+        RequestContent requestContent = streamedContent(content, content.length);
+
+        // the bytes are spooled, and the stream then reads the spooled copy
+        assertThat(requestContent.standardBytes()).hasValue(content);
+        assertThat(requestContent.inputStream().orElseThrow().readAllBytes()).isEqualTo(content);
+        assertThat(requestContent.standardBytes()).hasValue(content);
+    }
+
+    @Test
+    public void testStandardBytesAfterStreaming()
+            throws IOException
+    {
+        byte[] content = randomBytes(2048);
+        RequestContent requestContent = streamedContent(content, content.length);
+
+        assertThat(requestContent.contentLength()).hasValue(content.length);
+        assertThat(requestContent.inputStream().orElseThrow().readAllBytes()).isEqualTo(content);
+        assertThatThrownBy(requestContent::standardBytes)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testStreamedPayloadHashMismatch()
+    {
+        byte[] content = randomBytes(2048);
+        RequestContent requestContent = streamedContent(content, content.length);
+
+        assertThatThrownBy(() -> hashChecked(requestContent, Hashing.sha256().hashBytes(randomBytes(1024)).toString()).readAllBytes())
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(401));
+    }
+
+    @Test
+    public void testStreamedContentLengthMismatch()
+    {
+        byte[] content = randomBytes(2048);
+        String contentHash = Hashing.sha256().hashBytes(content).toString();
+
+        // the body is longer than Content-Length
+        RequestContent longerContent = streamedContent(content, content.length - 1);
+        assertThatThrownBy(() -> hashChecked(longerContent, contentHash).readAllBytes())
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(400));
+
+        // the body is shorter than Content-Length, even though it matches the payload hash
+        RequestContent shorterContent = streamedContent(content, content.length + 1);
+        assertThatThrownBy(() -> hashChecked(shorterContent, contentHash).readAllBytes())
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(400));
+    }
+
+    @Test
+    public void testSpooledContentReleasedOnClose()
+            throws IOException
+    {
+        byte[] content = randomBytes(2048);
+        RequestContentSpooler spooler = spooler();
+        RequestContent requestContent = buildRequestContent(new ByteArrayInputStream(content), requestHeaders(content.length), false, spooler);
+
+        assertThat(requestContent.inputStream().orElseThrow().readAllBytes()).isEqualTo(content);
+        assertThat(spooler.spooledBytes()).isEqualTo(content.length);
+
+        // the spooled size is released when the request completes, not when the content is collected
+        RequestBuilder.closeRequestContent(requestContent);
+        assertThat(spooler.spooledBytes()).isEqualTo(0);
+        assertThatThrownBy(requestContent::inputStream)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private RequestContent streamedContent(byte[] content, int contentLength)
+    {
+        return buildRequestContent(new ByteArrayInputStream(content), requestHeaders(contentLength), true, spooler());
+    }
+
+    private RequestContentSpooler spooler()
+    {
+        return new RequestContentSpooler(new RequestSpoolConfig()
+                .setMemoryThreshold(DataSize.of(1, DataSize.Unit.KILOBYTE))
+                .setSpoolDirectory(spoolDirectory.toFile()));
+    }
+
+    private static InternalRequestHeaders requestHeaders(int contentLength)
+    {
+        return RequestHeadersBuilder.parseHeaders(ImmutableMultiMap.builder(false)
+                .putOrReplaceSingle("Content-Length", Integer.toString(contentLength))
+                .build());
+    }
+
+    // the way TrinoS3ProxyClient checks a streamed payload while it is forwarded
+    private static InputStream hashChecked(RequestContent requestContent, String contentHash)
+    {
+        return new HashCheckInputStream(requestContent.inputStream().orElseThrow(), contentHash, requestContent.contentLength());
+    }
+
+    private static byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
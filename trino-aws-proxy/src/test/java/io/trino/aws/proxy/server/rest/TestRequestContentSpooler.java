@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import io.airlift.units.DataSize;
+import io.trino.aws.proxy.server.rest.RequestContentSpooler.SpooledContent;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestContentSpooler
+{
+    @TempDir
+    private Path spoolDirectory;
+
+    @Test
+    public void testSmallContentStaysInMemory()
+            throws IOException
+    {
+        RequestContentSpooler spooler = spooler(DataSize.of(1, DataSize.Unit.KILOBYTE));
+        byte[] content = randomBytes(1024);
+
+        SpooledContent spooledContent = spooler.spool(new ByteArrayInputStream(content));
+
+        assertThat(spooledContent.length()).isEqualTo(content.length);
+        assertThat(spooledContent.bytes()).isEqualTo(content);
+        assertThat(spooledContent.inputStream().readAllBytes()).isEqualTo(content);
+        assertThat(spoolDirectory).isEmptyDirectory();
+    }
+
+    @Test
+    public void testLargeContentIsSpilled()
+            throws IOException
+    {
+        RequestContentSpooler spooler = spooler(DataSize.of(1, DataSize.Unit.KILOBYTE));
+        byte[] content = randomBytes(1025);
+
+        SpooledContent spooledContent = spooler.spool(new ByteArrayInputStream(content));
+
+        assertThat(spooledContent.length()).isEqualTo(content.length);
+        assertThat(spooledContent.bytes()).isEqualTo(content);
+        // content can be re-read any number of times
+        assertThat(spooledContent.inputStream().readAllBytes()).isEqualTo(content);
+        assertThat(spooledContent.inputStream().readAllBytes()).isEqualTo(content);
+        // spool file is removed as soon as it is mapped
+        assertThat(spoolDirectory).isEmptyDirectory();
+    }
+
+    @Test
+    public void testEmptyContent()
+            throws IOException
+    {
+        SpooledContent spooledContent = spooler(DataSize.of(0, DataSize.Unit.BYTE)).spool(new ByteArrayInputStream(new byte[0]));
+
+        assertThat(spooledContent.length()).isEqualTo(0);
+        assertThat(spooledContent.inputStream().read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testMaxSpoolSize()
+            throws IOException
+    {
+        RequestContentSpooler spooler = spooler(DataSize.of(1, DataSize.Unit.KILOBYTE), DataSize.of(3, DataSize.Unit.KILOBYTE));
+        byte[] content = randomBytes(2048);
+
+        // the spilled size is counted for as long as the content is in use
+        SpooledContent spooledContent = spooler.spool(new ByteArrayInputStream(content));
+        assertThat(spooler.spooledBytes()).isEqualTo(content.length);
+
+        assertThatThrownBy(() -> spooler.spool(new ByteArrayInputStream(content)))
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+        // a rejected request does not keep what it had reserved
+        assertThat(spooler.spooledBytes()).isEqualTo(content.length);
+        assertThat(spoolDirectory).isEmptyDirectory();
+
+        // content that stays in memory is not counted
+        assertThat(spooler.spool(new ByteArrayInputStream(randomBytes(1024))).length()).isEqualTo(1024);
+        assertThat(spooler.spooledBytes()).isEqualTo(content.length);
+        assertThat(spooledContent.bytes()).isEqualTo(content);
+
+        // closing the content releases its size once
+        spooledContent.close();
+        spooledContent.close();
+        assertThat(spooler.spooledBytes()).isEqualTo(0);
+        try (SpooledContent nextContent = spooler.spool(new ByteArrayInputStream(content))) {
+            assertThat(spooler.spooledBytes()).isEqualTo(content.length);
+            assertThat(nextContent.inputStream().readAllBytes()).isEqualTo(content);
+        }
+        assertThat(spooler.spooledBytes()).isEqualTo(0);
+    }
+
+    private RequestContentSpooler spooler(DataSize memoryThreshold)
+    {
+        return spooler(memoryThreshold, new RequestSpoolConfig().getMaxSpoolSize());
+    }
+
+    private RequestContentSpooler spooler(DataSize memoryThreshold, DataSize maxSpoolSize)
+    {
+        return new RequestContentSpooler(new RequestSpoolConfig()
+                .setMemoryThreshold(memoryThreshold)
+                .setSpoolDirectory(spoolDirectory.toFile())
+                .setMaxSpoolSize(maxSpoolSize));
+    }
+
+    private static byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.EntryKey;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.RequestOutcome;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.RequestSummary;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_END;
+import static io.trino.aws.proxy.server.rest.RequestLoggerController.EventType.REQUEST_START;
+import static io.trino.aws.proxy.spi.signing.SigningServiceType.S3;
+import static java.util.Comparator.comparing;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestLogStore
+{
+    private static final Instant BASE_TIME = Instant.parse("2024-06-01T00:00:00Z");
+
+    @TempDir
+    private Path storeDirectory;
+
+    @Test
+    public void testRoundTrip()
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        SaveEntry start = entry(1, BASE_TIME, false);
+        SaveEntry end = entry(1, BASE_TIME, true);
+
+        RequestLogStore.Snapshot snapshot = store.append(List.of(start, end));
+
+        List<SaveEntry> entries = readAll(store, snapshot);
+        assertThat(entries).extracting(SaveEntry::entries).containsExactly(start.entries(), end.entries());
+        assertThat(entries.getLast().serviceType()).isEqualTo(S3);
+        store.close();
+    }
+
+    @Test
+    public void testReadFromStartTime()
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        RequestLogStore.Snapshot snapshot = store.append(IntStream.range(0, 1000)
+                .mapToObj(index -> entry(index, BASE_TIME.plusSeconds(index), false))
+                .collect(toImmutableList()));
+
+        assertThat(readFrom(store, snapshot, BASE_TIME.plusSeconds(990), _ -> true))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(990L, 991L, 992L, 993L, 994L, 995L, 996L, 997L, 998L, 999L);
+        assertThat(readFrom(store, snapshot, BASE_TIME.plusSeconds(1000), _ -> true)).isEmpty();
+        assertThat(readFrom(store, snapshot, BASE_TIME, entry -> entry.request().requestNumber() < 3))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 1L, 2L);
+
+        // entries after the snapshot are not visible through it
+        store.append(List.of(entry(1000, BASE_TIME.plusSeconds(1000), false)));
+        assertThat(readFrom(store, snapshot, BASE_TIME.plusSeconds(1000), _ -> true)).isEmpty();
+        assertThat(readFrom(store, store.snapshot(), BASE_TIME.plusSeconds(1000), _ -> true)).hasSize(1);
+        store.close();
+    }
+
+    @Test
+    public void testReadRange()
+    {
+        // every request ends 100 requests after it started, so entries are not appended in key order
+        List<SaveEntry> appended = new ArrayList<>();
+        for (int index = 0; index < 3000; ++index) {
+            appended.add(entry(index, BASE_TIME.plusSeconds(index), false));
+            if (index >= 100) {
+                appended.add(entry(index - 100, BASE_TIME.plusSeconds(index - 100), true));
+            }
+        }
+        RequestLogStore store = new RequestLogStore(storeDirectory, 16 * 1024, 100);
+        RequestLogStore.Snapshot snapshot = store.append(appended);
+        List<SaveEntry> sorted = appended.stream().sorted(comparing(SaveEntry::key)).collect(toImmutableList());
+
+        for (int from : List.of(0, 1, 777, 1500, 2899, 2950, 2999)) {
+            for (int to : List.of(from, from + 1, from + 150, 2999)) {
+                EntryKey low = sorted.get(Math.min(from * 2, sorted.size() - 1)).key();
+                EntryKey high = sorted.get(Math.min(to * 2 + 1, sorted.size() - 1)).key();
+                List<SaveEntry> expected = sorted.stream()
+                        .filter(entry -> (entry.key().compareTo(low) >= 0) && (entry.key().compareTo(high) <= 0))
+                        .collect(toImmutableList());
+                for (int limit : List.of(1, 10, 300, Integer.MAX_VALUE)) {
+                    assertThat(store.read(snapshot, low, high, true, limit, _ -> true))
+                            .extracting(SaveEntry::key)
+                            .containsExactlyElementsOf(expected.stream().limit(limit).map(SaveEntry::key).collect(toImmutableList()));
+                    assertThat(store.read(snapshot, low, high, false, limit, _ -> true))
+                            .extracting(SaveEntry::key)
+                            .containsExactlyElementsOf(expected.reversed().stream().limit(limit).map(SaveEntry::key).collect(toImmutableList()));
+                }
+            }
+        }
+        store.close();
+    }
+
+    @Test
+    public void testReadStopsAtLimit()
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 16 * 1024 * 1024, 4);
+        RequestLogStore.Snapshot snapshot = store.append(IntStream.range(0, 10_000)
+                .mapToObj(index -> entry(index, BASE_TIME.plusSeconds(index), false))
+                .collect(toImmutableList()));
+
+        // only the block with the entries of the page is read, wherever it is in the store
+        long blocksRead = store.blocksRead();
+        assertThat(store.read(snapshot, EntryKey.FIRST, EntryKey.LAST, true, 10, _ -> true))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(store.blocksRead() - blocksRead).isEqualTo(1);
+
+        blocksRead = store.blocksRead();
+        assertThat(store.read(snapshot, EntryKey.FIRST, EntryKey.LAST, false, 3, _ -> true))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(9999L, 9998L, 9997L);
+        assertThat(store.blocksRead() - blocksRead).isEqualTo(1);
+
+        blocksRead = store.blocksRead();
+        assertThat(store.read(snapshot, EntryKey.FIRST, keyAt(BASE_TIME.plusSeconds(5000)), false, 2, _ -> true))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(4999L, 4998L);
+        assertThat(store.blocksRead() - blocksRead).isEqualTo(1);
+
+        // the end of the range stops the read too
+        blocksRead = store.blocksRead();
+        assertThat(store.read(snapshot, keyAt(BASE_TIME.plusSeconds(5000)), keyAt(BASE_TIME.plusSeconds(5003)), true, Integer.MAX_VALUE, _ -> true))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(5000L, 5001L, 5002L);
+        assertThat(store.blocksRead() - blocksRead).isEqualTo(1);
+        store.close();
+    }
+
+    @Test
+    public void testRotation()
+            throws IOException
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 4096, 3);
+        for (int batch = 0; batch < 20; ++batch) {
+            int first = batch * 50;
+            store.append(IntStream.range(first, first + 50)
+                    .mapToObj(index -> entry(index, BASE_TIME.plusSeconds(index), true))
+                    .collect(toImmutableList()));
+        }
+
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            assertThat(files).hasSize(3);
+        }
+        List<SaveEntry> entries = readAll(store, store.snapshot());
+        // only the oldest entries were dropped
+        assertThat(entries).isNotEmpty();
+        assertThat(entries.getLast().request().requestNumber()).isEqualTo(999L);
+        assertThat(entries)
+                .extracting(entry -> entry.request().requestNumber())
+                .isSorted()
+                .doesNotHaveDuplicates();
+        store.close();
+    }
+
+    @Test
+    public void testRecovery()
+            throws IOException
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(0, BASE_TIME, false), entry(0, BASE_TIME, true)));
+        store.close();
+
+        // simulate a write that was cut short
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            Files.write(files.findFirst().orElseThrow(), new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+        }
+
+        store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(1, BASE_TIME.plusSeconds(1), false)));
+        assertThat(readAll(store, store.snapshot()))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 0L, 1L);
+        store.close();
+    }
+
+    @Test
+    public void testReadsRecordsWithoutStageTimings()
+            throws IOException
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.close();
+
+        // version 1 records were written before the stage timings were saved
+        Path segment;
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        SaveEntry end = entry(0, BASE_TIME, true);
+        Files.write(segment, RequestLogStore.encode(end, (byte) 1), StandardOpenOption.APPEND);
+
+        store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(1, BASE_TIME.plusSeconds(1), true)));
+        List<SaveEntry> entries = readAll(store, store.snapshot());
+        assertThat(entries)
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 1L);
+        RequestOutcome outcome = entries.getFirst().outcome().orElseThrow();
+        assertThat(outcome.properties()).isEqualTo(ImmutableMap.of("response.status", "200"));
+        assertThat(outcome.stageNanos()).isEmpty();
+        assertThat(entries.getLast().outcome().orElseThrow().stageNanos()).isEqualTo(ImmutableMap.of("security.check", 1234L));
+        store.close();
+    }
+
+    @Test
+    public void testRecoveryKeepsUnreadableRecords()
+            throws IOException
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(0, BASE_TIME, false), entry(0, BASE_TIME, true)));
+        store.close();
+
+        // a complete record of an unknown version, e.g. written by a newer version of the proxy
+        Path segment;
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[] {0, 0, 0, 5, 99, 1, 2, 3, 4}, StandardOpenOption.APPEND);
+        long segmentSize = Files.size(segment);
+
+        store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(1, BASE_TIME.plusSeconds(1), false)));
+        assertThat(readAll(store, store.snapshot()))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 0L, 1L);
+        assertThat(Files.size(segment)).isEqualTo(segmentSize);
+        store.close();
+    }
+
+    @Test
+    public void testSkipsForeignSegments()
+            throws IOException
+    {
+        Path foreign = storeDirectory.resolve("requests-0000000000000000.log");
+        Files.writeString(foreign, "not a request log segment");
+
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(0, BASE_TIME, false)));
+        assertThat(readAll(store, store.snapshot()))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L);
+        assertThat(Files.readString(foreign)).isEqualTo("not a request log segment");
+        store.close();
+    }
+
+    @Test
+    public void testFailedAppend()
+    {
+        RequestLogStore store = new RequestLogStore(storeDirectory, 1024 * 1024, 4);
+        store.append(List.of(entry(0, BASE_TIME, false)));
+
+        RequestSummary request = new RequestSummary(UUID.randomUUID(), 2, BASE_TIME.plusSeconds(2), S3, URI.create("http://dummy.com/bucket/key"), "GET", false);
+        Object unwritable = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException("unwritable");
+            }
+        };
+        SaveEntry failing = new SaveEntry(request, REQUEST_END, "RequestEnd", Optional.of(new RequestOutcome(12, ImmutableMap.of("response.status", unwritable), ImmutableMap.of(), ImmutableMap.of())));
+        assertThatThrownBy(() -> store.append(List.of(entry(1, BASE_TIME.plusSeconds(1), false), failing)))
+                .hasMessage("unwritable");
+
+        // none of the failed batch is indexed, so the entries written after it are read back correctly
+        store.append(List.of(entry(3, BASE_TIME.plusSeconds(3), false), entry(3, BASE_TIME.plusSeconds(3), true)));
+        assertThat(readAll(store, store.snapshot()))
+                .extracting(entry -> entry.request().requestNumber())
+                .containsExactly(0L, 3L, 3L);
+        store.close();
+    }
+
+    private static List<SaveEntry> readAll(RequestLogStore store, RequestLogStore.Snapshot snapshot)
+    {
+        return store.read(snapshot, EntryKey.FIRST, EntryKey.LAST, true, Integer.MAX_VALUE, _ -> true);
+    }
+
+    private static List<SaveEntry> readFrom(RequestLogStore store, RequestLogStore.Snapshot snapshot, Instant startTime, Predicate<SaveEntry> predicate)
+    {
+        return store.read(snapshot, keyAt(startTime), EntryKey.LAST, true, Integer.MAX_VALUE, predicate);
+    }
+
+    private static EntryKey keyAt(Instant timestamp)
+    {
+        return new EntryKey(timestamp.toEpochMilli(), Long.MIN_VALUE, REQUEST_START);
+    }
+
+    private static SaveEntry entry(long requestNumber, Instant timestamp, boolean end)
+    {
+        RequestSummary request = new RequestSummary(UUID.randomUUID(), requestNumber, timestamp, S3, URI.create("http://dummy.com/bucket/key"), "GET", false);
+        if (end) {
+            RequestOutcome outcome = new RequestOutcome(12, ImmutableMap.of("response.status", 200), ImmutableMap.of("exception.message", "null"), ImmutableMap.of("security.check", 1234L));
+            return new SaveEntry(request, REQUEST_END, "RequestEnd", Optional.of(outcome));
+        }
+        return new SaveEntry(request, REQUEST_START, "RequestStart", Optional.empty());
+    }
+}
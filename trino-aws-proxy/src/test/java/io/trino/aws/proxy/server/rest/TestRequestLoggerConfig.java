@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestRequestLoggerConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RequestLoggerConfig.class)
+                .setRequestLoggerSavedQty(10000)
+                .setStoreDirectory(null)
+                .setStoreSegmentSize(DataSize.of(64, DataSize.Unit.MEGABYTE))
+                .setStoreMaxSegments(16)
+                .setStoreFlushInterval(new Duration(1, SECONDS)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.of(
+                "aws.proxy.request.logger.saved-qty", "500",
+                "aws.proxy.request.logger.store.directory", "/var/log/proxy",
+                "aws.proxy.request.logger.store.segment-size", "8MB",
+                "aws.proxy.request.logger.store.max-segments", "100",
+                "aws.proxy.request.logger.store.flush-interval", "250ms");
+
+        RequestLoggerConfig expected = new RequestLoggerConfig()
+                .setRequestLoggerSavedQty(500)
+                .setStoreDirectory(new File("/var/log/proxy"))
+                .setStoreSegmentSize(DataSize.of(8, DataSize.Unit.MEGABYTE))
+                .setStoreMaxSegments(100)
+                .setStoreFlushInterval(new Duration(250, MILLISECONDS));
+        assertFullMapping(properties, expected);
+    }
+}
@@ -14,6 +14,8 @@
 package io.trino.aws.proxy.server.rest;
 
 import com.google.common.collect.ImmutableSet;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.EntryKey;
+import io.trino.aws.proxy.server.rest.RequestLoggerController.LogQuery;
 import io.trino.aws.proxy.server.rest.RequestLoggerController.SaveEntry;
 import io.trino.aws.proxy.spi.rest.Request;
 import io.trino.aws.proxy.spi.rest.RequestContent;
@@ -21,15 +23,22 @@ import io.trino.aws.proxy.spi.rest.RequestHeaders;
 import io.trino.aws.proxy.spi.signing.RequestAuthorization;
 import io.trino.aws.proxy.spi.signing.SigningServiceType;
 import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.IntStream;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestRequestLoggerController
@@ -82,6 +91,124 @@ public class TestRequestLoggerController
                 .containsExactly("{index=5}", "{index=6}", "{index=7}", "{index=8}", "{index=9}");
     }
 
+    @Test
+    public void testLoggedValues()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        List<String> mutableValue = new ArrayList<>(List.of("a"));
+        try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+            session.logProperty("mutable", mutableValue);
+            session.logProperty("missing", null);
+            session.logException(new WebApplicationException(NOT_FOUND));
+            session.logTiming("security.check", 1_500_000);
+            session.logTiming("security.check", 500_000);
+            session.logTiming("remote.ttfb", 3_000);
+            mutableValue.add("b");
+        }
+
+        SaveEntry endEntry = controller.savedEntries(false, _ -> true).getFirst();
+        assertThat(endEntry.entries())
+                .containsEntry("request.properties", "{mutable=[a], missing=null}")
+                .containsEntry("request.errors", "{webException.status=404, webException.message=HTTP 404 Not Found}")
+                .containsEntry("request.stages.us", "{security.check=2000, remote.ttfb=3}")
+                .containsEntry("request.eventId", endEntry.entryId());
+    }
+
+    @Test
+    public void testQuery()
+    {
+        RequestLoggerController controller = new RequestLoggerController(new RequestLoggerConfig());
+        IntStream.range(0, 6).forEach(index -> {
+            try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), ((index % 2) == 0) ? SigningServiceType.S3 : SigningServiceType.STS)) {
+                session.logProperty("index", index);
+            }
+        });
+
+        LogQuery query = new LogQuery(true, Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(ImmutableSet.of("STS")), 3);
+        List<SaveEntry> firstPage = controller.savedEntries(query);
+        assertThat(firstPage)
+                .extracting(saveEntry -> saveEntry.entries().get("request.properties"))
+                .containsExactly(null, "{index=1}", null);
+        EntryKey cursor = firstPage.getLast().key();
+        assertThat(EntryKey.fromEventId(cursor.eventId())).isEqualTo(cursor);
+
+        // entries that are saved later don't shift a cursor
+        try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.STS)) {
+            session.logProperty("index", 6);
+        }
+        assertThat(controller.savedEntries(query.withPosition(true, Optional.of(cursor), 3)))
+                .extracting(saveEntry -> saveEntry.entries().get("request.properties"))
+                .containsExactly(null, "{index=3}", null);
+        assertThat(controller.savedEntries(query.withPosition(false, Optional.of(cursor), 2)))
+                .extracting(saveEntry -> saveEntry.entries().get("request.properties"))
+                .containsExactly(null, "{index=1}");
+    }
+
+    @Test
+    public void testLogStore(@TempDir Path storeDirectory)
+    {
+        RequestLoggerConfig requestLoggerConfig = new RequestLoggerConfig()
+                .setRequestLoggerSavedQty(2)
+                .setStoreDirectory(storeDirectory.toFile());
+        RequestLoggerController controller = new RequestLoggerController(requestLoggerConfig);
+        IntStream.range(0, 3).forEach(index -> {
+            try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+                session.logProperty("index", index);
+            }
+            controller.flushStore();
+        });
+        // not written to the store yet
+        try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+            session.logProperty("index", 3);
+        }
+
+        // entries that are gone from the save queue are still read from the store
+        assertThat(controller.savedEntries(true, entry -> entry.entries().containsKey("request.properties")))
+                .extracting(saveEntry -> saveEntry.entries().get("request.properties"))
+                .containsExactly("{index=0}", "{index=1}", "{index=2}", "{index=3}");
+
+        controller.clearSavedEntries();
+        assertThat(controller.savedEntries(true, _ -> true)).isEmpty();
+        controller.stop();
+    }
+
+    @Test
+    public void testLogStorePaging(@TempDir Path storeDirectory)
+    {
+        RequestLoggerConfig requestLoggerConfig = new RequestLoggerConfig()
+                .setRequestLoggerSavedQty(4)
+                .setStoreDirectory(storeDirectory.toFile());
+        RequestLoggerController controller = new RequestLoggerController(requestLoggerConfig);
+        IntStream.range(0, 20).forEach(index -> {
+            try (RequestLoggingSession session = controller.newRequestSession(dummyRequest(), SigningServiceType.S3)) {
+                session.logProperty("index", index);
+            }
+            controller.flushStore();
+        });
+
+        // pages that are older than the save queue are read from the store, starting at their cursor
+        for (boolean ascending : List.of(true, false)) {
+            LogQuery query = new LogQuery(ascending, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 4);
+            List<String> properties = new ArrayList<>();
+            List<SaveEntry> page = controller.savedEntries(query);
+            while (true) {
+                page.stream()
+                        .limit(3)
+                        .map(saveEntry -> saveEntry.entries().get("request.properties"))
+                        .filter(Objects::nonNull)
+                        .forEach(properties::add);
+                if (page.size() < 4) {
+                    break;
+                }
+                page = controller.savedEntries(query.withPosition(ascending, Optional.of(page.getLast().key()), 4));
+            }
+
+            List<String> expected = IntStream.range(0, 20).mapToObj("{index=%s}"::formatted).collect(toImmutableList());
+            assertThat(properties).containsExactlyElementsOf(ascending ? expected : expected.reversed());
+        }
+        controller.stop();
+    }
+
     private static Request dummyRequest()
     {
         RequestAuthorization requestAuthorization = new RequestAuthorization("dummy", "us-east-1", "/", ImmutableSet.of(), "dummy", Optional.empty(), Optional.empty());
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+
+public class TestRequestSpoolConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(RequestSpoolConfig.class)
+                .setMemoryThreshold(DataSize.of(1, DataSize.Unit.MEGABYTE))
+                .setSpoolDirectory(new File(System.getProperty("java.io.tmpdir")))
+                .setMaxSpoolSize(DataSize.of(10, DataSize.Unit.GIGABYTE)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = ImmutableMap.of(
+                "aws.proxy.request.spool.memory-threshold", "64kB",
+                "aws.proxy.request.spool.directory", "/var/spool/proxy",
+                "aws.proxy.request.spool.max-size", "1GB");
+
+        RequestSpoolConfig expected = new RequestSpoolConfig()
+                .setMemoryThreshold(DataSize.of(64, DataSize.Unit.KILOBYTE))
+                .setSpoolDirectory(new File("/var/spool/proxy"))
+                .setMaxSpoolSize(DataSize.of(1, DataSize.Unit.GIGABYTE));
+        assertFullMapping(properties, expected);
+    }
+}
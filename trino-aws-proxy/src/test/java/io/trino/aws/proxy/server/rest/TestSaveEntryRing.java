@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSaveEntryRing
+{
+    @Test
+    public void testEviction()
+    {
+        SaveEntryRing<Integer> ring = new SaveEntryRing<>(3);
+        assertThat(ring.entriesFrom(0).entries()).isEmpty();
+
+        assertThat(IntStream.range(0, 5).mapToObj(ring::add).collect(toImmutableList()))
+                .containsExactly(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(0), Optional.of(1));
+        assertThat(ring.entriesFrom(0).entries()).containsExactly(2, 3, 4);
+    }
+
+    @Test
+    public void testEntriesFrom()
+    {
+        SaveEntryRing<Integer> ring = new SaveEntryRing<>(3);
+        IntStream.range(0, 5).forEach(ring::add);
+
+        SaveEntryRing.Range<Integer> range = ring.entriesFrom(1);
+        assertThat(range.entries()).containsExactly(2, 3, 4);
+        assertThat(range.evicted()).isEqualTo(1);
+        assertThat(range.endSequence()).isEqualTo(5);
+        assertThat(ring.nextSequence()).isEqualTo(5);
+
+        range = ring.entriesFrom(4);
+        assertThat(range.entries()).containsExactly(4);
+        assertThat(range.evicted()).isEqualTo(0);
+
+        ring.add(5);
+        assertThat(ring.entriesFrom(range.endSequence()).entries()).containsExactly(5);
+    }
+
+    @Test
+    public void testConcurrentWriters()
+            throws Exception
+    {
+        int writers = 8;
+        int entriesPerWriter = 10_000;
+        SaveEntryRing<Integer> ring = new SaveEntryRing<>(writers * entriesPerWriter);
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            List<Future<?>> futures = IntStream.range(0, writers)
+                    .mapToObj(writer -> executor.submit(() -> IntStream.range(0, entriesPerWriter).forEach(index -> ring.add((writer * entriesPerWriter) + index))))
+                    .collect(toImmutableList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(ring.entriesFrom(0).entries())
+                .hasSize(writers * entriesPerWriter)
+                .doesNotHaveDuplicates();
+    }
+}
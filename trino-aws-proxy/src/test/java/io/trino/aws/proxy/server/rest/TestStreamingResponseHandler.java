@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.testing.TestingResponse;
+import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import io.trino.aws.proxy.server.rest.LimitStreamController.RateLimitScope;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestStreamingResponseHandler
+{
+    private static final Request REQUEST = prepareGet().setUri(URI.create("http://localhost/bucket/key")).build();
+
+    @Test
+    public void testHandOffResponse()
+    {
+        List<Runnable> handOffs = new ArrayList<>();
+        List<Object> resumed = new CopyOnWriteArrayList<>();
+        ResponseHandler<Void, RuntimeException> responseHandler = responseHandler(resumed).handingOffTo(handOffs::add);
+
+        responseHandler.handle(REQUEST, new TestingResponse(HttpStatus.NOT_FOUND, ImmutableListMultimap.of("x-amz-request-id", "1234"), new byte[0]));
+
+        // nothing is written to the client from the calling thread
+        assertThat(resumed).isEmpty();
+        assertThat(handOffs).hasSize(1);
+
+        handOffs.getFirst().run();
+        assertThat(resumed).singleElement().isInstanceOfSatisfying(Response.class, response -> {
+            assertThat(response.getStatus()).isEqualTo(404);
+            assertThat(response.getHeaderString("x-amz-request-id")).isEqualTo("1234");
+        });
+    }
+
+    @Test
+    public void testHandOffException()
+    {
+        List<Runnable> handOffs = new ArrayList<>();
+        List<Object> resumed = new CopyOnWriteArrayList<>();
+        ResponseHandler<Void, RuntimeException> responseHandler = responseHandler(resumed).handingOffTo(handOffs::add);
+
+        responseHandler.handleException(REQUEST, new IOException("Connection refused"));
+
+        assertThat(resumed).isEmpty();
+        assertThat(handOffs).hasSize(1);
+
+        handOffs.getFirst().run();
+        assertThat(resumed).singleElement().isInstanceOfSatisfying(Response.class, response -> {
+            assertThat(response.getStatus()).isEqualTo(500);
+            assertThat(response.getStatusInfo().getReasonPhrase()).isEqualTo("Connection refused");
+        });
+    }
+
+    @Test
+    public void testHandOffRejected()
+    {
+        List<Object> resumed = new CopyOnWriteArrayList<>();
+        ResponseHandler<Void, RuntimeException> responseHandler = responseHandler(resumed).handingOffTo(_ -> {
+            throw new RejectedExecutionException("Shutting down");
+        });
+
+        // the client still gets a response when the executor is shut down
+        responseHandler.handle(REQUEST, new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[0]));
+        assertThat(resumed).singleElement().isInstanceOfSatisfying(Response.class, response -> {
+            assertThat(response.getStatus()).isEqualTo(500);
+            assertThat(response.getStatusInfo().getReasonPhrase()).isEqualTo("Shutting down");
+        });
+    }
+
+    @Test
+    public void testPresignedUrls()
+            throws Exception
+    {
+        URI presignedUrl = URI.create("http://remote/bucket/key?X-Amz-Signature=1234");
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            CountDownLatch presigning = new CountDownLatch(1);
+            Future<Map<String, URI>> presignedUrls = executorService.submit(() -> {
+                presigning.await();
+                return ImmutableMap.of("GET", presignedUrl);
+            });
+            List<Object> resumed = new CopyOnWriteArrayList<>();
+            StreamingResponseHandler responseHandler = responseHandler(resumed, presignedUrls, () -> {});
+
+            // the remote response arrives while the URLs are presigned, the handler waits for them
+            Future<?> handled = executorService.submit(() -> responseHandler.handle(REQUEST, new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[0])));
+            assertThat(resumed).isEmpty();
+            presigning.countDown();
+            handled.get(10, SECONDS);
+
+            assertThat(resumed).singleElement().isInstanceOfSatisfying(Response.class, response -> {
+                assertThat(response.getStatus()).isEqualTo(200);
+                assertThat(response.getHeaderString("X-Trino-Pre-Signed-Url-GET")).isEqualTo(presignedUrl.toString());
+            });
+        }
+    }
+
+    @Test
+    public void testPresigningFailure()
+            throws Exception
+    {
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            Callable<Map<String, URI>> presigning = () -> {
+                throw new WebApplicationException(FORBIDDEN);
+            };
+            Future<Map<String, URI>> presignedUrls = executorService.submit(presigning);
+            List<Object> resumed = new CopyOnWriteArrayList<>();
+            List<Throwable> loggedExceptions = new CopyOnWriteArrayList<>();
+            RequestLoggingSession requestLoggingSession = new RequestLoggingSession()
+            {
+                @Override
+                public void logException(Throwable e)
+                {
+                    loggedExceptions.add(e);
+                }
+
+                @Override
+                public void close() {}
+            };
+
+            responseHandler(resumed, presignedUrls, requestLoggingSession).handle(REQUEST, new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), new byte[0]));
+
+            // the exception of the failed security check is handled, not the exception wrapping it
+            assertThat(loggedExceptions).singleElement().isInstanceOf(WebApplicationException.class);
+            assertThat(resumed).singleElement().isInstanceOfSatisfying(Response.class, response -> assertThat(response.getStatus()).isEqualTo(403));
+        }
+    }
+
+    private static StreamingResponseHandler responseHandler(List<Object> resumed)
+    {
+        return responseHandler(resumed, immediateFuture(ImmutableMap.of()), () -> {});
+    }
+
+    private static StreamingResponseHandler responseHandler(List<Object> resumed, Future<Map<String, URI>> presignedUrls, RequestLoggingSession requestLoggingSession)
+    {
+        AsyncResponse asyncResponse = (AsyncResponse) Proxy.newProxyInstance(
+                AsyncResponse.class.getClassLoader(),
+                new Class<?>[] {AsyncResponse.class},
+                (_, method, args) -> {
+                    if (!method.getName().equals("resume")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    resumed.add(args[0]);
+                    return true;
+                });
+        return new StreamingResponseHandler(asyncResponse, presignedUrls, requestLoggingSession, new LimitStreamController(new TrinoAwsProxyConfig(), new RateLimitConfig()),
+                new RateLimitScope("dummy", Optional.empty(), "bucket"), new ProxyRequestStats(), "bucket");
+    }
+}
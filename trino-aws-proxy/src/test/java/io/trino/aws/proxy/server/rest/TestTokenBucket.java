@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestTokenBucket
+{
+    @Test
+    public void testTryAcquire()
+    {
+        AtomicLong ticker = new AtomicLong();
+        // 10 per second with a burst of 1 second
+        TokenBucket tokenBucket = new TokenBucket(10, SECONDS.toNanos(1), ticker::get);
+
+        for (int i = 0; i < 10; ++i) {
+            assertThat(tokenBucket.tryAcquire(1)).isTrue();
+        }
+        assertThat(tokenBucket.tryAcquire(1)).isFalse();
+
+        ticker.addAndGet(MILLISECONDS.toNanos(100));
+        assertThat(tokenBucket.tryAcquire(1)).isTrue();
+        assertThat(tokenBucket.tryAcquire(1)).isFalse();
+
+        // idle buckets fill up to the burst only
+        ticker.addAndGet(SECONDS.toNanos(10));
+        for (int i = 0; i < 10; ++i) {
+            assertThat(tokenBucket.tryAcquire(1)).isTrue();
+        }
+        assertThat(tokenBucket.tryAcquire(1)).isFalse();
+    }
+
+    @Test
+    public void testAcquire()
+    {
+        AtomicLong ticker = new AtomicLong();
+        // 1000 bytes per second with a burst of 500 milliseconds
+        TokenBucket tokenBucket = new TokenBucket(1000, MILLISECONDS.toNanos(500), ticker::get);
+
+        assertThat(tokenBucket.acquire(500)).isEqualTo(0);
+        assertThat(tokenBucket.acquire(250)).isEqualTo(MILLISECONDS.toNanos(250));
+        // the next caller waits for the ones before it
+        assertThat(tokenBucket.acquire(250)).isEqualTo(MILLISECONDS.toNanos(500));
+
+        ticker.addAndGet(MILLISECONDS.toNanos(500));
+        assertThat(tokenBucket.acquire(100)).isEqualTo(MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testBurstHoldsOneToken()
+    {
+        AtomicLong ticker = new AtomicLong();
+        // a burst shorter than the time between tokens still lets one through
+        TokenBucket tokenBucket = new TokenBucket(1, MILLISECONDS.toNanos(1), ticker::get);
+
+        assertThat(tokenBucket.tryAcquire(1)).isTrue();
+        assertThat(tokenBucket.tryAcquire(1)).isFalse();
+        ticker.addAndGet(SECONDS.toNanos(1));
+        assertThat(tokenBucket.tryAcquire(1)).isTrue();
+    }
+}
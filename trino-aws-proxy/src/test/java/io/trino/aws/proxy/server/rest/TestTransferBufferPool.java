@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.rest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestTransferBufferPool
+{
+    @Test
+    public void testReuse()
+    {
+        TransferBufferPool pool = new TransferBufferPool(1024, 2);
+
+        byte[] first = pool.acquire();
+        assertThat(first).hasSize(1024);
+        pool.release(first);
+        assertThat(pool.acquire()).isSameAs(first);
+
+        // an empty pool allocates
+        byte[] second = pool.acquire();
+        assertThat(second).hasSize(1024).isNotSameAs(first);
+    }
+
+    @Test
+    public void testBounded()
+    {
+        TransferBufferPool pool = new TransferBufferPool(16, 2);
+
+        byte[] first = pool.acquire();
+        byte[] second = pool.acquire();
+        byte[] third = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        // the pool is full, this one is dropped
+        pool.release(third);
+
+        assertThat(pool.acquire()).isSameAs(first);
+        assertThat(pool.acquire()).isSameAs(second);
+        byte[] allocated = pool.acquire();
+        assertThat(allocated).isNotSameAs(first).isNotSameAs(second).isNotSameAs(third);
+    }
+
+    @Test
+    public void testInvalidSizes()
+    {
+        assertThatThrownBy(() -> new TransferBufferPool(0, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("bufferSize must be positive");
+        assertThatThrownBy(() -> new TransferBufferPool(1, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maxPooledBuffers must be positive");
+    }
+}
@@ -14,10 +14,12 @@
 package io.trino.aws.proxy.server.security.opa;
 
 import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 
@@ -28,8 +30,13 @@ public class TestOpaS3SecurityConfig
             throws IOException
     {
         Map<String, String> properties = ImmutableMap.of(
-                "opa-s3-security.server-base-uri", "http://localhost");
-        OpaS3SecurityConfig expected = new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost");
+                "opa-s3-security.server-base-uri", "http://localhost",
+                "opa-s3-security.decision-cache.max-size", "1000",
+                "opa-s3-security.decision-cache.ttl", "5m");
+        OpaS3SecurityConfig expected = new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheMaxSize(1000)
+                .setDecisionCacheTtl(new Duration(5, TimeUnit.MINUTES));
         assertFullMapping(properties, expected);
     }
 }
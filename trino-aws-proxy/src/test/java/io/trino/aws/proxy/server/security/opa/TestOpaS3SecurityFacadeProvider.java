@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.security.opa;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.trino.aws.proxy.server.TrinoAwsProxyConfig;
+import io.trino.aws.proxy.server.rest.RequestLoggerConfig;
+import io.trino.aws.proxy.server.rest.RequestLoggerController;
+import io.trino.aws.proxy.server.rest.S3PresignController;
+import io.trino.aws.proxy.server.security.S3SecurityController;
+import io.trino.aws.proxy.server.signing.InternalSigningController;
+import io.trino.aws.proxy.server.signing.SigningControllerConfig;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.credentials.Identity;
+import io.trino.aws.proxy.spi.credentials.IdentityCredential;
+import io.trino.aws.proxy.spi.rest.ParsedS3Request;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.rest.RequestHeaders;
+import io.trino.aws.proxy.spi.security.SecurityResponse;
+import io.trino.aws.proxy.spi.security.opa.OpaClient;
+import io.trino.aws.proxy.spi.security.opa.OpaRequest;
+import io.trino.aws.proxy.spi.security.opa.OpaS3SecurityFacade;
+import io.trino.aws.proxy.spi.signing.RequestAuthorization;
+import io.trino.aws.proxy.spi.signing.SigningMetadata;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.net.MediaType.JSON_UTF_8;
+import static io.airlift.http.client.testing.TestingResponse.mockResponse;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.FAILURE;
+import static io.trino.aws.proxy.spi.security.SecurityResponse.SUCCESS;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestOpaS3SecurityFacadeProvider
+{
+    private static final OpaClient NO_OPA_CLIENT = _ -> {
+        throw new UnsupportedOperationException();
+    };
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
+
+    @Test
+    public void testDecisionCache()
+    {
+        AtomicInteger opaCalls = new AtomicInteger();
+        OpaS3SecurityFacade facade = (request, _, _, _) -> {
+            opaCalls.incrementAndGet();
+            return request.keyInBucket().equals("good") ? SUCCESS : FAILURE;
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(facade, NO_OPA_CLIENT, new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheMaxSize(100));
+
+        assertThat(apply(provider, "GET", "good", Optional.empty())).isEqualTo(SUCCESS);
+        assertThat(apply(provider, "GET", "good", Optional.empty())).isEqualTo(SUCCESS);
+        assertThat(opaCalls.get()).isEqualTo(1);
+
+        // denials are cached too
+        assertThat(apply(provider, "GET", "bad", Optional.empty())).isEqualTo(FAILURE);
+        assertThat(apply(provider, "GET", "bad", Optional.empty())).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(2);
+
+        // method and action are part of the decision
+        apply(provider, "PUT", "good", Optional.empty());
+        apply(provider, "GET", "good", Optional.of("tagging"));
+        assertThat(opaCalls.get()).isEqualTo(4);
+
+        assertThat(provider.getDecisionCacheHitCount()).isEqualTo(2);
+        assertThat(provider.getDecisionCacheMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testDecisionCacheQueryString()
+    {
+        AtomicInteger opaCalls = new AtomicInteger();
+        OpaS3SecurityFacade facade = (request, _, _, _) -> {
+            opaCalls.incrementAndGet();
+            return request.rawQuery().equals(Optional.of("prefix=public/")) ? SUCCESS : FAILURE;
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(facade, NO_OPA_CLIENT, new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheMaxSize(100));
+
+        // a decision for one listing prefix must not be used for another
+        assertThat(apply(provider, request("GET", "", Optional.of("prefix=public/")))).isEqualTo(SUCCESS);
+        assertThat(apply(provider, request("GET", "", Optional.of("prefix=private/")))).isEqualTo(FAILURE);
+        assertThat(apply(provider, request("GET", "", Optional.empty()))).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(3);
+
+        assertThat(apply(provider, request("GET", "", Optional.of("prefix=public/")))).isEqualTo(SUCCESS);
+        assertThat(apply(provider, request("GET", "", Optional.of("prefix=private/")))).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDecisionCacheDisabled()
+    {
+        AtomicInteger opaCalls = new AtomicInteger();
+        OpaS3SecurityFacade facade = (_, _, _, _) -> {
+            opaCalls.incrementAndGet();
+            return SUCCESS;
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(facade, NO_OPA_CLIENT, new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost"));
+
+        apply(provider, "GET", "good", Optional.empty());
+        apply(provider, "GET", "good", Optional.empty());
+        assertThat(opaCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testApplyAll()
+    {
+        AtomicInteger opaCalls = new AtomicInteger();
+        AtomicInteger batchCalls = new AtomicInteger();
+        OpaClient opaClient = new OpaClient()
+        {
+            @Override
+            public SecurityResponse getSecurityResponse(OpaRequest request)
+            {
+                opaCalls.incrementAndGet();
+                return request.document().get("method").equals("GET") ? SUCCESS : FAILURE;
+            }
+
+            @Override
+            public List<SecurityResponse> getSecurityResponses(List<OpaRequest> requests)
+            {
+                batchCalls.incrementAndGet();
+                return OpaClient.super.getSecurityResponses(requests);
+            }
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(new MethodOpaS3SecurityFacade(opaClient), opaClient, new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheMaxSize(100));
+
+        // a cached decision is not evaluated again, the others are sent to the OpaClient in a single batch
+        assertThat(apply(provider, "PUT", "key", Optional.empty())).isEqualTo(FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(1);
+        List<ParsedS3Request> requests = Stream.of("GET", "PUT", "POST", "DELETE").map(httpVerb -> request(httpVerb, "key")).collect(toImmutableList());
+        assertThat(provider.applyAll(requests, Collections.nCopies(requests.size(), Optional.empty()), Optional.empty()))
+                .containsExactly(SUCCESS, FAILURE, FAILURE, FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(4);
+        assertThat(batchCalls.get()).isEqualTo(1);
+
+        assertThat(provider.applyAll(requests, Collections.nCopies(requests.size(), Optional.empty()), Optional.empty()))
+                .containsExactly(SUCCESS, FAILURE, FAILURE, FAILURE);
+        assertThat(opaCalls.get()).isEqualTo(4);
+        assertThat(batchCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPresignOpaRoundTrips()
+    {
+        AtomicInteger opaRoundTrips = new AtomicInteger();
+        OpaClient opaClient = new DefaultOpaClient(new TestingHttpClient(_ -> {
+            opaRoundTrips.incrementAndGet();
+            return mockResponse(HttpStatus.OK, JSON_UTF_8, "{\"result\": true}");
+        }));
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(new MethodOpaS3SecurityFacade(opaClient), opaClient, new OpaS3SecurityConfig()
+                .setOpaServerBaseUri("http://localhost")
+                .setDecisionCacheMaxSize(100));
+        S3PresignController presignController = new S3PresignController(
+                new InternalSigningController((_, _) -> Optional.of(new IdentityCredential(CREDENTIAL)), new SigningControllerConfig(), new RequestLoggerController(new RequestLoggerConfig())),
+                new TrinoAwsProxyConfig(),
+                new S3SecurityController(provider));
+
+        ParsedS3Request request = request("GET", "key");
+        ParsedS3Request signedRequest = new ParsedS3Request(
+                request.requestId(),
+                new RequestAuthorization(CREDENTIAL.accessKey(), "us-east-1", "", ImmutableSet.of(), "", Optional.empty(), Optional.empty()),
+                request.requestDate(),
+                request.bucketName(),
+                request.keyInBucket(),
+                request.requestHeaders(),
+                request.queryParameters(),
+                request.httpVerb(),
+                request.rawPath(),
+                request.rawQuery(),
+                request.requestContent());
+        SigningMetadata signingMetadata = new SigningMetadata(SigningServiceType.S3, CREDENTIAL);
+
+        // one OPA request per presigned method, the cached decisions are reused for the next presign
+        assertThat(presignController.buildPresignedRemoteUrls(Optional.empty(), signingMetadata, signedRequest, Instant.now(), URI.create("http://localhost/bucket/key")))
+                .containsOnlyKeys("GET", "PUT", "POST", "DELETE");
+        assertThat(opaRoundTrips.get()).isEqualTo(4);
+
+        assertThat(presignController.buildPresignedRemoteUrls(Optional.empty(), signingMetadata, signedRequest, Instant.now(), URI.create("http://localhost/bucket/key")))
+                .containsOnlyKeys("GET", "PUT", "POST", "DELETE");
+        assertThat(opaRoundTrips.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testApplyAllConcurrently()
+    {
+        // every check waits for all the others to start, so the batch only passes if they overlap
+        CountDownLatch started = new CountDownLatch(4);
+        OpaS3SecurityFacade facade = (_, _, _, _) -> {
+            started.countDown();
+            try {
+                return started.await(10, SECONDS) ? SUCCESS : FAILURE;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(facade, NO_OPA_CLIENT, new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost"));
+
+        List<ParsedS3Request> requests = Stream.of("GET", "PUT", "POST", "DELETE").map(httpVerb -> request(httpVerb, "key")).collect(toImmutableList());
+        assertThat(provider.applyAll(requests, Collections.nCopies(requests.size(), Optional.empty()), Optional.empty()))
+                .containsExactly(SUCCESS, SUCCESS, SUCCESS, SUCCESS);
+    }
+
+    @Test
+    public void testApplyAllFailure()
+    {
+        OpaS3SecurityFacade facade = (request, _, _, _) -> {
+            if (request.httpVerb().equals("PUT")) {
+                throw new WebApplicationException(SERVICE_UNAVAILABLE);
+            }
+            return SUCCESS;
+        };
+        OpaS3SecurityFacadeProvider provider = new OpaS3SecurityFacadeProvider(facade, NO_OPA_CLIENT, new OpaS3SecurityConfig().setOpaServerBaseUri("http://localhost"));
+
+        // the exception of the failed check is thrown as is
+        List<ParsedS3Request> requests = Stream.of("GET", "PUT").map(httpVerb -> request(httpVerb, "key")).collect(toImmutableList());
+        assertThatThrownBy(() -> provider.applyAll(requests, Collections.nCopies(requests.size(), Optional.empty()), Optional.empty()))
+                .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+    }
+
+    // a facade whose checks are plain OPA queries on the HTTP method
+    private record MethodOpaS3SecurityFacade(OpaClient opaClient)
+            implements OpaS3SecurityFacade
+    {
+        @Override
+        public SecurityResponse apply(ParsedS3Request request, Optional<String> lowercaseAction, URI opaServerBaseUri, Optional<Identity> identity)
+        {
+            return opaClient.getSecurityResponse(opaRequest(request, lowercaseAction, opaServerBaseUri, identity).orElseThrow());
+        }
+
+        @Override
+        public Optional<OpaRequest> opaRequest(ParsedS3Request request, Optional<String> lowercaseAction, URI opaServerBaseUri, Optional<Identity> identity)
+        {
+            return Optional.of(new OpaRequest(opaServerBaseUri, ImmutableMap.of("method", request.httpVerb(), "key", request.keyInBucket())));
+        }
+    }
+
+    private static SecurityResponse apply(OpaS3SecurityFacadeProvider provider, String httpVerb, String keyInBucket, Optional<String> lowercaseAction)
+    {
+        return provider.securityFacadeForRequest(request(httpVerb, keyInBucket), Optional.empty()).apply(lowercaseAction);
+    }
+
+    private static SecurityResponse apply(OpaS3SecurityFacadeProvider provider, ParsedS3Request request)
+    {
+        return provider.securityFacadeForRequest(request, Optional.empty()).apply(Optional.empty());
+    }
+
+    private static ParsedS3Request request(String httpVerb, String keyInBucket)
+    {
+        return request(httpVerb, keyInBucket, Optional.empty());
+    }
+
+    private static ParsedS3Request request(String httpVerb, String keyInBucket, Optional<String> rawQuery)
+    {
+        return new ParsedS3Request(
+                UUID.randomUUID(),
+                RequestAuthorization.INVALID,
+                Instant.now(),
+                "bucket",
+                keyInBucket,
+                RequestHeaders.EMPTY,
+                ImmutableMultiMap.empty(),
+                httpVerb,
+                "/bucket/" + keyInBucket,
+                rawQuery,
+                RequestContent.EMPTY);
+    }
+}
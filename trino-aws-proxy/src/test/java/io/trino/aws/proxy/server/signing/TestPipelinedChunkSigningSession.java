@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import com.google.common.collect.ImmutableList;
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.signing.ChunkSigningSession;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+public class TestPipelinedChunkSigningSession
+{
+    private static final Credential CREDENTIAL = new Credential("TEST_ACCESS_KEY", "TEST_SECRET_KEY");
+    private static final String SEED = "THIS IS A FAKE GOOD SEED";
+    private static final Instant REQUEST_DATE = Instant.parse("2024-08-01T01:02:03Z");
+    private static final List<String> CHUNKS = List.of("The quick brown fox ", "jumps over the lazy ", "dog's head", "");
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterAll
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testValidChunks()
+    {
+        List<String> signatures = signatures();
+
+        for (int maxPendingWrites : List.of(1, 2, 64)) {
+            ChunkSigningSession session = new PipelinedChunkSigningSession(TestingChunkSigningSession.build(CREDENTIAL, SEED, REQUEST_DATE), executor, maxPendingWrites);
+            writeChunks(session, signatures);
+            session.complete();
+        }
+    }
+
+    @Test
+    public void testInvalidSignature()
+    {
+        List<String> signatures = signatures();
+
+        for (int badChunk = 0; badChunk < CHUNKS.size(); ++badChunk) {
+            List<String> badSignatures = new ArrayList<>(signatures);
+            badSignatures.set(badChunk, "0".repeat(64));
+
+            ChunkSigningSession session = new PipelinedChunkSigningSession(TestingChunkSigningSession.build(CREDENTIAL, SEED, REQUEST_DATE), executor, 2);
+            assertThatThrownBy(() -> {
+                writeChunks(session, badSignatures);
+                session.complete();
+            }).isInstanceOf(WebApplicationException.class);
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testDelegateError()
+    {
+        ChunkSigningSession delegate = new ChunkSigningSession()
+        {
+            @Override
+            public void startChunk(String expectedSignature) {}
+
+            @Override
+            public void complete() {}
+
+            @Override
+            public void write(byte b) {}
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+                throw new StackOverflowError("delegate failed");
+            }
+        };
+
+        // errors are rethrown to the caller instead of leaving complete() waiting for the drain
+        ChunkSigningSession session = new PipelinedChunkSigningSession(delegate, executor, 2);
+        session.startChunk("signature");
+        session.write(new byte[16], 0, 16);
+        assertThatThrownBy(session::complete)
+                .isInstanceOf(StackOverflowError.class)
+                .hasMessage("delegate failed");
+    }
+
+    private static List<String> signatures()
+    {
+        TestingChunkSigningSession signer = TestingChunkSigningSession.build(CREDENTIAL, SEED, REQUEST_DATE);
+        ImmutableList.Builder<String> signatures = ImmutableList.builder();
+        String previousSignature = SEED;
+        for (String chunk : CHUNKS) {
+            previousSignature = signer.getChunkSignature(chunk, previousSignature);
+            signatures.add(previousSignature);
+        }
+        return signatures.build();
+    }
+
+    private static void writeChunks(ChunkSigningSession session, List<String> signatures)
+    {
+        for (int i = 0; i < CHUNKS.size(); ++i) {
+            session.startChunk(signatures.get(i));
+            byte[] chunk = CHUNKS.get(i).getBytes(UTF_8);
+            // mix single byte and slice writes
+            int offset = 0;
+            while (offset < chunk.length) {
+                if ((offset % 3) == 0) {
+                    session.write(chunk[offset]);
+                    offset += 1;
+                }
+                else {
+                    int length = Math.min(5, chunk.length - offset);
+                    session.write(chunk, offset, length);
+                    offset += length;
+                }
+            }
+        }
+    }
+}
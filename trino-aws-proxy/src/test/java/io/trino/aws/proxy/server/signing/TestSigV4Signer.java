@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningContext;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSigV4Signer
+{
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
+    private static final Credential SESSION_CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY", Optional.of("THIS_IS_A_SESSION_TOKEN"));
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    @Test
+    public void testS3Request()
+    {
+        MultiMap headers = ImmutableMultiMap.builder(false)
+                .add("Host", "localhost:9000")
+                .add("X-Amz-Date", "ignored")
+                .add("X-Amz-Content-SHA256", EMPTY_SHA256)
+                .add("Content-Type", "  text/plain;   charset=utf-8  ")
+                .add("X-Amz-Meta-Multi", "one")
+                .add("x-amz-meta-multi", "two")
+                .build();
+        MultiMap queryParameters = ImmutableMultiMap.builder(true)
+                .add("prefix", "a b/c~d*e")
+                .add("list-type", "2")
+                .add("delimiter", "/")
+                .add("uploads", "")
+                .add("unicode", "é中😀")
+                .build();
+
+        assertSameSignature(SigningServiceType.S3, URI.create("http://localhost:9000/bucket/some%20key/file.txt"), headers, queryParameters, "GET", CREDENTIAL, RequestContent.EMPTY);
+        assertSameSignature(SigningServiceType.S3, URI.create("https://bucket.s3.us-east-1.amazonaws.com:443/"), headers, ImmutableMultiMap.empty(), "HEAD", SESSION_CREDENTIAL, RequestContent.EMPTY);
+        assertSameSignature(SigningServiceType.S3, URI.create("http://localhost"), headers, queryParameters, "DELETE", SESSION_CREDENTIAL, RequestContent.EMPTY);
+    }
+
+    @Test
+    public void testLegacyS3Request()
+    {
+        MultiMap headers = ImmutableMultiMap.builder(false)
+                .add("Host", "localhost:9000")
+                .add("User-Agent", "aws-sdk-java/1.12  Linux/5.10")
+                .add("Connection", "keep-alive")
+                .add("X-Amz-Content-SHA256", "UNSIGNED-PAYLOAD")
+                .build();
+
+        assertSameSignature(SigningServiceType.S3, URI.create("http://localhost:9000/bucket/key"), headers, ImmutableMultiMap.empty(), "PUT", CREDENTIAL, RequestContent.EMPTY);
+    }
+
+    @Test
+    public void testRequestWithPayload()
+    {
+        MultiMap headers = ImmutableMultiMap.builder(false)
+                .add("Host", "localhost:9000")
+                .add("Content-Type", "application/x-www-form-urlencoded; charset=utf-8")
+                .add("User-Agent", "aws-cli/2.0")
+                .build();
+        byte[] payload = "Action=AssumeRole&Version=2011-06-15&RoleArn=arn%3Aaws%3Aiam%3A%3A123456789012%3Arole%2Fdemo".getBytes(UTF_8);
+        RequestContent requestContent = () -> Optional.of(new ByteArrayInputStream(payload));
+
+        assertSameSignature(SigningServiceType.STS, URI.create("http://localhost:9000/api/v1/s3Proxy/sts"), headers, ImmutableMultiMap.empty(), "POST", CREDENTIAL, requestContent);
+        assertSameSignature(SigningServiceType.LOGS, URI.create("http://localhost:9000/api/v1/s3Proxy/logs"), headers, ImmutableMultiMap.empty(), "POST", SESSION_CREDENTIAL, RequestContent.EMPTY);
+    }
+
+    @Test
+    public void testConcurrentSigning()
+            throws Exception
+    {
+        // each thread reuses its digest and MAC, which must not leak state between requests or threads
+        List<URI> requestUris = IntStream.range(0, 100)
+                .mapToObj(index -> URI.create("http://localhost:9000/bucket/" + "key".repeat(index * 10) + index))
+                .collect(toImmutableList());
+        MultiMap headers = ImmutableMultiMap.builder(false)
+                .add("Host", "localhost:9000")
+                .add("X-Amz-Content-SHA256", EMPTY_SHA256)
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = requestUris.stream()
+                    .<Future<?>>map(requestUri -> executor.submit(() -> assertSameSignature(SigningServiceType.S3, requestUri, headers, ImmutableMultiMap.empty(), "GET", CREDENTIAL, RequestContent.EMPTY)))
+                    .collect(toImmutableList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnsupportedPaths()
+    {
+        assertThat(SigV4Signer.canSign(URI.create("http://localhost/bucket/key"))).isTrue();
+        assertThat(SigV4Signer.canSign(URI.create("http://localhost"))).isTrue();
+        assertThat(SigV4Signer.canSign(URI.create("http://localhost/bucket/../key"))).isFalse();
+        assertThat(SigV4Signer.canSign(URI.create("http://localhost/bucket/./key"))).isFalse();
+        assertThat(SigV4Signer.canSign(URI.create("http://localhost/bucket/.."))).isFalse();
+    }
+
+    @Test
+    public void testSignaturesMatch()
+    {
+        assertThat(SigV4Signer.signaturesMatch("abcdef", "abcdef")).isTrue();
+        assertThat(SigV4Signer.signaturesMatch("abcdef", "abcdee")).isFalse();
+        assertThat(SigV4Signer.signaturesMatch("abcdef", "abcde")).isFalse();
+    }
+
+    private static void assertSameSignature(SigningServiceType serviceType, URI requestUri, MultiMap headers, MultiMap queryParameters, String httpMethod, Credential credential, RequestContent requestContent)
+    {
+        Instant requestDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        SigningHeaders signingHeaders = SigningHeaders.build(headers);
+        SigningKeyCache signingKeyCache = new SigningKeyCache(100);
+
+        SigningContext sdkContext = Signer.sign(serviceType, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, httpMethod, credential, Duration.ofMinutes(15), requestContent, signingKeyCache, false);
+        SigningContext nativeContext = Signer.sign(serviceType, requestUri, signingHeaders, queryParameters, "us-east-1", requestDate, httpMethod, credential, Duration.ofMinutes(15), requestContent, signingKeyCache, true);
+
+        assertThat(nativeContext.signingAuthorization()).isEqualTo(sdkContext.signingAuthorization());
+        assertThat(nativeContext.signingAuthorization().authorization()).isEqualTo(sdkContext.signingAuthorization().authorization());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import io.trino.aws.proxy.spi.credentials.Credential;
+import io.trino.aws.proxy.spi.rest.RequestContent;
+import io.trino.aws.proxy.spi.signing.SigningServiceType;
+import io.trino.aws.proxy.spi.util.ImmutableMultiMap;
+import io.trino.aws.proxy.spi.util.MultiMap;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static io.trino.aws.proxy.spi.util.AwsTimestamp.ZONE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSigningKeyCache
+{
+    private static final Credential CREDENTIAL = new Credential("THIS_IS_AN_ACCESS_KEY", "THIS_IS_A_SECRET_KEY");
+
+    @Test
+    public void testMatchesSdkDerivation()
+    {
+        Instant requestDate = Instant.parse("2024-05-16T02:45:11Z");
+        SigningKeyCache signingKeyCache = new SigningKeyCache(100);
+
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, requestDate, "us-east-1", "s3"))
+                .isEqualTo(sdkSigningKey(requestDate, Region.US_EAST_1, "s3"));
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, requestDate, "eu-west-1", "sts"))
+                .isEqualTo(sdkSigningKey(requestDate, Region.EU_WEST_1, "sts"));
+    }
+
+    @Test
+    public void testCacheHits()
+    {
+        Instant requestDate = Instant.parse("2024-05-16T02:45:11Z");
+        SigningKeyCache signingKeyCache = new SigningKeyCache(100);
+
+        byte[] signingKey = signingKeyCache.signingKey(CREDENTIAL, requestDate, "us-east-1", "s3");
+        // same day - served from the cache
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, requestDate.plus(Duration.ofHours(12)), "us-east-1", "s3")).isSameAs(signingKey);
+        // next day - new key
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, requestDate.plus(Duration.ofDays(1)), "us-east-1", "s3")).isNotEqualTo(signingKey);
+
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(1);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(2);
+        assertThat(signingKeyCache.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSdkSignersUseCache()
+    {
+        Instant requestDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        SigningKeyCache signingKeyCache = new SigningKeyCache(100);
+
+        // the SDK signer derives the key, then the chunk signer of the signing context reuses it
+        sdkSign(SigningServiceType.S3, requestDate, signingKeyCache);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(1);
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(1);
+
+        sdkSign(SigningServiceType.S3, requestDate, signingKeyCache);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(1);
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(3);
+
+        // signers of other services use the cache as well
+        sdkSign(SigningServiceType.STS, requestDate, signingKeyCache);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(2);
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        Instant requestDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        SigningKeyCache signingKeyCache = new SigningKeyCache(0);
+
+        byte[] signingKey = signingKeyCache.signingKey(CREDENTIAL, requestDate, "us-east-1", "s3");
+        assertThat(signingKey).isEqualTo(sdkSigningKey(requestDate, Region.US_EAST_1, "s3"));
+        assertThat(signingKeyCache.signingKey(CREDENTIAL, requestDate, "us-east-1", "s3")).isNotSameAs(signingKey);
+        sdkSign(SigningServiceType.S3, requestDate, signingKeyCache);
+
+        assertThat(signingKeyCache.getHitCount()).isEqualTo(0);
+        assertThat(signingKeyCache.getMissCount()).isEqualTo(0);
+        assertThat(signingKeyCache.getSize()).isEqualTo(0);
+    }
+
+    private static void sdkSign(SigningServiceType serviceType, Instant requestDate, SigningKeyCache signingKeyCache)
+    {
+        MultiMap headers = ImmutableMultiMap.builder(false)
+                .add("Host", "localhost:9000")
+                .add("X-Amz-Content-SHA256", "UNSIGNED-PAYLOAD")
+                .build();
+        Signer.sign(
+                serviceType,
+                URI.create("http://localhost:9000/bucket/key"),
+                SigningHeaders.build(headers),
+                ImmutableMultiMap.empty(),
+                "us-east-1",
+                requestDate,
+                "GET",
+                CREDENTIAL,
+                Duration.ofMinutes(15),
+                RequestContent.EMPTY,
+                signingKeyCache,
+                false);
+    }
+
+    private static byte[] sdkSigningKey(Instant requestDate, Region region, String serviceName)
+    {
+        AwsCredentials credentials = AwsBasicCredentials.create(CREDENTIAL.accessKey(), CREDENTIAL.secretKey());
+        Aws4SignerParams signerParams = Aws4SignerParams.builder()
+                .awsCredentials(credentials)
+                .signingName(serviceName)
+                .signingRegion(region)
+                .signingClockOverride(Clock.fixed(requestDate, ZONE))
+                .build();
+        return TestingSdkSigningKeys.sdkSigningKey(credentials, new Aws4SignerRequestParams(signerParams));
+    }
+}
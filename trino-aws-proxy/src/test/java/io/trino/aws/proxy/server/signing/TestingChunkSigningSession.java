@@ -30,6 +30,7 @@ import java.util.Locale;
 import java.util.UUID;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static io.trino.aws.proxy.server.signing.TestingSdkSigningKeys.sdkSigningKey;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 
@@ -60,7 +61,7 @@ public class TestingChunkSigningSession
                 .doubleUrlEncode(false)
                 .signingName("s3")
                 .signingRegion(Region.US_EAST_1);
-        byte[] signingKey = Signer.signingKey(credentials, new Aws4SignerRequestParams(builder.build()));
+        byte[] signingKey = sdkSigningKey(credentials, new Aws4SignerRequestParams(builder.build()));
 
         return new TestingChunkSigningSession(seed, instant, signingKey, "%s/us-east-1/s3/aws4_request".formatted(CHUNK_DATETIME_FORMAT.format(instant)));
     }
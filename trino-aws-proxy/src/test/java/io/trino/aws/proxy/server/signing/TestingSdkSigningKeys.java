@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trino.aws.proxy.server.signing;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.signer.internal.Aws4SignerRequestParams;
+import software.amazon.awssdk.auth.signer.internal.BaseAws4Signer;
+
+/**
+ * Signing keys derived by the unmodified SDK signer, which the proxy no longer uses to derive its own keys
+ */
+final class TestingSdkSigningKeys
+{
+    private static final SdkSigner SDK_SIGNER = new SdkSigner();
+
+    private TestingSdkSigningKeys() {}
+
+    static byte[] sdkSigningKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
+    {
+        return SDK_SIGNER.signingKey(credentials, signerRequestParams);
+    }
+
+    private static class SdkSigner
+            extends BaseAws4Signer
+    {
+        private byte[] signingKey(AwsCredentials credentials, Aws4SignerRequestParams signerRequestParams)
+        {
+            return deriveSigningKey(credentials, signerRequestParams);
+        }
+    }
+}